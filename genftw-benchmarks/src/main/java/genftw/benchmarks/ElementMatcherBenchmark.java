@@ -0,0 +1,155 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks;
+
+import genftw.benchmarks.stub.StubElement;
+import genftw.benchmarks.stub.StubElements;
+import genftw.benchmarks.stub.StubModel;
+import genftw.core.match.ElementMatcher;
+import genftw.core.match.MatchDefinition;
+import genftw.core.match.MetaDataMatcher;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ElementMatcher} over stub element models, without starting javac.
+ * <p>
+ * Run with GC profiler ({@code -prof gc}) to watch allocation per match.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElementMatcherBenchmark {
+
+    static final String[] PREDICATES = { "kind", "modifiers", "simpleNameMatches", "annotations", "metaData" };
+
+    @State(Scope.Thread)
+    public static class Model {
+
+        ElementMatcher matcher;
+        StubElement element;
+
+        @Setup
+        public void setUp() {
+            StubElements elementUtils = new StubElements();
+
+            matcher = new ElementMatcher(elementUtils, new MetaDataMatcher(elementUtils));
+            element = new StubModel().createType("bench.model.Customer", 1, "table=CUSTOMER");
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class SinglePredicate {
+
+        /**
+         * Match definition attribute restricted by the definition.
+         */
+        @Param({ "kind", "modifiers", "simpleNameMatches", "annotations", "metaData" })
+        String predicate;
+
+        MatchDefinition definition;
+
+        @Setup
+        public void setUp() {
+            definition = new MatchDefinition(StubModel.createDefinition(createPredicateValues(predicate, "Customer")));
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class DefinitionSet {
+
+        /**
+         * Number of match definitions, restricted by all predicates in turn.
+         */
+        @Param({ "10", "100", "1000" })
+        int definitions;
+
+        MatchDefinition[] definitionSet;
+
+        @Setup
+        public void setUp() {
+            definitionSet = new MatchDefinition[definitions];
+
+            // Only every tenth definition matches
+            for (int i = 0; i < definitions; i++) {
+                definitionSet[i] = new MatchDefinition(StubModel.createDefinition(createPredicateValues(
+                        PREDICATES[i % PREDICATES.length], i % 10 == 0 ? "Customer" : "Order" + i)));
+            }
+        }
+
+    }
+
+    static Map<String, Object> createPredicateValues(String predicate, String simpleName) {
+        Map<String, Object> values = new HashMap<String, Object>();
+
+        if ("kind".equals(predicate)) {
+            values.put(predicate, new ElementKind[] { ElementKind.CLASS, ElementKind.INTERFACE });
+        } else if ("modifiers".equals(predicate)) {
+            values.put(predicate, new Modifier[] { Modifier.PUBLIC });
+        } else if ("simpleNameMatches".equals(predicate)) {
+            values.put(predicate, simpleName + ".*");
+        } else if ("annotations".equals(predicate)) {
+            values.put(predicate, new String[] { "bench.model." + simpleName + "Meta1" });
+        } else if ("metaData".equals(predicate)) {
+            values.put(predicate, StubModel.META_DATA_KIND + "[table=" + simpleName.toUpperCase() + "]");
+        } else {
+            throw new IllegalArgumentException("Unknown predicate " + predicate);
+        }
+
+        return values;
+    }
+
+    @Benchmark
+    public boolean matchPredicate(Model model, SinglePredicate predicate) {
+        return model.matcher.matches(model.element, predicate.definition);
+    }
+
+    @Benchmark
+    public int matchDefinitionSet(Model model, DefinitionSet set) {
+        int matches = 0;
+
+        for (MatchDefinition def : set.definitionSet) {
+            if (model.matcher.matches(model.element, def)) {
+                matches++;
+            }
+        }
+
+        return matches;
+    }
+
+}
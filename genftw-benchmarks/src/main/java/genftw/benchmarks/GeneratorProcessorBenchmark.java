@@ -0,0 +1,122 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks;
+
+import genftw.core.GeneratorProcessor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures complete runs of {@link GeneratorProcessor} over synthetic source sets, using in-memory javac.
+ * <p>
+ * Run with {@link PhaseProfiler} to report time and allocation of each processing phase.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorProcessorBenchmark {
+
+    @Param({ "100", "1000" })
+    int types;
+
+    @Param({ "10" })
+    int membersPerType;
+
+    @Param({ "2" })
+    int annotationsPerMember;
+
+    @Param({ "1", "3" })
+    int metaDataDepth;
+
+    @Param({ "2" })
+    int generatorMethods;
+
+    File templateRootDir;
+    InMemoryCompiler compiler;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticSourceSet sourceSet = new SyntheticSourceSet(types, membersPerType,
+                annotationsPerMember, metaDataDepth, generatorMethods);
+
+        templateRootDir = createTemplateRootDir(sourceSet.createTemplates());
+
+        compiler = new InMemoryCompiler(sourceSet.createSources(), Arrays.asList(
+                GeneratorProcessor.OPT_TEMPLATE_ROOT_DIR + "=" + templateRootDir.getAbsolutePath(),
+                GeneratorProcessor.OPT_MATCHED_ELEMENT_PACKAGE_FILTER + "=" + sourceSet.getPackageFilter(),
+                GeneratorProcessor.OPT_LOG_LEVEL + "=error",
+                GeneratorProcessor.OPT_JMX_STATISTICS + "=true"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        compiler.close();
+
+        for (File template : templateRootDir.listFiles()) {
+            template.delete();
+        }
+
+        templateRootDir.delete();
+    }
+
+    @Benchmark
+    public long process() {
+        return compiler.process(new GeneratorProcessor());
+    }
+
+    static File createTemplateRootDir(Map<String, String> templates) throws IOException {
+        File dir = File.createTempFile("genftw-bench", "");
+        dir.delete();
+        dir.mkdir();
+
+        for (Map.Entry<String, String> template : templates.entrySet()) {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, template.getKey())), "UTF-8");
+            try {
+                writer.write(template.getValue());
+            } finally {
+                writer.close();
+            }
+        }
+
+        return dir;
+    }
+
+}
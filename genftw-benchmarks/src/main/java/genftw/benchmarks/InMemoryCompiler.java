@@ -0,0 +1,102 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+
+/**
+ * Runs annotation processing of in-memory sources using the system Java compiler.
+ * <p>
+ * Sources are only processed, not compiled ({@code -proc:only}), and all outputs are kept in memory. Compiler file
+ * manager is reused across runs, like in long-lived build daemons.
+ */
+public class InMemoryCompiler {
+
+    private final JavaCompiler compiler;
+    private final InMemoryFileManager fileManager;
+    private final List<JavaFileObject> sources;
+    private final List<String> options;
+
+    public InMemoryCompiler(Map<String, String> sources, List<String> processorOptions) {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+
+        if (compiler == null) {
+            throw new IllegalStateException("System Java compiler not available, benchmarks must run on JDK");
+        }
+
+        this.fileManager = new InMemoryFileManager(compiler.getStandardFileManager(null, null, null));
+        this.sources = new ArrayList<JavaFileObject>(sources.size());
+        this.options = new ArrayList<String>();
+
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            this.sources.add(InMemoryFileManager.createSource(source.getKey(), source.getValue()));
+        }
+
+        options.add("-proc:only");
+        options.add("-classpath");
+        options.add(System.getProperty("java.class.path"));
+
+        for (String option : processorOptions) {
+            options.add("-A" + option);
+        }
+    }
+
+    /**
+     * Processes all sources with the given processor, returning the number of bytes written to output files.
+     */
+    public long process(Processor processor) {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, sources);
+        task.setProcessors(Collections.singletonList(processor));
+
+        fileManager.reset();
+
+        if (!task.call()) {
+            StringBuilder sb = new StringBuilder("Processing failed:");
+
+            for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+                if (d.getKind() == Diagnostic.Kind.ERROR) {
+                    sb.append('\n').append(d.getMessage(null));
+                }
+            }
+
+            throw new IllegalStateException(sb.toString());
+        }
+
+        return fileManager.getOutputBytes();
+    }
+
+    public int getOutputFiles() {
+        return fileManager.getOutputFiles();
+    }
+
+    public void close() throws IOException {
+        fileManager.close();
+    }
+
+}
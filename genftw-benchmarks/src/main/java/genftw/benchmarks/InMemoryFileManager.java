@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+
+/**
+ * File manager that keeps all compiler outputs in memory, counting output files and bytes.
+ */
+class InMemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+    private int outputFiles;
+    private long outputBytes;
+
+    InMemoryFileManager(StandardJavaFileManager fileManager) {
+        super(fileManager);
+    }
+
+    static JavaFileObject createSource(String path, final String content) {
+        return new SimpleJavaFileObject(URI.create("mem:///" + path), Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+
+    void reset() {
+        outputFiles = 0;
+        outputBytes = 0;
+    }
+
+    int getOutputFiles() {
+        return outputFiles;
+    }
+
+    long getOutputBytes() {
+        return outputBytes;
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(JavaFileManager.Location location, String className,
+            Kind kind, FileObject sibling) {
+        return new OutputFile(location.getName() + "/" + className.replace('.', '/') + kind.extension, kind);
+    }
+
+    @Override
+    public FileObject getFileForOutput(JavaFileManager.Location location, String packageName,
+            String relativeName, FileObject sibling) {
+        String path = packageName.isEmpty() ? relativeName : packageName.replace('.', '/') + "/" + relativeName;
+        return new OutputFile(location.getName() + "/" + path, Kind.OTHER);
+    }
+
+    @Override
+    public boolean isSameFile(FileObject a, FileObject b) {
+        // Standard file manager does not support in-memory files
+        return a.toUri().equals(b.toUri());
+    }
+
+    class OutputFile extends SimpleJavaFileObject {
+
+        OutputFile(String path, Kind kind) {
+            super(URI.create("mem:///" + path), kind);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            outputFiles++;
+
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    outputBytes += size();
+                }
+            };
+        }
+
+        @Override
+        public Writer openWriter() {
+            outputFiles++;
+
+            return new StringWriter() {
+                @Override
+                public void close() {
+                    outputBytes += getBuffer().length();
+                }
+            };
+        }
+
+    }
+
+}
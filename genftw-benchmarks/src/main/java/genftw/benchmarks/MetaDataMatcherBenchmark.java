@@ -0,0 +1,91 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks;
+
+import genftw.benchmarks.stub.StubElement;
+import genftw.benchmarks.stub.StubElements;
+import genftw.benchmarks.stub.StubModel;
+import genftw.core.match.MetaDataMatcher;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MetaDataMatcher} over stub element models with nested meta-annotations, without starting javac.
+ * <p>
+ * Run with GC profiler ({@code -prof gc}) to watch allocation per match.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetaDataMatcherBenchmark {
+
+    /**
+     * Number of annotation types between the element and its meta-data annotation.
+     */
+    @Param({ "0", "1", "3" })
+    int metaDataDepth;
+
+    MetaDataMatcher matcher;
+    StubElement element;
+    StubElement plainElement;
+
+    @Setup
+    public void setUp() {
+        StubElements elementUtils = new StubElements();
+        StubModel model = new StubModel();
+
+        matcher = new MetaDataMatcher(elementUtils);
+        element = model.createType("bench.model.Customer", metaDataDepth, "table=CUSTOMER", "audited");
+        plainElement = model.createType("bench.model.Order", metaDataDepth);
+    }
+
+    @Benchmark
+    public boolean matchKind() {
+        return matcher.matches(element, StubModel.META_DATA_KIND);
+    }
+
+    @Benchmark
+    public boolean matchProperties() {
+        return matcher.matches(element, StubModel.META_DATA_KIND + "[table=CUSTOMER][audited]");
+    }
+
+    @Benchmark
+    public boolean matchPropertiesMissing() {
+        return matcher.matches(plainElement, StubModel.META_DATA_KIND + "[table=CUSTOMER]");
+    }
+
+    @Benchmark
+    public boolean matchAnyKind() {
+        return matcher.matches(element, "*");
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks;
+
+import genftw.core.metrics.Phase;
+import genftw.core.metrics.ProcessorStatistics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * JMH profiler that reports time and allocation per benchmark operation of each GenFTW processing phase.
+ * <p>
+ * Phase statistics are read from {@link ProcessorStatistics} MBean, so benchmarked processors must run with
+ * {@value genftw.core.GeneratorProcessor#OPT_JMX_STATISTICS} option enabled. Usage:
+ * <tt>-prof genftw.benchmarks.PhaseProfiler</tt>.
+ */
+public class PhaseProfiler implements InternalProfiler {
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private long[] iterationStartMillis;
+    private long[] iterationStartAllocatedBytes;
+
+    @Override
+    public String getDescription() {
+        return "GenFTW processing phase time and allocation";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        iterationStartMillis = readTotals("Millis");
+        iterationStartAllocatedBytes = readTotals("AllocatedBytes");
+    }
+
+    @Override
+    public Collection<? extends Result<?>> afterIteration(BenchmarkParams benchmarkParams,
+            IterationParams iterationParams, IterationResult result) {
+        long[] millis = readTotals("Millis");
+        long[] allocatedBytes = readTotals("AllocatedBytes");
+        double ops = Math.max(1, result.getMetadata().getAllOps());
+        List<ScalarResult> results = new ArrayList<ScalarResult>();
+
+        for (int i = 0; i < PHASES.length; i++) {
+            String prefix = "genftw." + PHASES[i].id();
+
+            results.add(new ScalarResult(prefix + ".time",
+                    (millis[i] - iterationStartMillis[i]) / ops, "ms/op", AggregationPolicy.AVG));
+            results.add(new ScalarResult(prefix + ".alloc",
+                    (allocatedBytes[i] - iterationStartAllocatedBytes[i]) / ops, "B/op", AggregationPolicy.AVG));
+        }
+
+        return results;
+    }
+
+    long[] readTotals(String suffix) {
+        long[] totals = new long[PHASES.length];
+
+        try {
+            ObjectName name = new ObjectName(ProcessorStatistics.OBJECT_NAME);
+
+            for (int i = 0; i < PHASES.length; i++) {
+                String id = PHASES[i].id();
+                String attribute = "Total" + Character.toUpperCase(id.charAt(0)) + id.substring(1) + suffix;
+                totals[i] = (Long) server.getAttribute(name, attribute);
+            }
+        } catch (InstanceNotFoundException e) {
+            // Statistics not registered before the first run, ignore exception
+        } catch (JMException e) {
+            throw new IllegalStateException("Error while reading processor statistics", e);
+        }
+
+        return totals;
+    }
+
+}
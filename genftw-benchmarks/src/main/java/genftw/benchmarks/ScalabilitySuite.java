@@ -0,0 +1,356 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks;
+
+import genftw.core.GeneratorProcessor;
+import genftw.core.metrics.Phase;
+import genftw.core.metrics.ProcessorStatistics;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+import javax.management.ListenerNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Runs the processor in-process over synthetic projects of growing size, failing when processing time, peak heap or
+ * retained element scanning state grow faster than linearly.
+ * <p>
+ * Each project size is processed once after a warm-up run. Peak heap is the high-water mark of total live heap usage,
+ * less that of a baseline run over the same project without generator methods, so that it excludes compiler memory. For
+ * each pair of consecutive sizes, growth of a measure is its ratio divided by the ratio of type counts, so that
+ * linear behavior yields growth of 1. Usage:
+ * 
+ * <pre>
+ * java -Xmx8g -cp target/benchmarks.jar genftw.benchmarks.ScalabilitySuite [sizes] [maxGrowth]
+ * </pre>
+ * 
+ * where <tt>sizes</tt> is a comma-separated list of type counts (default {@value #DEFAULT_SIZES}) and
+ * <tt>maxGrowth</tt> is the maximum allowed growth (default {@value #DEFAULT_MAX_GROWTH}).
+ */
+public class ScalabilitySuite {
+
+    static final String DEFAULT_SIZES = "1000,10000,100000";
+    static final double DEFAULT_MAX_GROWTH = 1.5;
+
+    static final int MEMBERS_PER_TYPE = 5;
+    static final int ANNOTATIONS_PER_MEMBER = 2;
+    static final int META_DATA_DEPTH = 2;
+    static final int GENERATOR_METHODS = 2;
+    static final int META_DATA_PERCENT = 30;
+
+    static final long GC_NOTIFICATION_TIMEOUT_MILLIS = 5000;
+    static final long MIN_RELIABLE_HEAP_BYTES = 16 * 1024 * 1024;
+
+    static final Pattern SCANNED_RETAINED_PATTERN = Pattern.compile("\"scannedElementsRetained\": (\\d+)");
+    static final Pattern FOUND_RETAINED_PATTERN = Pattern.compile("\"foundElementsRetained\": (\\d+)");
+
+    /**
+     * Measures of a single processor run.
+     */
+    static class RunResult {
+
+        int types;
+        long elapsedMillis;
+        long processorMillis;
+        long peakHeapBytes;
+        long scannedElementsRetained;
+        long foundElementsRetained;
+
+        @Override
+        public String toString() {
+            return String.format("%8d types: %7d ms elapsed, %7d ms processor, %6d MB peak heap, "
+                    + "%8d scanned elements retained, %7d found elements retained",
+                    types, elapsedMillis, processorMillis, peakHeapBytes / (1024 * 1024),
+                    scannedElementsRetained, foundElementsRetained);
+        }
+
+    }
+
+    /**
+     * High-water mark of total live heap usage, sampled right after each garbage collection, including a full
+     * collection forced when stopped.
+     * <p>
+     * Unlike per-pool peaks, which are reached at different times, each sample is total usage of all heap pools at a
+     * single point in time. Garbage is excluded, so that samples don't depend on young generation sizing.
+     */
+    static class HeapHighWaterMark implements NotificationListener {
+
+        private final Set<String> heapPoolNames = new HashSet<String>();
+        private final AtomicLong peakBytes = new AtomicLong();
+        private final AtomicLong notifiedCollections = new AtomicLong();
+        private long startCollections;
+
+        HeapHighWaterMark() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapPoolNames.add(pool.getName());
+                }
+            }
+        }
+
+        void start() {
+            startCollections = getCollectionCount();
+            peakBytes.set(0);
+
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+            }
+        }
+
+        long stop() throws InterruptedException, ListenerNotFoundException {
+            System.gc();
+
+            // Notifications are delivered asynchronously, wait for all collections of the run
+            long collections = getCollectionCount() - startCollections;
+            long deadline = System.currentTimeMillis() + GC_NOTIFICATION_TIMEOUT_MILLIS;
+            while (notifiedCollections.get() < collections && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) collector).removeNotificationListener(this);
+            }
+
+            return peakBytes.get();
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                    (CompositeData) notification.getUserData());
+            long usedBytes = 0;
+
+            for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+                if (heapPoolNames.contains(pool.getKey())) {
+                    usedBytes += pool.getValue().getUsed();
+                }
+            }
+
+            update(usedBytes);
+            notifiedCollections.incrementAndGet();
+        }
+
+        void update(long usedBytes) {
+            long peak = peakBytes.get();
+            while (usedBytes > peak && !peakBytes.compareAndSet(peak, usedBytes)) {
+                peak = peakBytes.get();
+            }
+        }
+
+        static long getCollectionCount() {
+            long count = 0;
+
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, collector.getCollectionCount());
+            }
+
+            return count;
+        }
+
+    }
+
+    public static void main(String[] args) throws Exception {
+        String sizes = args.length > 0 ? args[0] : DEFAULT_SIZES;
+        double maxGrowth = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_MAX_GROWTH;
+        List<Integer> typeCounts = new ArrayList<Integer>();
+
+        for (String size : sizes.split(",")) {
+            typeCounts.add(Integer.valueOf(size.trim()));
+        }
+
+        // Warm up with the smallest project
+        run(typeCounts.get(0));
+
+        List<RunResult> results = new ArrayList<RunResult>();
+        for (int types : typeCounts) {
+            RunResult result = run(types);
+            results.add(result);
+            System.out.println(result);
+        }
+
+        List<String> failures = checkGrowth(results, maxGrowth);
+        for (String failure : failures) {
+            System.out.println("FAILED: " + failure);
+        }
+
+        if (!failures.isEmpty()) {
+            System.exit(1);
+        }
+
+        System.out.println("Growth within " + maxGrowth + "x of linear");
+    }
+
+    static List<String> checkGrowth(List<RunResult> results, double maxGrowth) {
+        List<String> failures = new ArrayList<String>();
+
+        for (int i = 1; i < results.size(); i++) {
+            RunResult previous = results.get(i - 1);
+            RunResult current = results.get(i);
+            double sizeRatio = (double) current.types / previous.types;
+
+            checkGrowth(failures, "processor time", previous.types, current.types,
+                    previous.processorMillis, current.processorMillis, 1, sizeRatio, maxGrowth);
+            // Heap growth of small projects is dominated by collection timing
+            checkGrowth(failures, "peak heap", previous.types, current.types,
+                    previous.peakHeapBytes, current.peakHeapBytes, MIN_RELIABLE_HEAP_BYTES, sizeRatio, maxGrowth);
+            checkGrowth(failures, "scanned elements retained", previous.types, current.types,
+                    previous.scannedElementsRetained, current.scannedElementsRetained, 1, sizeRatio, maxGrowth);
+            checkGrowth(failures, "found elements retained", previous.types, current.types,
+                    previous.foundElementsRetained, current.foundElementsRetained, 1, sizeRatio, maxGrowth);
+        }
+
+        return failures;
+    }
+
+    static void checkGrowth(List<String> failures, String measure, int previousTypes, int currentTypes,
+            long previousValue, long currentValue, long minValue, double sizeRatio, double maxGrowth) {
+        // Ignore measures too small to be reliable
+        if (previousValue < minValue) {
+            return;
+        }
+
+        double growth = ((double) currentValue / previousValue) / sizeRatio;
+
+        if (growth > maxGrowth) {
+            failures.add(String.format("%s grows %.2fx faster than linear from %d to %d types",
+                    measure, growth, previousTypes, currentTypes));
+        }
+    }
+
+    static RunResult run(int types) throws Exception {
+        // Baseline compiler memory, processed without generator methods
+        RunResult baseline = process(types, 0, null);
+
+        File metricsFile = File.createTempFile("genftw-metrics", ".json");
+        try {
+            RunResult result = process(types, GENERATOR_METHODS, metricsFile);
+            result.peakHeapBytes = Math.max(0, result.peakHeapBytes - baseline.peakHeapBytes);
+            result.processorMillis = getLastRunProcessorMillis();
+
+            String metrics = new String(Files.readAllBytes(metricsFile.toPath()), Charset.forName("UTF-8"));
+            result.scannedElementsRetained = getMaxValue(SCANNED_RETAINED_PATTERN, metrics);
+            result.foundElementsRetained = getMaxValue(FOUND_RETAINED_PATTERN, metrics);
+
+            return result;
+        } finally {
+            metricsFile.delete();
+        }
+    }
+
+    /**
+     * Processes synthetic project of the given size, measuring elapsed time and peak heap. Metrics are written to the
+     * given file, if any.
+     */
+    static RunResult process(int types, int generatorMethods, File metricsFile) throws Exception {
+        SyntheticSourceSet sourceSet = new SyntheticSourceSet(types, MEMBERS_PER_TYPE, ANNOTATIONS_PER_MEMBER,
+                META_DATA_DEPTH, generatorMethods, META_DATA_PERCENT);
+        File templateRootDir = GeneratorProcessorBenchmark.createTemplateRootDir(sourceSet.createTemplates());
+
+        try {
+            List<String> options = new ArrayList<String>(Arrays.asList(
+                    GeneratorProcessor.OPT_TEMPLATE_ROOT_DIR + "=" + templateRootDir.getAbsolutePath(),
+                    GeneratorProcessor.OPT_MATCHED_ELEMENT_PACKAGE_FILTER + "=" + sourceSet.getPackageFilter(),
+                    GeneratorProcessor.OPT_LOG_LEVEL + "=error",
+                    GeneratorProcessor.OPT_JMX_STATISTICS + "=true"));
+
+            if (metricsFile != null) {
+                options.add(GeneratorProcessor.OPT_METRICS_FILE + "=" + metricsFile.getAbsolutePath());
+            }
+
+            InMemoryCompiler compiler = new InMemoryCompiler(sourceSet.createSources(), options);
+            HeapHighWaterMark heap = new HeapHighWaterMark();
+
+            RunResult result = new RunResult();
+            result.types = types;
+
+            System.gc();
+            heap.start();
+
+            try {
+                long startNanos = System.nanoTime();
+                compiler.process(new GeneratorProcessor());
+                result.elapsedMillis = (System.nanoTime() - startNanos) / 1000000L;
+            } finally {
+                // Stop while compiler outputs are still reachable
+                result.peakHeapBytes = heap.stop();
+                compiler.close();
+            }
+
+            return result;
+        } finally {
+            for (File template : templateRootDir.listFiles()) {
+                template.delete();
+            }
+
+            templateRootDir.delete();
+        }
+    }
+
+    static long getLastRunProcessorMillis() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(ProcessorStatistics.OBJECT_NAME);
+        long millis = 0;
+
+        for (Phase phase : Phase.values()) {
+            String id = phase.id();
+            millis += (Long) server.getAttribute(name,
+                    "LastRun" + Character.toUpperCase(id.charAt(0)) + id.substring(1) + "Millis");
+        }
+
+        return millis;
+    }
+
+    static long getMaxValue(Pattern pattern, String metrics) {
+        Matcher matcher = pattern.matcher(metrics);
+        long max = 0;
+
+        while (matcher.find()) {
+            max = Math.max(max, Long.parseLong(matcher.group(1)));
+        }
+
+        return max;
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Generates Java sources and templates of a synthetic project processed by GenFTW.
+ * <p>
+ * Model types (all of them, or the given percentage) are annotated by a chain of annotation types of the given depth,
+ * the last of which carries {@code @MetaData(kind = "entity")}. Each model type declares the given number of annotated fields with accessors.
+ * Generator methods alternate between per-element outputs ({@code @ForEachElement}) and aggregate outputs
+ * ({@code @ForAllElements}).
+ */
+public class SyntheticSourceSet {
+
+    static final String BASE_PACKAGE = "bench";
+    static final String MODEL_PACKAGE = BASE_PACKAGE + ".model";
+    static final String GENERATOR_PACKAGE = BASE_PACKAGE + ".gen";
+
+    static final int TYPES_PER_PACKAGE = 100;
+
+    static final String FOR_EACH_TEMPLATE = "each.ftl";
+    static final String FOR_ALL_TEMPLATE = "all.ftl";
+
+    private final int types;
+    private final int membersPerType;
+    private final int annotationsPerMember;
+    private final int metaDataDepth;
+    private final int generatorMethods;
+    private final int metaDataPercent;
+
+    public SyntheticSourceSet(int types, int membersPerType, int annotationsPerMember,
+            int metaDataDepth, int generatorMethods) {
+        this(types, membersPerType, annotationsPerMember, metaDataDepth, generatorMethods, 100);
+    }
+
+    public SyntheticSourceSet(int types, int membersPerType, int annotationsPerMember,
+            int metaDataDepth, int generatorMethods, int metaDataPercent) {
+        this.types = types;
+        this.membersPerType = membersPerType;
+        this.annotationsPerMember = annotationsPerMember;
+        this.metaDataDepth = Math.max(1, metaDataDepth);
+        this.generatorMethods = generatorMethods;
+        this.metaDataPercent = metaDataPercent;
+    }
+
+    /**
+     * Returns the package filter matching all generated model types.
+     */
+    public String getPackageFilter() {
+        return BASE_PACKAGE + "\\..*";
+    }
+
+    /**
+     * Returns source file contents, keyed by source file path.
+     */
+    public Map<String, String> createSources() {
+        Map<String, String> sources = new LinkedHashMap<String, String>();
+
+        for (int depth = 1; depth <= metaDataDepth; depth++) {
+            sources.put(getPath(MODEL_PACKAGE, "Meta" + depth), createMetaAnnotation(depth));
+        }
+
+        for (int a = 0; a < annotationsPerMember; a++) {
+            sources.put(getPath(MODEL_PACKAGE, "Column" + a), createMemberAnnotation(a));
+        }
+
+        for (int t = 0; t < types; t++) {
+            String pkg = MODEL_PACKAGE + ".p" + (t / TYPES_PER_PACKAGE);
+            sources.put(getPath(pkg, "Type" + t), createModelType(pkg, t));
+        }
+
+        sources.put(getPath(GENERATOR_PACKAGE, "BenchGenerator"), createGenerator());
+        return sources;
+    }
+
+    /**
+     * Returns template file contents, keyed by template file name.
+     */
+    public Map<String, String> createTemplates() {
+        Map<String, String> templates = new LinkedHashMap<String, String>();
+
+        templates.put(FOR_EACH_TEMPLATE, ""
+                + "package ${elementGoodies.getPackageOf(matchResult)};\n"
+                + "public class ${matchResult.simpleName}Info {\n"
+                + "<#list elementGoodies.getProperties(matchResult) as p>"
+                + "    public static final String ${p.name?upper_case} = \"${p.name}\";\n"
+                + "</#list>"
+                + "<#list elementGoodies.getFields(matchResult) as f>"
+                + "    // ${f.simpleName}: ${f.annotationMirrors?size} annotations\n"
+                + "</#list>"
+                + "}\n");
+
+        templates.put(FOR_ALL_TEMPLATE, ""
+                + "package " + BASE_PACKAGE + ";\n"
+                + "public class Registry {\n"
+                + "<#list entities as e>"
+                + "    // ${e.qualifiedName}\n"
+                + "</#list>"
+                + "    public static final int COUNT = ${entities?size};\n"
+                + "}\n");
+
+        return templates;
+    }
+
+    String createMetaAnnotation(int depth) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(MODEL_PACKAGE).append(";\n");
+        sb.append("import java.lang.annotation.*;\n");
+
+        if (depth == metaDataDepth) {
+            sb.append("@genftw.api.MetaData(kind = \"entity\", properties = {\"table\"})\n");
+        } else {
+            sb.append("@Meta").append(depth + 1).append('\n');
+        }
+
+        sb.append("@Retention(RetentionPolicy.RUNTIME)\n");
+        sb.append("@Target({ElementType.TYPE, ElementType.ANNOTATION_TYPE})\n");
+        sb.append("public @interface Meta").append(depth).append(" {\n");
+        sb.append("    String value() default \"\";\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    String createMemberAnnotation(int index) {
+        return "package " + MODEL_PACKAGE + ";\n"
+                + "import java.lang.annotation.*;\n"
+                + "@Retention(RetentionPolicy.RUNTIME)\n"
+                + "@Target(ElementType.FIELD)\n"
+                + "public @interface Column" + index + " {\n"
+                + "    String name() default \"\";\n"
+                + "    int length() default 255;\n"
+                + "}\n";
+    }
+
+    String createModelType(String pkg, int index) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(pkg).append(";\n");
+        sb.append("import ").append(MODEL_PACKAGE).append(".*;\n");
+        // Spread types with meta-data evenly
+        if ((index * metaDataPercent) % 100 < metaDataPercent) {
+            sb.append("@Meta1(\"T").append(index).append("\")\n");
+        }
+
+        sb.append("public class Type").append(index).append(" {\n");
+
+        for (int m = 0; m < membersPerType; m++) {
+            String field = "field" + m;
+            String accessor = "Field" + m;
+
+            sb.append("   ");
+            for (int a = 0; a < annotationsPerMember; a++) {
+                sb.append(" @Column").append(a).append("(name = \"").append(field).append("\")");
+            }
+
+            sb.append("\n    private String ").append(field).append(";\n");
+            sb.append("    public String get").append(accessor).append("() { return ").append(field).append("; }\n");
+            sb.append("    public void set").append(accessor).append("(String value) { ").append(field);
+            sb.append(" = value; }\n");
+        }
+
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    String createGenerator() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(GENERATOR_PACKAGE).append(";\n");
+        sb.append("import genftw.api.*;\n");
+        sb.append("import javax.lang.model.element.ElementKind;\n");
+        sb.append("@Generator\n");
+        sb.append("public interface BenchGenerator {\n");
+
+        for (int g = 0; g < generatorMethods; g++) {
+            if (g % 2 == 0) {
+                sb.append("    @Produces(output = \"{packageElementPath}/{elementSimpleName}Info").append(g);
+                sb.append(".java\", template = \"").append(FOR_EACH_TEMPLATE).append("\")\n");
+                sb.append("    @ForEachElement(@Where(kind = ElementKind.CLASS, metaData = \"entity\"))\n");
+            } else {
+                sb.append("    @Produces(output = \"").append(BASE_PACKAGE).append("/Registry").append(g);
+                sb.append(".java\", template = \"").append(FOR_ALL_TEMPLATE).append("\")\n");
+                sb.append("    @ForAllElements(@Where(kind = ElementKind.CLASS, metaData = \"entity\", ");
+                sb.append("matchResultVariable = \"entities\"))\n");
+            }
+
+            sb.append("    void generate").append(g).append("();\n");
+        }
+
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    static String getPath(String pkg, String simpleName) {
+        return pkg.replace('.', '/') + "/" + simpleName + ".java";
+    }
+
+}
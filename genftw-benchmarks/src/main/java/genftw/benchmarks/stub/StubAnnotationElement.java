@@ -0,0 +1,142 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks.stub;
+
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ElementVisitor;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Immutable {@link ExecutableElement} stub of an annotation type element, used as annotation value key.
+ */
+class StubAnnotationElement implements ExecutableElement {
+
+    private final StubElement element;
+
+    StubAnnotationElement(StubElement element) {
+        this.element = element;
+    }
+
+    @Override
+    public TypeMirror asType() {
+        return null;
+    }
+
+    @Override
+    public ElementKind getKind() {
+        return ElementKind.METHOD;
+    }
+
+    @Override
+    public Set<Modifier> getModifiers() {
+        return element.getModifiers();
+    }
+
+    @Override
+    public Name getSimpleName() {
+        return element.getSimpleName();
+    }
+
+    @Override
+    public Element getEnclosingElement() {
+        return null;
+    }
+
+    @Override
+    public List<? extends Element> getEnclosedElements() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<? extends AnnotationMirror> getAnnotationMirrors() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<? extends TypeParameterElement> getTypeParameters() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public TypeMirror getReturnType() {
+        return null;
+    }
+
+    @Override
+    public List<? extends VariableElement> getParameters() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public TypeMirror getReceiverType() {
+        return null;
+    }
+
+    @Override
+    public boolean isVarArgs() {
+        return false;
+    }
+
+    @Override
+    public boolean isDefault() {
+        return false;
+    }
+
+    @Override
+    public List<? extends TypeMirror> getThrownTypes() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public AnnotationValue getDefaultValue() {
+        return null;
+    }
+
+    @Override
+    public <A extends Annotation> A getAnnotation(Class<A> annotationType) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <A extends Annotation> A[] getAnnotationsByType(Class<A> annotationType) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <R, P> R accept(ElementVisitor<R, P> v, P p) {
+        return v.visitExecutable(this, p);
+    }
+
+    @Override
+    public String toString() {
+        return element.getSimpleName() + "()";
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks.stub;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.AnnotationValueVisitor;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+
+/**
+ * Immutable {@link AnnotationMirror} stub, holding all annotation values including defaults.
+ */
+public class StubAnnotationMirror implements AnnotationMirror {
+
+    private final StubDeclaredType annotationType;
+    private final Map<ExecutableElement, AnnotationValue> values;
+
+    public StubAnnotationMirror(StubElement annotationTypeElement, Map<String, Object> values) {
+        this.annotationType = annotationTypeElement.asType();
+        Map<ExecutableElement, AnnotationValue> elementValues = new LinkedHashMap<ExecutableElement, AnnotationValue>();
+
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            StubElement key = new StubElement(ElementKind.METHOD,
+                    annotationTypeElement.getQualifiedName() + "." + entry.getKey(),
+                    Collections.<Modifier> emptySet(), Collections.<AnnotationMirror> emptyList());
+
+            elementValues.put(new StubAnnotationElement(key), new StubAnnotationValue(entry.getValue()));
+        }
+
+        this.values = Collections.unmodifiableMap(elementValues);
+    }
+
+    @Override
+    public StubDeclaredType getAnnotationType() {
+        return annotationType;
+    }
+
+    @Override
+    public Map<? extends ExecutableElement, ? extends AnnotationValue> getElementValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "@" + annotationType;
+    }
+
+}
+
+/**
+ * Immutable {@link AnnotationValue} stub. String arrays are converted into lists of annotation values.
+ */
+class StubAnnotationValue implements AnnotationValue {
+
+    private final Object value;
+
+    StubAnnotationValue(Object value) {
+        if (value instanceof String[]) {
+            String[] items = (String[]) value;
+            AnnotationValue[] itemValues = new AnnotationValue[items.length];
+
+            for (int i = 0; i < items.length; i++) {
+                itemValues[i] = new StubAnnotationValue(items[i]);
+            }
+
+            this.value = Collections.unmodifiableList(Arrays.asList(itemValues));
+        } else {
+            this.value = value;
+        }
+    }
+
+    @Override
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <R, P> R accept(AnnotationValueVisitor<R, P> v, P p) {
+        if (value instanceof String) {
+            return v.visitString((String) value, p);
+        } else if (value instanceof List<?>) {
+            return v.visitArray((List<? extends AnnotationValue>) value, p);
+        }
+
+        return v.visitUnknown(this, p);
+    }
+
+    @Override
+    public String toString() {
+        return value instanceof String ? "\"" + value + "\"" : String.valueOf(value);
+    }
+
+}
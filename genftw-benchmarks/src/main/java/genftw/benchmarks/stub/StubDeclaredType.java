@@ -0,0 +1,85 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks.stub;
+
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.List;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVisitor;
+
+/**
+ * Immutable {@link DeclaredType} stub of a {@link StubElement}.
+ */
+public class StubDeclaredType implements DeclaredType {
+
+    private final StubElement element;
+
+    StubDeclaredType(StubElement element) {
+        this.element = element;
+    }
+
+    @Override
+    public StubElement asElement() {
+        return element;
+    }
+
+    @Override
+    public TypeMirror getEnclosingType() {
+        return null;
+    }
+
+    @Override
+    public List<? extends TypeMirror> getTypeArguments() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public TypeKind getKind() {
+        return TypeKind.DECLARED;
+    }
+
+    @Override
+    public List<? extends AnnotationMirror> getAnnotationMirrors() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public <A extends Annotation> A getAnnotation(Class<A> annotationType) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <A extends Annotation> A[] getAnnotationsByType(Class<A> annotationType) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <R, P> R accept(TypeVisitor<R, P> v, P p) {
+        return v.visitDeclared(this, p);
+    }
+
+    @Override
+    public String toString() {
+        return element.toString();
+    }
+
+}
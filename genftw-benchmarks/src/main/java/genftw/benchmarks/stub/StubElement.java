@@ -0,0 +1,141 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks.stub;
+
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ElementVisitor;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Immutable {@link TypeElement} stub, also used for elements of other kinds.
+ * <p>
+ * All collections are created up front, so that element queries do not allocate.
+ */
+public class StubElement implements TypeElement {
+
+    private final ElementKind kind;
+    private final Set<Modifier> modifiers;
+    private final Name simpleName;
+    private final Name qualifiedName;
+    private final List<? extends AnnotationMirror> annotationMirrors;
+    private final StubDeclaredType type;
+
+    public StubElement(ElementKind kind, String qualifiedName, Set<Modifier> modifiers,
+            List<? extends AnnotationMirror> annotationMirrors) {
+        this.kind = kind;
+        this.modifiers = Collections.unmodifiableSet(modifiers.isEmpty()
+                ? EnumSet.noneOf(Modifier.class) : EnumSet.copyOf(modifiers));
+        this.simpleName = new StubName(qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1));
+        this.qualifiedName = new StubName(qualifiedName);
+        this.annotationMirrors = Collections.unmodifiableList(annotationMirrors);
+        this.type = new StubDeclaredType(this);
+    }
+
+    @Override
+    public StubDeclaredType asType() {
+        return type;
+    }
+
+    @Override
+    public ElementKind getKind() {
+        return kind;
+    }
+
+    @Override
+    public Set<Modifier> getModifiers() {
+        return modifiers;
+    }
+
+    @Override
+    public Name getSimpleName() {
+        return simpleName;
+    }
+
+    @Override
+    public Name getQualifiedName() {
+        return qualifiedName;
+    }
+
+    @Override
+    public List<? extends AnnotationMirror> getAnnotationMirrors() {
+        return annotationMirrors;
+    }
+
+    @Override
+    public Element getEnclosingElement() {
+        return null;
+    }
+
+    @Override
+    public List<? extends Element> getEnclosedElements() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public NestingKind getNestingKind() {
+        return NestingKind.TOP_LEVEL;
+    }
+
+    @Override
+    public TypeMirror getSuperclass() {
+        return null;
+    }
+
+    @Override
+    public List<? extends TypeMirror> getInterfaces() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<? extends TypeParameterElement> getTypeParameters() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public <A extends Annotation> A getAnnotation(Class<A> annotationType) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <A extends Annotation> A[] getAnnotationsByType(Class<A> annotationType) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <R, P> R accept(ElementVisitor<R, P> v, P p) {
+        return v.visitType(this, p);
+    }
+
+    @Override
+    public String toString() {
+        return qualifiedName.toString();
+    }
+
+}
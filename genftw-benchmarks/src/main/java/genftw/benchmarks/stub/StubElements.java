@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks.stub;
+
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+
+/**
+ * {@link Elements} stub that supports annotation queries of stub elements only.
+ * <p>
+ * Stub elements declare all their annotations and stub annotation mirrors hold all values including defaults, so both
+ * queries simply return precomputed collections.
+ */
+public class StubElements implements Elements {
+
+    @Override
+    public List<? extends AnnotationMirror> getAllAnnotationMirrors(Element e) {
+        return e.getAnnotationMirrors();
+    }
+
+    @Override
+    public Map<? extends ExecutableElement, ? extends AnnotationValue> getElementValuesWithDefaults(
+            AnnotationMirror a) {
+        return a.getElementValues();
+    }
+
+    @Override
+    public PackageElement getPackageElement(CharSequence name) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TypeElement getTypeElement(CharSequence name) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getDocComment(Element e) {
+        return null;
+    }
+
+    @Override
+    public boolean isDeprecated(Element e) {
+        return false;
+    }
+
+    @Override
+    public Name getBinaryName(TypeElement type) {
+        return type.getQualifiedName();
+    }
+
+    @Override
+    public PackageElement getPackageOf(Element type) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<? extends Element> getAllMembers(TypeElement type) {
+        return type.getEnclosedElements();
+    }
+
+    @Override
+    public boolean hides(Element hider, Element hidden) {
+        return false;
+    }
+
+    @Override
+    public boolean overrides(ExecutableElement overrider, ExecutableElement overridden, TypeElement type) {
+        return false;
+    }
+
+    @Override
+    public String getConstantExpression(Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void printElements(Writer w, Element... elements) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Name getName(CharSequence cs) {
+        return new StubName(cs.toString());
+    }
+
+    @Override
+    public boolean isFunctionalInterface(TypeElement type) {
+        return false;
+    }
+
+}
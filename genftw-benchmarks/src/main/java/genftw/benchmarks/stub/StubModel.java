@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.benchmarks.stub;
+
+import genftw.api.MetaData;
+import genftw.api.Where;
+
+import java.lang.annotation.Retention;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+
+/**
+ * Factory of stub element models used by matcher microbenchmarks.
+ */
+public class StubModel {
+
+    public static final String META_DATA_KIND = "entity";
+
+    private static final Set<Modifier> NO_MODIFIERS = Collections.emptySet();
+    private static final List<AnnotationMirror> NO_ANNOTATIONS = Collections.emptyList();
+
+    private final StubElement retentionType;
+    private final StubElement metaDataType;
+
+    public StubModel() {
+        this.retentionType = new StubElement(ElementKind.ANNOTATION_TYPE, Retention.class.getName(),
+                EnumSet.of(Modifier.PUBLIC), NO_ANNOTATIONS);
+        this.metaDataType = new StubElement(ElementKind.ANNOTATION_TYPE, MetaData.class.getName(),
+                EnumSet.of(Modifier.PUBLIC), Collections.singletonList(retention()));
+    }
+
+    StubAnnotationMirror retention() {
+        return new StubAnnotationMirror(retentionType, Collections.<String, Object> singletonMap("value", "RUNTIME"));
+    }
+
+    /**
+     * Creates public class annotated by a chain of annotation types of the given depth, the last of which carries
+     * meta-data annotation with the given properties. Depth of zero means the class carries meta-data annotation
+     * directly.
+     */
+    public StubElement createType(String qualifiedName, int metaDataDepth, String... metaDataProperties) {
+        Map<String, Object> metaDataValues = new HashMap<String, Object>();
+        metaDataValues.put("kind", META_DATA_KIND);
+        metaDataValues.put("properties", metaDataProperties);
+
+        AnnotationMirror annotation = new StubAnnotationMirror(metaDataType, metaDataValues);
+
+        for (int depth = metaDataDepth; depth > 0; depth--) {
+            StubElement annotationType = new StubElement(ElementKind.ANNOTATION_TYPE,
+                    qualifiedName + "Meta" + depth, EnumSet.of(Modifier.PUBLIC),
+                    Arrays.asList(retention(), annotation));
+
+            annotation = new StubAnnotationMirror(annotationType,
+                    Collections.<String, Object> singletonMap("value", "value" + depth));
+        }
+
+        return new StubElement(ElementKind.CLASS, qualifiedName,
+                EnumSet.of(Modifier.PUBLIC, Modifier.FINAL), Collections.singletonList(annotation));
+    }
+
+    /**
+     * Creates element of the given kind without annotations.
+     */
+    public StubElement createElement(ElementKind kind, String qualifiedName) {
+        return new StubElement(kind, qualifiedName, NO_MODIFIERS, NO_ANNOTATIONS);
+    }
+
+    /**
+     * Creates match definition with the given attribute values, using default values for other attributes.
+     */
+    public static Where createDefinition(final Map<String, Object> values) {
+        return (Where) Proxy.newProxyInstance(Where.class.getClassLoader(), new Class<?>[] { Where.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+
+                        if ("annotationType".equals(name)) {
+                            return Where.class;
+                        } else if ("hashCode".equals(name)) {
+                            return values.hashCode();
+                        } else if ("equals".equals(name)) {
+                            return proxy == args[0];
+                        } else if ("toString".equals(name)) {
+                            return "@" + Where.class.getName() + values;
+                        }
+
+                        return values.containsKey(name) ? values.get(name) : method.getDefaultValue();
+                    }
+                });
+    }
+
+}
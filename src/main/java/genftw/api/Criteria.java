@@ -0,0 +1,102 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+
+/**
+ * Defines source element criteria that can be combined within a {@link Where} definition.
+ * <p>
+ * Attributes have the same meaning as corresponding attributes of {@link Where}, and must be all satisfied by an
+ * element, unless the criteria are {@linkplain #negate() negated}.
+ * 
+ * @see Where#anyOf()
+ * @see Where#noneOf()
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({})
+@Documented
+public @interface Criteria {
+
+    /**
+     * Element kind(s) to match.
+     * 
+     * @see Where#kind()
+     */
+    ElementKind[] kind() default {};
+
+    /**
+     * Filter elements that have given modifiers.
+     * 
+     * @see Where#modifiers()
+     */
+    Modifier[] modifiers() default {};
+
+    /**
+     * Filter elements whose simple name matches given regular expression pattern.
+     * 
+     * @see Where#simpleNameMatches()
+     */
+    String simpleNameMatches() default Where.DONT_MATCH;
+
+    /**
+     * Filter elements that have given annotations, defined by their fully qualified names.
+     * 
+     * @see Where#annotations()
+     */
+    String[] annotations() default {};
+
+    /**
+     * Filter elements whose type is a subtype of all given types.
+     * 
+     * @see Where#subtypeOf()
+     */
+    String[] subtypeOf() default {};
+
+    /**
+     * Filter elements whose type is assignable to all given types.
+     * 
+     * @see Where#assignableTo()
+     */
+    String[] assignableTo() default {};
+
+    /**
+     * Meta-data match string.
+     * 
+     * @see Where#metaData()
+     */
+    String metaData() default Where.DONT_MATCH;
+
+    /**
+     * Fully qualified name of {@link ElementPredicate} class that filters elements.
+     * 
+     * @see Where#filter()
+     */
+    String filter() default "";
+
+    /**
+     * When {@code true}, elements match these criteria if they don't satisfy all of the attributes.
+     */
+    boolean negate() default false;
+
+}
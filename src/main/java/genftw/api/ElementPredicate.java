@@ -0,0 +1,41 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.api;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+
+/**
+ * Custom element filter logic, referenced by {@linkplain Where#filter() match definitions}.
+ * <p>
+ * Implementing classes must be available on the annotation processor path, and must provide either a public
+ * constructor taking {@link ProcessingEnvironment} or a public no-arg constructor. A single instance of each
+ * implementing class is created per processor, and reused for all elements tested during processing.
+ * <p>
+ * Element predicates are initially evaluated after all other match criteria. Evaluation order then follows measured
+ * cost and selectivity of the criteria, so predicates must not rely on other criteria being satisfied.
+ * 
+ * @see Where#filter()
+ */
+public interface ElementPredicate {
+
+    /**
+     * Returns {@code true} if the given element should be matched.
+     */
+    boolean matches(Element element);
+
+}
@@ -24,6 +24,22 @@ import java.lang.annotation.Target;
 
 /**
  * Causes a generator method to be processed once, providing all elements matching given criteria to the template.
+ * <p>
+ * When {@linkplain #shardSize() shard size} is set, elements matching the first match definition are instead split
+ * into shards, and the generator method is processed once per shard. Each element is assigned to a shard by hash code
+ * of its qualified name, so that adding or removing an element changes only the shard it belongs to, unless the number
+ * of shards changes. The number of shards is a power of two, doubling as the number of elements grows. Elements within
+ * each shard are sorted by their qualified names. Elements matching other definitions are provided to each shard in
+ * full.
+ * <p>
+ * Sharded generator methods allow the use of following variables within {@linkplain Produces#output() output file
+ * pathname}:
+ * <p>
+ * <ul>
+ * <li>{@code shardIndex}: zero-based index of the shard
+ * </ul>
+ * <p>
+ * Index and count of the shard are provided to the template as {@code shardIndex} and {@code shardCount} variables.
  * 
  * @see Where
  */
@@ -37,4 +53,24 @@ public @interface ForAllElements {
      */
     Where[] value() default @Where;
 
+    /**
+     * Average number of elements per shard, or zero to disable sharding.
+     * <p>
+     * Sizes of individual shards vary, depending on hash codes of element names.
+     */
+    int shardSize() default 0;
+
+    /**
+     * Template file used to generate the index of all shards, processed once after all shards.
+     * <p>
+     * Index template is provided with all matched elements, the {@code shardCount} variable and the
+     * {@code shardOutputFiles} sequence of shard output file pathnames.
+     */
+    String shardIndexTemplate() default "";
+
+    /**
+     * Index file pathname, relative to {@linkplain Produces#outputRootLocation() output root location}.
+     */
+    String shardIndexOutput() default "";
+
 }
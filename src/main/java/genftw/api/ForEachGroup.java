@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Causes a generator method to be processed once per group of elements matching given criteria, providing elements
+ * of each group to the template.
+ * <p>
+ * Matched elements are partitioned into groups as defined by {@link #groupBy()}. Groups are processed in the order of
+ * their keys, and elements within each group keep their match order.
+ * <p>
+ * Allows the use of following variables within {@linkplain Produces#output() output file pathname}:
+ * <p>
+ * <ul>
+ * <li>{@code groupKey}: key of the group, e.g. qualified name of the package
+ * <li>{@code groupKeyPath}: key of the group with dots replaced by slashes, e.g. relative pathname of the package
+ * </ul>
+ * 
+ * @see Where
+ * @see GroupBy
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Documented
+public @interface ForEachGroup {
+
+    /**
+     * Source element match criteria.
+     */
+    Where value() default @Where;
+
+    /**
+     * Defines how matched elements are partitioned into groups.
+     */
+    GroupBy groupBy() default GroupBy.PACKAGE;
+
+    /**
+     * Name of meta-data property whose values partition matched elements, when grouping by
+     * {@linkplain GroupBy#META_DATA_PROPERTY meta-data property}.
+     * <p>
+     * Property names starting with {@code @} refer to {@link MetaData} target annotation properties.
+     */
+    String metaDataProperty() default "";
+
+    /**
+     * Name of template variable that will hold the group key.
+     */
+    String groupKeyVariable() default "groupKey";
+
+    /**
+     * Additional elements to match and provide to the template.
+     */
+    Where[] matchExtraElements() default {};
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.api;
+
+/**
+ * Defines how {@linkplain ForEachGroup grouped generator methods} partition matched elements.
+ */
+public enum GroupBy {
+
+    /**
+     * Group elements by the qualified name of their package.
+     */
+    PACKAGE,
+
+    /**
+     * Group elements by the qualified name of their nearest enclosing type. Top-level types are grouped by their own
+     * qualified name.
+     */
+    ENCLOSING_TYPE,
+
+    /**
+     * Group elements by the value of {@linkplain ForEachGroup#metaDataProperty() meta-data property}. Elements
+     * without the property value are not part of any group.
+     */
+    META_DATA_PROPERTY
+
+}
@@ -29,8 +29,13 @@ import javax.lang.model.element.Modifier;
  * Defines source element match criteria.
  * <p>
  * Matched element(s) will be a specialization of the Java Mirror API {@link Element} interface.
+ * <p>
+ * Elements must satisfy all of the attributes. Alternative and excluded element criteria can be defined using
+ * {@link #anyOf()} and {@link #noneOf()}, respectively. Criteria are evaluated in the order of their measured cost and
+ * selectivity, regardless of the order of attributes.
  * 
  * @see MetaData
+ * @see Criteria
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({})
@@ -52,6 +57,17 @@ public @interface Where {
      */
     ElementKind[] kind() default {};
 
+    /**
+     * Filter elements declared in given packages, defined by package name prefixes.
+     * <p>
+     * A prefix matches the named package and all its subpackages. Prefixes starting with {@code !} exclude packages,
+     * e.g. <tt>{"com.acme", "!com.acme.internal"}</tt>. Empty array means no package restrictions.
+     * <p>
+     * Packages and types that are out of scope of all match definitions are not scanned, so their members and
+     * supertypes are not reached through them.
+     */
+    String[] packages() default {};
+
     /**
      * Filter elements that have given modifiers.
      */
@@ -69,10 +85,26 @@ public @interface Where {
      */
     String[] annotations() default {};
 
+    /**
+     * Filter elements whose type is a subtype of all given types, defined by their fully qualified names.
+     * <p>
+     * Type of a type element is the type itself, type of a method is its return type, and type of other elements is
+     * their {@linkplain Element#asType() type}. Types are compared by erasure, and each type is a subtype of itself.
+     */
+    String[] subtypeOf() default {};
+
+    /**
+     * Filter elements whose type is assignable to all given types, defined by their fully qualified names.
+     * <p>
+     * Unlike {@link #subtypeOf()}, primitive types are boxed before comparison, e.g. {@code int} elements are
+     * assignable to {@code java.lang.Number}.
+     */
+    String[] assignableTo() default {};
+
     /**
      * {@linkplain MetaData Meta-data} match string.
      * <p>
-     * Always prefer meta-data matching over custom filter logic.
+     * Always prefer meta-data matching over custom {@linkplain #filter() filter} logic.
      * <p>
      * Examples:
      * <p>
@@ -88,4 +120,27 @@ public @interface Where {
      */
     String metaData() default DONT_MATCH;
 
+    /**
+     * Fully qualified name of {@link ElementPredicate} class that filters elements.
+     * <p>
+     * Predicate class is loaded from the annotation processor path. Filtering elements using a predicate is much
+     * faster than filtering match results in templates. Empty string means no custom filter.
+     */
+    String filter() default "";
+
+    /**
+     * Filter elements that match at least one of given criteria.
+     * <p>
+     * Empty array means no alternative criteria.
+     */
+    Criteria[] anyOf() default {};
+
+    /**
+     * Filter elements that match none of given criteria.
+     * <p>
+     * A single criteria negates its attributes, e.g. <tt>noneOf = &#64;Criteria(modifiers = Modifier.ABSTRACT)</tt>
+     * matches elements that are not abstract.
+     */
+    Criteria[] noneOf() default {};
+
 }
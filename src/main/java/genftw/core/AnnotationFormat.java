@@ -0,0 +1,413 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts annotations to their textual form and back, without loading classes of annotated elements.
+ * <p>
+ * Annotations are written as {@code @SimpleName(attribute = value, ...)}, listing only attributes that differ from
+ * their defaults. Supported attribute values are strings (quoted, with Java escapes), integers, booleans, enum
+ * constants (by name), nested annotations and arrays of these ({@code {value, ...}}). Parsed annotations are
+ * implemented by dynamic proxies that follow the {@link Annotation} contract.
+ */
+class AnnotationFormat {
+
+    private final Map<String, Class<? extends Annotation>> topLevelTypes;
+    private String text;
+    private int pos;
+
+    AnnotationFormat(List<Class<? extends Annotation>> topLevelTypes) {
+        this.topLevelTypes = new LinkedHashMap<String, Class<? extends Annotation>>();
+
+        for (Class<? extends Annotation> type : topLevelTypes) {
+            this.topLevelTypes.put(type.getSimpleName(), type);
+        }
+    }
+
+    static String format(Annotation annotation) {
+        StringBuilder sb = new StringBuilder();
+        appendAnnotation(sb, annotation);
+        return sb.toString();
+    }
+
+    static void appendAnnotation(StringBuilder sb, Annotation annotation) {
+        Class<? extends Annotation> type = annotation.annotationType();
+        sb.append('@').append(type.getSimpleName()).append('(');
+
+        boolean first = true;
+        for (Method attribute : getAttributes(type)) {
+            Object value = invoke(attribute, annotation);
+
+            if (!valueEquals(value, attribute.getDefaultValue())) {
+                sb.append(first ? "" : ", ").append(attribute.getName()).append(" = ");
+                appendValue(sb, value);
+                first = false;
+            }
+        }
+
+        sb.append(')');
+    }
+
+    static void appendValue(StringBuilder sb, Object value) {
+        if (value instanceof String) {
+            appendString(sb, (String) value);
+        } else if (value instanceof Enum<?>) {
+            sb.append(((Enum<?>) value).name());
+        } else if (value instanceof Annotation) {
+            appendAnnotation(sb, (Annotation) value);
+        } else if (value instanceof Object[]) {
+            Object[] items = (Object[]) value;
+            sb.append('{');
+
+            for (int i = 0; i < items.length; i++) {
+                sb.append(i == 0 ? "" : ", ");
+                appendValue(sb, items[i]);
+            }
+
+            sb.append('}');
+        } else if (value instanceof Integer || value instanceof Boolean) {
+            sb.append(value);
+        } else {
+            throw new IllegalArgumentException("Unsupported annotation value " + value);
+        }
+    }
+
+    static void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+
+        sb.append('"');
+    }
+
+    /**
+     * Parses a whitespace-separated sequence of annotations of the top-level types.
+     * 
+     * @throws IllegalArgumentException
+     *             if the text is malformed
+     */
+    List<Annotation> parse(String text) {
+        this.text = text;
+        this.pos = 0;
+
+        List<Annotation> result = new ArrayList<Annotation>();
+        skipWhitespace();
+
+        while (pos < text.length()) {
+            String name = peekAnnotationName();
+            Class<? extends Annotation> type = topLevelTypes.get(name);
+
+            if (type == null) {
+                throw error("Unknown annotation @" + name);
+            }
+
+            result.add(parseAnnotation(type));
+            skipWhitespace();
+        }
+
+        return result;
+    }
+
+    String peekAnnotationName() {
+        int start = pos;
+        expect('@');
+        String name = parseIdentifier();
+        pos = start;
+        return name;
+    }
+
+    <A extends Annotation> A parseAnnotation(Class<A> type) {
+        expect('@');
+        if (!type.getSimpleName().equals(parseIdentifier())) {
+            throw error("Expected @" + type.getSimpleName());
+        }
+
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        expect('(');
+        skipWhitespace();
+
+        while (!accept(')')) {
+            if (!values.isEmpty()) {
+                expect(',');
+                skipWhitespace();
+            }
+
+            String name = parseIdentifier();
+            Method attribute;
+            try {
+                attribute = type.getDeclaredMethod(name);
+            } catch (NoSuchMethodException e) {
+                throw error("Unknown attribute " + name + " of @" + type.getSimpleName());
+            }
+
+            skipWhitespace();
+            expect('=');
+            skipWhitespace();
+            values.put(name, parseValue(attribute.getReturnType()));
+            skipWhitespace();
+        }
+
+        return createAnnotation(type, values);
+    }
+
+    Object parseValue(Class<?> valueType) {
+        if (valueType.isArray()) {
+            Class<?> itemType = valueType.getComponentType();
+            List<Object> items = new ArrayList<Object>();
+            expect('{');
+            skipWhitespace();
+
+            while (!accept('}')) {
+                if (!items.isEmpty()) {
+                    expect(',');
+                    skipWhitespace();
+                }
+
+                items.add(parseValue(itemType));
+                skipWhitespace();
+            }
+
+            return items.toArray((Object[]) Array.newInstance(itemType, items.size()));
+        } else if (valueType == String.class) {
+            return parseString();
+        } else if (valueType == int.class) {
+            int start = pos;
+            accept('-');
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                pos++;
+            }
+
+            try {
+                return Integer.valueOf(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("Malformed integer");
+            }
+        } else if (valueType == boolean.class) {
+            return Boolean.valueOf(parseIdentifier());
+        } else if (valueType.isEnum()) {
+            return parseEnum(valueType.asSubclass(Enum.class));
+        } else if (valueType.isAnnotation()) {
+            return parseAnnotation(valueType.asSubclass(Annotation.class));
+        }
+
+        throw error("Unsupported attribute type " + valueType.getName());
+    }
+
+    <E extends Enum<E>> E parseEnum(Class<E> enumType) {
+        String name = parseIdentifier();
+        try {
+            return Enum.valueOf(enumType, name);
+        } catch (IllegalArgumentException e) {
+            throw error("Unknown constant " + name + " of " + enumType.getSimpleName());
+        }
+    }
+
+    String parseString() {
+        StringBuilder sb = new StringBuilder();
+        expect('"');
+
+        while (pos < text.length() && text.charAt(pos) != '"') {
+            char c = text.charAt(pos++);
+
+            if (c == '\\' && pos < text.length()) {
+                c = text.charAt(pos++);
+
+                if (c == 'u' && pos + 4 <= text.length()) {
+                    try {
+                        c = (char) Integer.parseInt(text.substring(pos, pos + 4), 16);
+                    } catch (NumberFormatException e) {
+                        throw error("Malformed escape sequence");
+                    }
+                    pos += 4;
+                }
+            }
+
+            sb.append(c);
+        }
+
+        expect('"');
+        return sb.toString();
+    }
+
+    String parseIdentifier() {
+        int start = pos;
+        while (pos < text.length() && Character.isJavaIdentifierPart(text.charAt(pos))) {
+            pos++;
+        }
+
+        if (start == pos) {
+            throw error("Identifier expected");
+        }
+
+        return text.substring(start, pos);
+    }
+
+    void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    boolean accept(char c) {
+        if (pos < text.length() && text.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+
+        return false;
+    }
+
+    void expect(char c) {
+        if (!accept(c)) {
+            throw error("'" + c + "' expected");
+        }
+    }
+
+    IllegalArgumentException error(String msg) {
+        return new IllegalArgumentException(msg + " at position " + pos);
+    }
+
+    static <A extends Annotation> A createAnnotation(Class<A> type, Map<String, Object> values) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                new AnnotationHandler(type, values)));
+    }
+
+    /**
+     * Returns attributes of the given annotation type, sorted by name so that the textual form is stable.
+     */
+    static Method[] getAttributes(Class<? extends Annotation> type) {
+        Method[] result = type.getDeclaredMethods();
+        Arrays.sort(result, new Comparator<Method>() {
+            @Override
+            public int compare(Method m1, Method m2) {
+                return m1.getName().compareTo(m2.getName());
+            }
+        });
+        return result;
+    }
+
+    static Object invoke(Method attribute, Annotation annotation) {
+        try {
+            return attribute.invoke(annotation);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalArgumentException(e.getCause());
+        }
+    }
+
+    static boolean valueEquals(Object value, Object other) {
+        return Arrays.deepEquals(new Object[] { value }, new Object[] { other });
+    }
+
+    static int valueHashCode(Object value) {
+        return Arrays.deepHashCode(new Object[] { value }) - 31;
+    }
+
+    /**
+     * Implements annotation of given type with given attribute values, falling back to attribute defaults.
+     */
+    static class AnnotationHandler implements InvocationHandler {
+
+        private final Class<? extends Annotation> type;
+        private final Method[] attributes;
+        private final Map<String, Object> values;
+
+        AnnotationHandler(Class<? extends Annotation> type, Map<String, Object> values) {
+            this.type = type;
+            this.attributes = getAttributes(type);
+            this.values = values;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+
+            if ("equals".equals(name) && args != null && args.length == 1) {
+                return equalsTo(args[0]);
+            } else if ("hashCode".equals(name) && args == null) {
+                return hashCodeOf();
+            } else if ("toString".equals(name) && args == null) {
+                return format((Annotation) proxy);
+            } else if ("annotationType".equals(name) && args == null) {
+                return type;
+            }
+
+            return copy(getValue(method));
+        }
+
+        Object getValue(Method attribute) {
+            Object value = values.get(attribute.getName());
+            return value != null ? value : attribute.getDefaultValue();
+        }
+
+        Object copy(Object value) {
+            // Arrays returned by annotations must not be shared with callers
+            return value instanceof Object[] ? ((Object[]) value).clone() : value;
+        }
+
+        boolean equalsTo(Object other) {
+            if (!type.isInstance(other)) {
+                return false;
+            }
+
+            for (Method attribute : attributes) {
+                if (!valueEquals(getValue(attribute), AnnotationFormat.invoke(attribute, (Annotation) other))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        int hashCodeOf() {
+            // As specified by Annotation.hashCode()
+            int result = 0;
+
+            for (Method attribute : attributes) {
+                result += (127 * attribute.getName().hashCode()) ^ valueHashCode(getValue(attribute));
+            }
+
+            return result;
+        }
+
+    }
+
+}
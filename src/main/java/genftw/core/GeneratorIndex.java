@@ -0,0 +1,187 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core;
+
+import genftw.api.ForAllElements;
+import genftw.api.ForEachElement;
+import genftw.api.ForEachGroup;
+import genftw.api.Produces;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Index of generator methods packaged in a generator library, stored as {@value #RESOURCE_NAME} resource.
+ * <p>
+ * Each line of the index describes a single generator method as {@code <generator binary name>#<method name>},
+ * followed by its generator method annotations in {@linkplain AnnotationFormat textual form}. Lines starting with
+ * {@code #} are comments. Generator methods of libraries found on the processor path are resolved from the index
+ * alone, without loading generator classes or scanning any source elements. Their templates are looked up on the
+ * processor path under {@value #TEMPLATE_RESOURCE_PATH}, unless found in the template root directory.
+ */
+public class GeneratorIndex {
+
+    public static final String RESOURCE_NAME = "META-INF/genftw/generators.idx";
+    public static final String TEMPLATE_RESOURCE_PATH = "META-INF/genftw/templates";
+
+    static final String ENCODING = "UTF-8";
+    static final String COMMENT_PREFIX = "#";
+    static final String METHOD_SEPARATOR = "#";
+    static final char ANNOTATIONS_SEPARATOR = ' ';
+
+    static final List<Class<? extends Annotation>> GENERATOR_METHOD_ANNOTATIONS = Arrays.asList(
+            Produces.class, ForAllElements.class, ForEachElement.class, ForEachGroup.class);
+
+    // Entries are sorted, so that the index doesn't depend on processing order
+    private final Map<String, String> entries = new TreeMap<String, String>();
+
+    /**
+     * Adds generator method with given annotations, i.e. those of {@link #GENERATOR_METHOD_ANNOTATIONS} present on
+     * the method.
+     */
+    public void add(String generatorBinaryName, String methodName, List<? extends Annotation> annotations) {
+        StringBuilder sb = new StringBuilder();
+
+        for (Annotation annotation : annotations) {
+            sb.append(ANNOTATIONS_SEPARATOR).append(AnnotationFormat.format(annotation));
+        }
+
+        entries.put(generatorBinaryName + METHOD_SEPARATOR + methodName, sb.toString());
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public void write(Writer writer) throws IOException {
+        writer.write(COMMENT_PREFIX + " GenFTW generator index\n");
+
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            writer.write(entry.getKey());
+            writer.write(entry.getValue());
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Returns entries of the given index, in the order they appear.
+     */
+    static List<String> read(Reader reader) throws IOException {
+        BufferedReader lineReader = new BufferedReader(reader);
+        List<String> result = new ArrayList<String>();
+        String line;
+
+        while ((line = lineReader.readLine()) != null) {
+            line = line.trim();
+
+            if (!line.isEmpty() && !line.startsWith(COMMENT_PREFIX)) {
+                result.add(line);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Resolves descriptors of generator methods listed by all indexes available to the given class loader, keyed by
+     * binary name of their generator.
+     * <p>
+     * Entries that cannot be resolved are reported as warnings and skipped.
+     */
+    public static Map<String, List<GeneratorMethodDescriptor>> load(ClassLoader classLoader, ProcessorLogger logger)
+            throws IOException {
+        Set<String> entries = new LinkedHashSet<String>();
+        Enumeration<URL> indexes = classLoader.getResources(RESOURCE_NAME);
+
+        while (indexes.hasMoreElements()) {
+            URL index = indexes.nextElement();
+            InputStream in = index.openStream();
+            try {
+                entries.addAll(read(new InputStreamReader(in, ENCODING)));
+            } finally {
+                in.close();
+            }
+        }
+
+        Map<String, List<GeneratorMethodDescriptor>> result =
+                new LinkedHashMap<String, List<GeneratorMethodDescriptor>>();
+        AnnotationFormat annotationFormat = new AnnotationFormat(GENERATOR_METHOD_ANNOTATIONS);
+
+        for (String entry : entries) {
+            try {
+                int annotationsIndex = entry.indexOf(ANNOTATIONS_SEPARATOR);
+                String method = annotationsIndex > 0 ? entry.substring(0, annotationsIndex) : entry;
+                int separatorIndex = method.lastIndexOf(METHOD_SEPARATOR);
+
+                if (annotationsIndex <= 0 || separatorIndex <= 0) {
+                    throw new IllegalArgumentException("Malformed index entry");
+                }
+
+                String generatorName = method.substring(0, separatorIndex);
+                List<GeneratorMethodDescriptor> generatorMethods = result.get(generatorName);
+                GeneratorMethodDescriptor descriptor = resolve(generatorName, method.substring(separatorIndex + 1),
+                        annotationFormat.parse(entry.substring(annotationsIndex + 1)));
+
+                if (generatorMethods == null) {
+                    generatorMethods = new ArrayList<GeneratorMethodDescriptor>();
+                    result.put(generatorName, generatorMethods);
+                }
+
+                generatorMethods.add(descriptor);
+            } catch (IllegalArgumentException e) {
+                logger.warning(logger.formatErrorMessage("Error while loading indexed generator method " + entry, e));
+            }
+        }
+
+        return result;
+    }
+
+    static GeneratorMethodDescriptor resolve(String generatorName, String methodName,
+            List<Annotation> annotations) {
+        Map<Class<?>, Annotation> annotationsByType = new LinkedHashMap<Class<?>, Annotation>();
+        for (Annotation annotation : annotations) {
+            annotationsByType.put(annotation.annotationType(), annotation);
+        }
+
+        Produces produces = (Produces) annotationsByType.get(Produces.class);
+        if (produces == null) {
+            throw new IllegalArgumentException(Produces.class.getSimpleName() + " annotation not found");
+        }
+
+        // Generator classes are not loaded, so canonical name is derived from the binary name
+        return GeneratorMethodDescriptor.resolve(generatorName.replace('$', '.') + "." + methodName, produces,
+                (ForAllElements) annotationsByType.get(ForAllElements.class),
+                (ForEachElement) annotationsByType.get(ForEachElement.class),
+                (ForEachGroup) annotationsByType.get(ForEachGroup.class));
+    }
+
+}
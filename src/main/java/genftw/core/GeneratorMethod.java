@@ -17,13 +17,19 @@
 package genftw.core;
 
 import freemarker.template.TemplateException;
-import genftw.api.ForAllElements;
-import genftw.api.ForEachElement;
-import genftw.api.Produces;
 import genftw.api.Where;
 import genftw.core.match.ElementFinder;
+import genftw.core.match.ElementPartitioner;
+import genftw.core.match.MatchDefinition;
+import genftw.core.match.MetaDataMatcher;
+import genftw.core.output.OutputPathTemplate;
+import genftw.core.util.ReadOnlySequence;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
@@ -35,111 +41,234 @@ import javax.tools.JavaFileManager.Location;
  */
 public class GeneratorMethod {
 
+    static final String SHARD_INDEX_VARIABLE = "shardIndex";
+    static final String SHARD_COUNT_VARIABLE = "shardCount";
+    static final String SHARD_OUTPUT_FILES_VARIABLE = "shardOutputFiles";
+
+    private final GeneratorMethodDescriptor descriptor;
     private final ExecutableElement element;
     private final Elements elementUtils;
     private final ElementFinder elementFinder;
+    private final ElementPartitioner elementPartitioner;
     private final ProcessorLogger logger;
 
-    public GeneratorMethod(ExecutableElement element, Elements elementUtils,
+    public GeneratorMethod(GeneratorMethodDescriptor descriptor, ExecutableElement element, Elements elementUtils,
             ElementFinder elementFinder, ProcessorLogger logger) {
+        this.descriptor = descriptor;
         this.element = element;
         this.elementUtils = elementUtils;
         this.elementFinder = elementFinder;
+        this.elementPartitioner = new ElementPartitioner(elementUtils, new MetaDataMatcher(elementUtils));
         this.logger = logger;
     }
 
     public void process(GeneratorMethodTemplate methodTemplate) throws IOException, TemplateException {
-        if (getGroupMatchAnnotation() != null) {
+        switch (descriptor.getMatchMode()) {
+        case ALL_ELEMENTS:
             processGroupMatchMethod(methodTemplate);
-        } else if (getLoopMatchAnnotation() != null) {
+            break;
+        case EACH_ELEMENT:
             processLoopMatchMethod(methodTemplate);
-        } else {
+            break;
+        case EACH_GROUP:
+            processPartitionMatchMethod(methodTemplate);
+            break;
+        default:
             processSimpleMethod(methodTemplate);
         }
     }
 
     void processSimpleMethod(GeneratorMethodTemplate methodTemplate) throws IOException, TemplateException {
-        methodTemplate.process(getOutputRootLocation(), getOutputFile());
+        methodTemplate.process(getOutputRootLocation(), getOutputFile(), 0);
     }
 
     void processGroupMatchMethod(GeneratorMethodTemplate methodTemplate) throws IOException, TemplateException {
-        for (Where def : getGroupMatchAnnotation().value()) {
-            Element[] matchedElements = elementFinder.getElementsFound(def);
-            methodTemplate.setRootModelMapping(def.matchResultVariable(), matchedElements);
+        int matchedElements = setMatchResults(methodTemplate, descriptor.getMatchDefinitions());
+
+        if (descriptor.isSharded()) {
+            Where def = descriptor.getMatchDefinitions().get(0);
+            List<List<Element>> shards = elementPartitioner.shard(elementFinder.getElementsFound(def),
+                    descriptor.getShardSize());
+
+            methodTemplate.setRootModelMapping(SHARD_COUNT_VARIABLE, shards.size());
+
+            for (int i = 0; i < shards.size(); i++) {
+                methodTemplate.setRootModelMapping(def.matchResultVariable(), createMatchResultModel(shards.get(i)));
+                methodTemplate.setRootModelMapping(SHARD_INDEX_VARIABLE, i);
+                methodTemplate.process(getOutputRootLocation(), resolveShardOutputFile(i), shards.get(i).size());
+            }
+        } else {
+            methodTemplate.process(getOutputRootLocation(), getOutputFile(), matchedElements);
+        }
+    }
+
+    /**
+     * Processes the index of shards produced by this method, using the given index template.
+     */
+    public void processShardIndex(GeneratorMethodTemplate indexTemplate) throws IOException, TemplateException {
+        int matchedElements = setMatchResults(indexTemplate, descriptor.getMatchDefinitions());
+
+        Where def = descriptor.getMatchDefinitions().get(0);
+        int shardCount = elementPartitioner.getShardCount(elementFinder.getElementsFound(def).size(),
+                descriptor.getShardSize());
+        List<String> shardOutputFiles = new ArrayList<String>(shardCount);
+
+        for (int i = 0; i < shardCount; i++) {
+            shardOutputFiles.add(resolveShardOutputFile(i));
         }
 
-        methodTemplate.process(getOutputRootLocation(), getOutputFile());
+        indexTemplate.setRootModelMapping(SHARD_COUNT_VARIABLE, shardCount);
+        indexTemplate.setRootModelMapping(SHARD_OUTPUT_FILES_VARIABLE, shardOutputFiles);
+        indexTemplate.process(getOutputRootLocation(), descriptor.getShardIndexOutput(), matchedElements);
     }
 
-    void processLoopMatchMethod(GeneratorMethodTemplate methodTemplate) throws IOException, TemplateException {
-        Where def = getLoopMatchAnnotation().value();
-        Element[] matchedElements = elementFinder.getElementsFound(def);
+    /**
+     * Exposes elements matched by the given definitions to the template, returning their total number.
+     */
+    int setMatchResults(GeneratorMethodTemplate methodTemplate, List<Where> defs) {
+        int count = 0;
 
-        for (Where extraDef : getLoopMatchAnnotation().matchExtraElements()) {
-            Element[] extraElements = elementFinder.getElementsFound(extraDef);
-            methodTemplate.setRootModelMapping(extraDef.matchResultVariable(), extraElements);
+        for (Where def : defs) {
+            List<Element> matchedElements = elementFinder.getElementsFound(def);
+            methodTemplate.setRootModelMapping(def.matchResultVariable(), createMatchResultModel(matchedElements));
+            count += matchedElements.size();
         }
 
+        return count;
+    }
+
+    void processLoopMatchMethod(GeneratorMethodTemplate methodTemplate) throws IOException, TemplateException {
+        Where def = descriptor.getMatchDefinitions().get(0);
+        List<Element> matchedElements = elementFinder.getElementsFound(def);
+        Location outputRootLocation = getOutputRootLocation();
+
+        setMatchResults(methodTemplate, descriptor.getExtraDefinitions());
+
         for (Element e : matchedElements) {
             methodTemplate.setRootModelMapping(def.matchResultVariable(), e);
-            methodTemplate.process(getOutputRootLocation(), resolveOutputFile(e, getOutputFile()));
+            methodTemplate.process(outputRootLocation, resolveOutputFile(e), 1);
         }
 
-        if (matchedElements.length == 0) {
-            logger.warning("No element(s) matched", getElement());
+        if (matchedElements.isEmpty()) {
+            warnNoElementsMatched();
         }
     }
 
-    String resolveOutputFile(Element elm, String outputFileWithVariables) {
-        String result = outputFileWithVariables;
-        result = result.replace("{elementSimpleName}", elm.getSimpleName());
-        result = result.replace("{packageElementPath}",
-                elementUtils.getPackageOf(elm).getQualifiedName().toString().replace(".", "/"));
-        return result;
+    void processPartitionMatchMethod(GeneratorMethodTemplate methodTemplate) throws IOException, TemplateException {
+        Where def = descriptor.getMatchDefinitions().get(0);
+        List<Element> matchedElements = elementFinder.getElementsFound(def);
+        Location outputRootLocation = getOutputRootLocation();
+
+        setMatchResults(methodTemplate, descriptor.getExtraDefinitions());
+
+        SortedMap<String, List<Element>> groups = elementPartitioner.partition(matchedElements,
+                descriptor.getGroupBy(), descriptor.getMetaDataProperty());
+
+        for (Map.Entry<String, List<Element>> group : groups.entrySet()) {
+            methodTemplate.setRootModelMapping(def.matchResultVariable(), createMatchResultModel(group.getValue()));
+            methodTemplate.setRootModelMapping(descriptor.getGroupKeyVariable(), group.getKey());
+            methodTemplate.process(outputRootLocation, resolveGroupOutputFile(group.getKey()), group.getValue().size());
+        }
+
+        if (groups.isEmpty()) {
+            warnNoElementsMatched();
+        }
+    }
+
+    void warnNoElementsMatched() {
+        // Indexed generator methods have no source element to report on
+        logger.warning(element != null ? "No element(s) matched"
+                : "No element(s) matched by indexed generator method " + this, element);
+    }
+
+    /**
+     * Exposes matched elements to the template without copying them.
+     */
+    ReadOnlySequence createMatchResultModel(List<Element> matchedElements) {
+        return new ReadOnlySequence(matchedElements);
+    }
+
+    String resolveOutputFile(final Element elm) {
+        return descriptor.getOutput().expand(new OutputPathTemplate.Variables() {
+            @Override
+            public String get(String name) {
+                if ("elementSimpleName".equals(name)) {
+                    return elm.getSimpleName().toString();
+                } else if ("packageElementPath".equals(name)) {
+                    return elementUtils.getPackageOf(elm).getQualifiedName().toString().replace('.', '/');
+                }
+
+                return null;
+            }
+        });
+    }
+
+    String resolveShardOutputFile(final int shardIndex) {
+        return descriptor.getOutput().expand(new OutputPathTemplate.Variables() {
+            @Override
+            public String get(String name) {
+                return SHARD_INDEX_VARIABLE.equals(name) ? String.valueOf(shardIndex) : null;
+            }
+        });
+    }
+
+    String resolveGroupOutputFile(final String groupKey) {
+        return descriptor.getOutput().expand(new OutputPathTemplate.Variables() {
+            @Override
+            public String get(String name) {
+                if ("groupKey".equals(name)) {
+                    return groupKey;
+                } else if ("groupKeyPath".equals(name)) {
+                    return groupKey.replace('.', '/');
+                }
+
+                return null;
+            }
+        });
+    }
+
+    public GeneratorMethodDescriptor getDescriptor() {
+        return descriptor;
     }
 
+    /**
+     * Returns source element of this method, or {@code null} if this method was loaded from a
+     * {@linkplain GeneratorIndex generator index}.
+     */
     public ExecutableElement getElement() {
         return element;
     }
 
     public String getOutputFile() {
-        return getOutputAnnotation().output();
+        return descriptor.getOutput().getPattern();
     }
 
     public Location getOutputRootLocation() {
-        return getOutputAnnotation().outputRootLocation();
+        return descriptor.getOutputRootLocation();
     }
 
     public String getTemplateFile() {
-        return getOutputAnnotation().template();
+        return descriptor.getTemplateFile();
     }
 
-    public Where[] getMatchDefinitions() {
-        if (getGroupMatchAnnotation() != null) {
-            return getGroupMatchAnnotation().value();
-        } else if (getLoopMatchAnnotation() != null) {
-            Where[] extraDefs = getLoopMatchAnnotation().matchExtraElements();
-            Where[] result = new Where[extraDefs.length + 1];
-
-            result[0] = getLoopMatchAnnotation().value();
-            System.arraycopy(extraDefs, 0, result, 1, extraDefs.length);
-
-            return result;
-        } else {
-            return new Where[0];
-        }
+    /**
+     * Returns template file used to generate the index of shards, or an empty string if there is no index.
+     */
+    public String getShardIndexTemplateFile() {
+        return descriptor.getShardIndexTemplate();
     }
 
-    Produces getOutputAnnotation() {
-        return getElement().getAnnotation(Produces.class);
+    public List<Where> getMatchDefinitions() {
+        return descriptor.getMatchDefinitions();
     }
 
-    ForAllElements getGroupMatchAnnotation() {
-        return getElement().getAnnotation(ForAllElements.class);
+    public List<MatchDefinition> getCompiledDefinitions() {
+        return descriptor.getCompiledDefinitions();
     }
 
-    ForEachElement getLoopMatchAnnotation() {
-        return getElement().getAnnotation(ForEachElement.class);
+    @Override
+    public String toString() {
+        return descriptor.toString();
     }
 
 }
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core;
+
+import genftw.api.ForAllElements;
+import genftw.api.ForEachElement;
+import genftw.api.ForEachGroup;
+import genftw.api.GroupBy;
+import genftw.api.Produces;
+import genftw.api.Where;
+import genftw.core.match.MatchDefinition;
+import genftw.core.output.OutputPathTemplate;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.tools.JavaFileManager.Location;
+
+/**
+ * Immutable description of a generator method, resolved from its annotations once the method is discovered.
+ * <p>
+ * Reading annotation attributes through annotation proxies creates new arrays and proxies on each call, so all
+ * attributes relevant to generator method processing are read once and kept here. Match definitions are compiled
+ * for element matching at the same time.
+ */
+public class GeneratorMethodDescriptor {
+
+    /**
+     * Defines how matched elements are provided to the template.
+     */
+    public enum MatchMode {
+
+        /**
+         * No elements are matched, see {@link Produces}.
+         */
+        NONE,
+
+        /**
+         * All matched elements are provided at once, see {@link ForAllElements}.
+         */
+        ALL_ELEMENTS,
+
+        /**
+         * Each matched element is provided separately, see {@link ForEachElement}.
+         */
+        EACH_ELEMENT,
+
+        /**
+         * Each group of matched elements is provided separately, see {@link ForEachGroup}.
+         */
+        EACH_GROUP
+
+    }
+
+    private final String name;
+    private final Location outputRootLocation;
+    private final OutputPathTemplate output;
+    private final String templateFile;
+    private final MatchMode matchMode;
+    private final List<Where> matchDefinitions;
+    private final List<Where> extraDefinitions;
+    private final List<MatchDefinition> compiledDefinitions;
+    private final int shardSize;
+    private final String shardIndexTemplate;
+    private final String shardIndexOutput;
+    private final GroupBy groupBy;
+    private final String metaDataProperty;
+    private final String groupKeyVariable;
+
+    GeneratorMethodDescriptor(String name, Produces produces, ForAllElements groupMatch, ForEachElement loopMatch,
+            ForEachGroup partitionMatch) {
+        this.name = name;
+        this.outputRootLocation = produces.outputRootLocation();
+        this.output = new OutputPathTemplate(produces.output());
+        this.templateFile = produces.template();
+
+        List<Where> defs = new ArrayList<Where>();
+        List<Where> extraDefs = Collections.emptyList();
+
+        if (groupMatch != null) {
+            matchMode = MatchMode.ALL_ELEMENTS;
+            defs.addAll(Arrays.asList(groupMatch.value()));
+        } else if (loopMatch != null) {
+            matchMode = MatchMode.EACH_ELEMENT;
+            defs.add(loopMatch.value());
+            extraDefs = Arrays.asList(loopMatch.matchExtraElements());
+        } else if (partitionMatch != null) {
+            matchMode = MatchMode.EACH_GROUP;
+            defs.add(partitionMatch.value());
+            extraDefs = Arrays.asList(partitionMatch.matchExtraElements());
+        } else {
+            matchMode = MatchMode.NONE;
+        }
+
+        defs.addAll(extraDefs);
+        this.matchDefinitions = Collections.unmodifiableList(defs);
+        this.extraDefinitions = Collections.unmodifiableList(extraDefs);
+
+        List<MatchDefinition> compiledDefs = new ArrayList<MatchDefinition>(defs.size());
+        for (Where def : defs) {
+            compiledDefs.add(new MatchDefinition(def));
+        }
+        this.compiledDefinitions = Collections.unmodifiableList(compiledDefs);
+
+        this.shardSize = groupMatch != null && !matchDefinitions.isEmpty() ? groupMatch.shardSize() : 0;
+        this.shardIndexTemplate = shardSize > 0 ? groupMatch.shardIndexTemplate() : "";
+        this.shardIndexOutput = shardSize > 0 ? groupMatch.shardIndexOutput() : "";
+
+        this.groupBy = partitionMatch != null ? partitionMatch.groupBy() : null;
+        this.metaDataProperty = partitionMatch != null ? partitionMatch.metaDataProperty() : "";
+        this.groupKeyVariable = partitionMatch != null ? partitionMatch.groupKeyVariable() : "";
+    }
+
+    /**
+     * Resolves the descriptor of the given generator method.
+     * 
+     * @throws IllegalArgumentException
+     *             if the annotations of the generator method are not valid
+     */
+    public static GeneratorMethodDescriptor resolve(ExecutableElement e) {
+        return resolve(e.getEnclosingElement() + "." + e.getSimpleName(), e.getAnnotation(Produces.class),
+                e.getAnnotation(ForAllElements.class), e.getAnnotation(ForEachElement.class),
+                e.getAnnotation(ForEachGroup.class));
+    }
+
+    /**
+     * Resolves the descriptor of the given generator method, using its runtime annotations.
+     * 
+     * @throws IllegalArgumentException
+     *             if the method is not a generator method or its annotations are not valid
+     */
+    public static GeneratorMethodDescriptor resolve(Method m) {
+        Produces produces = m.getAnnotation(Produces.class);
+        if (produces == null) {
+            throw new IllegalArgumentException(Produces.class.getSimpleName() + " annotation not found on method "
+                    + m.getName());
+        }
+
+        return resolve(m.getDeclaringClass().getCanonicalName() + "." + m.getName(), produces,
+                m.getAnnotation(ForAllElements.class), m.getAnnotation(ForEachElement.class),
+                m.getAnnotation(ForEachGroup.class));
+    }
+
+    /**
+     * Resolves the descriptor of a generator method with given name and annotations.
+     * 
+     * @throws IllegalArgumentException
+     *             if the annotations of the generator method are not valid
+     */
+    public static GeneratorMethodDescriptor resolve(String name, Produces produces, ForAllElements groupMatch,
+            ForEachElement loopMatch, ForEachGroup partitionMatch) {
+        int matchAnnotationCount = (groupMatch != null ? 1 : 0) + (loopMatch != null ? 1 : 0)
+                + (partitionMatch != null ? 1 : 0);
+
+        if (matchAnnotationCount > 1) {
+            throw new IllegalArgumentException("Cannot use more than one element matching annotation");
+        }
+
+        if (partitionMatch != null && partitionMatch.groupBy() == GroupBy.META_DATA_PROPERTY
+                && partitionMatch.metaDataProperty().isEmpty()) {
+            throw new IllegalArgumentException(
+                    "Meta-data property name is required to group elements by meta-data property");
+        }
+
+        GeneratorMethodDescriptor result = new GeneratorMethodDescriptor(name, produces, groupMatch, loopMatch,
+                partitionMatch);
+
+        if (groupMatch != null && groupMatch.shardSize() != 0 && !result.isShardingValid(groupMatch)) {
+            throw new IllegalArgumentException("Sharded output requires positive shard size, {"
+                    + GeneratorMethod.SHARD_INDEX_VARIABLE + "} variable within output file pathname "
+                    + "and both index template and output file, if any");
+        }
+
+        return result;
+    }
+
+    boolean isShardingValid(ForAllElements groupMatch) {
+        boolean indexTemplateMissing = groupMatch.shardIndexTemplate().isEmpty();
+        boolean indexOutputMissing = groupMatch.shardIndexOutput().isEmpty();
+
+        return groupMatch.shardSize() > 0 && output.hasVariable(GeneratorMethod.SHARD_INDEX_VARIABLE)
+                && indexTemplateMissing == indexOutputMissing;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Location getOutputRootLocation() {
+        return outputRootLocation;
+    }
+
+    public OutputPathTemplate getOutput() {
+        return output;
+    }
+
+    public String getTemplateFile() {
+        return templateFile;
+    }
+
+    public MatchMode getMatchMode() {
+        return matchMode;
+    }
+
+    /**
+     * Returns all match definitions of the generator method.
+     * <p>
+     * The first definition is the one whose elements are looped over or partitioned, if any; it's followed by
+     * {@linkplain #getExtraDefinitions() extra definitions}.
+     */
+    public List<Where> getMatchDefinitions() {
+        return matchDefinitions;
+    }
+
+    /**
+     * Returns definitions of additional elements provided to the template in full, when looping over or partitioning
+     * matched elements.
+     */
+    public List<Where> getExtraDefinitions() {
+        return extraDefinitions;
+    }
+
+    /**
+     * Returns all {@linkplain #getMatchDefinitions() match definitions}, compiled for element matching.
+     */
+    public List<MatchDefinition> getCompiledDefinitions() {
+        return compiledDefinitions;
+    }
+
+    public boolean isSharded() {
+        return shardSize > 0;
+    }
+
+    public int getShardSize() {
+        return shardSize;
+    }
+
+    public String getShardIndexTemplate() {
+        return shardIndexTemplate;
+    }
+
+    public String getShardIndexOutput() {
+        return shardIndexOutput;
+    }
+
+    public GroupBy getGroupBy() {
+        return groupBy;
+    }
+
+    public String getMetaDataProperty() {
+        return metaDataProperty;
+    }
+
+    public String getGroupKeyVariable() {
+        return groupKeyVariable;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
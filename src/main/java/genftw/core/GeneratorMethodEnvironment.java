@@ -17,6 +17,7 @@
 package genftw.core;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,6 +30,14 @@ import freemarker.template.Configuration;
 import freemarker.template.Template;
 import freemarker.template.TemplateException;
 import freemarker.template.TemplateModelException;
+import genftw.core.metrics.Phase;
+import genftw.core.metrics.PhaseEvent;
+import genftw.core.metrics.PhaseTimer;
+import genftw.core.metrics.ProcessorMetrics;
+import genftw.core.metrics.ProfileDirective;
+import genftw.core.metrics.RenderProfiler;
+import genftw.core.output.OutputPipeline;
+import genftw.core.output.OutputStats;
 import genftw.core.util.ElementGoodies;
 
 /**
@@ -36,24 +45,33 @@ import genftw.core.util.ElementGoodies;
  */
 public class GeneratorMethodEnvironment {
 
+    private static final Method ADD_SUPPRESSED_METHOD = getAddSuppressedMethod();
+
     private final Configuration templateConfig;
     private final Filer filer;
+    private final OutputPipeline outputPipeline;
     private final ProcessorLogger logger;
+    private final ProcessorMetrics metrics;
+    private final RenderProfiler renderProfiler;
     private final Elements elementUtils;
     private final ElementGoodies elementGoodies;
 
-    public GeneratorMethodEnvironment(Configuration templateConfig,
-            Filer filer, Elements elementUtils, ProcessorLogger logger) {
+    public GeneratorMethodEnvironment(Configuration templateConfig, Filer filer,
+            OutputPipeline outputPipeline, Elements elementUtils, ProcessorLogger logger,
+            ProcessorMetrics metrics, RenderProfiler renderProfiler) {
         this.templateConfig = templateConfig;
         this.filer = filer;
+        this.outputPipeline = outputPipeline;
         this.logger = logger;
+        this.metrics = metrics;
+        this.renderProfiler = renderProfiler;
         this.elementUtils = elementUtils;
         this.elementGoodies = new ElementGoodies(elementUtils);
     }
 
     public void process(GeneratorMethod method) throws IOException, TemplateException {
         Element methodElement = method.getElement();
-        logger.info("Processing generator method " + methodElement.getSimpleName(), methodElement);
+        logger.debug(methodElement, "Processing generator method %s", method);
 
         if (!method.getOutputRootLocation().isOutputLocation()) {
             logger.error("Output file root location is not an output location", methodElement);
@@ -61,13 +79,107 @@ public class GeneratorMethodEnvironment {
         }
 
         // Load template
-        Template template = templateConfig.getTemplate(method.getTemplateFile());
+        Template template = loadTemplate(method, method.getTemplateFile());
 
         // Create template root data-model
         Map<String, Object> rootMap = createTemplateRootModel();
 
-        // Process generator method
-        method.process(new GeneratorMethodTemplate(filer, template, rootMap, logger));
+        // Process generator method, confirming pending writes so that write failures are reported against it
+        try {
+            processTemplates(method, template, rootMap);
+        } catch (IOException e) {
+            throw confirmWrites(e);
+        } catch (TemplateException e) {
+            throw confirmWrites(e);
+        } catch (RuntimeException e) {
+            throw confirmWrites(e);
+        } catch (Error e) {
+            throw confirmWrites(e);
+        }
+
+        confirmWrites();
+    }
+
+    void processTemplates(GeneratorMethod method, Template template, Map<String, Object> rootMap)
+            throws IOException, TemplateException {
+        method.process(new GeneratorMethodTemplate(filer, outputPipeline, method,
+                template, rootMap, logger, metrics, renderProfiler));
+
+        // Process index of shards, if any
+        String indexTemplateFile = method.getShardIndexTemplateFile();
+        if (!indexTemplateFile.isEmpty()) {
+            method.processShardIndex(new GeneratorMethodTemplate(filer, outputPipeline, method,
+                    loadTemplate(method, indexTemplateFile), rootMap, logger, metrics, renderProfiler));
+        }
+    }
+
+    /**
+     * Waits for pending writes in write-behind mode, recording their statistics.
+     */
+    void confirmWrites() throws IOException {
+        if (outputPipeline.isWriteBehind()) {
+            for (OutputStats stats : outputPipeline.awaitWrites()) {
+                metrics.recordPhase(Phase.WRITE, stats.writeNanos());
+                metrics.outputWritten(stats.charsWritten());
+                logger.debug("Generated %s", stats);
+            }
+        }
+    }
+
+    /**
+     * Waits for pending writes after processing failed with the given exception, which is returned for rethrowing.
+     * Write failures are suppressed by the processing failure.
+     */
+    <T extends Throwable> T confirmWrites(T failure) {
+        try {
+            confirmWrites();
+        } catch (IOException e) {
+            addSuppressed(failure, e);
+        } catch (RuntimeException e) {
+            addSuppressed(failure, e);
+        }
+
+        return failure;
+    }
+
+    void addSuppressed(Throwable failure, Throwable suppressed) {
+        if (ADD_SUPPRESSED_METHOD != null) {
+            try {
+                ADD_SUPPRESSED_METHOD.invoke(failure, suppressed);
+                return;
+            } catch (Exception e) {
+                // Fall back to logging, ignore exception
+            }
+        }
+
+        logger.warning("Error while writing output: " + suppressed);
+    }
+
+    static Method getAddSuppressedMethod() {
+        try {
+            return Throwable.class.getMethod("addSuppressed", Throwable.class);
+        } catch (NoSuchMethodException e) {
+            // Suppressed exceptions not supported before Java 7
+            return null;
+        }
+    }
+
+    Template loadTemplate(GeneratorMethod method, String templateFile) throws IOException {
+        PhaseTimer loadTimer = metrics.start(Phase.TEMPLATE_LOAD);
+        PhaseEvent loadEvent = metrics.beginEvent(Phase.TEMPLATE_LOAD);
+        try {
+            return templateConfig.getTemplate(templateFile);
+        } finally {
+            loadTimer.stop();
+            loadEvent.commit(method, templateFile, 0);
+        }
+    }
+
+    /**
+     * Releases element-related caches at the end of a processing round.
+     */
+    public void clearCaches() {
+        elementGoodies.clearCache();
     }
 
     Map<String, Object> createTemplateRootModel() throws TemplateModelException {
@@ -83,6 +195,9 @@ public class GeneratorMethodEnvironment {
         rootMap.put("ElementFilter", BeansWrapper.getDefaultInstance()
                 .getStaticModels().get("javax.lang.model.util.ElementFilter"));
 
+        // Expose render profiling directive
+        rootMap.put(ProfileDirective.VARIABLE_NAME, new ProfileDirective(renderProfiler));
+
         // Expose all available enum classes
         rootMap.put("enums", BeansWrapper.getDefaultInstance().getEnumModels());
 
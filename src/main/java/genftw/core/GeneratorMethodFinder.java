@@ -16,8 +16,6 @@
 
 package genftw.core;
 
-import genftw.api.ForAllElements;
-import genftw.api.ForEachElement;
 import genftw.api.Produces;
 import genftw.core.match.ElementFinder;
 
@@ -65,16 +63,21 @@ public class GeneratorMethodFinder extends ElementScanner6<Void, Void> {
     public Void visitExecutable(ExecutableElement e, Void p) {
         if (e.getKind() == ElementKind.METHOD) {
             if (e.getAnnotation(Produces.class) != null) {
-                logger.info("Found generator method " + e.getSimpleName(), e);
+                logger.debug(e, "Found generator method %s", e.getSimpleName());
+
+                GeneratorMethodDescriptor descriptor;
+                try {
+                    descriptor = GeneratorMethodDescriptor.resolve(e);
+                } catch (IllegalArgumentException ex) {
+                    logger.error(ex.getMessage(), e);
+                    return null;
+                }
 
-                if (e.getAnnotation(ForAllElements.class) != null
-                        && e.getAnnotation(ForEachElement.class) != null) {
-                    logger.error("Cannot use more than one element matching annotation", e);
-                } else if (e.getReturnType().getKind() != TypeKind.VOID || !e.getParameters().isEmpty()
+                if (e.getReturnType().getKind() != TypeKind.VOID || !e.getParameters().isEmpty()
                         || !e.getThrownTypes().isEmpty() || !e.getTypeParameters().isEmpty()) {
                     logger.warning("Signature of a generator method is irrelevant to its processing", e);
                 } else {
-                    methodsFound.add(new GeneratorMethod(e, elementUtils, elementFinder, logger));
+                    methodsFound.add(new GeneratorMethod(descriptor, e, elementUtils, elementFinder, logger));
                 }
             } else {
                 logger.warning(Produces.class.getSimpleName() + " annotation not found on method " +
@@ -87,7 +90,7 @@ public class GeneratorMethodFinder extends ElementScanner6<Void, Void> {
 
     @Override
     public Void visitType(TypeElement e, Void p) {
-        logger.info("Scanning " + e.getQualifiedName().toString() + " for generator methods", e);
+        logger.debug(e, "Scanning %s for generator methods", e.getQualifiedName());
         return super.visitType(e, p);
     }
 
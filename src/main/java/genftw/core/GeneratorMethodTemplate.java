@@ -16,9 +16,16 @@
 
 package genftw.core;
 
-import java.io.BufferedWriter;
+import genftw.core.metrics.Phase;
+import genftw.core.metrics.PhaseEvent;
+import genftw.core.metrics.PhaseTimer;
+import genftw.core.metrics.ProcessorMetrics;
+import genftw.core.metrics.RenderProfiler;
+import genftw.core.output.OutputBuffer;
+import genftw.core.output.OutputPipeline;
+import genftw.core.output.OutputStats;
+
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -35,15 +42,24 @@ import freemarker.template.TemplateException;
 public class GeneratorMethodTemplate {
 
     private final Filer filer;
+    private final OutputPipeline outputPipeline;
+    private final GeneratorMethod method;
     private final Template template;
     private final ProcessorLogger logger;
+    private final ProcessorMetrics metrics;
+    private final RenderProfiler renderProfiler;
     private final Map<String, Object> rootMap;
 
-    public GeneratorMethodTemplate(Filer filer, Template template,
-            Map<String, Object> rootMap, ProcessorLogger logger) {
+    public GeneratorMethodTemplate(Filer filer, OutputPipeline outputPipeline, GeneratorMethod method,
+            Template template, Map<String, Object> rootMap, ProcessorLogger logger, ProcessorMetrics metrics,
+            RenderProfiler renderProfiler) {
         this.filer = filer;
+        this.outputPipeline = outputPipeline;
+        this.method = method;
         this.template = template;
         this.logger = logger;
+        this.metrics = metrics;
+        this.renderProfiler = renderProfiler;
         // Create defensive copy of template data-model to prevent corrupting the original instance
         this.rootMap = new HashMap<String, Object>(rootMap);
     }
@@ -52,21 +68,64 @@ public class GeneratorMethodTemplate {
         rootMap.put(key, value);
     }
 
-    public void process(Location outputRootLocation, String outputFile) throws IOException, TemplateException {
-        logger.info("Generating " + outputFile);
+    /**
+     * Processes template into the given output file, which is generated from the given number of matched elements.
+     */
+    public void process(Location outputRootLocation, String outputFile, int matchedElements)
+            throws IOException, TemplateException {
+        logger.debug("Generating %s", outputFile);
 
-        PrintWriter outputWriter = null;
+        OutputBuffer outputBuffer = outputPipeline.acquire(outputRootLocation, outputFile);
         try {
-            // Create output writer
+            // Process template
+            PhaseTimer renderTimer = metrics.start(Phase.RENDER);
+            PhaseEvent renderEvent = metrics.beginEvent(Phase.RENDER);
+            if (renderProfiler != null) {
+                renderProfiler.templateStarted(template.getName());
+            }
+
+            try {
+                template.process(rootMap, outputBuffer);
+            } finally {
+                if (renderProfiler != null) {
+                    renderProfiler.templateFinished(template.getName(), outputBuffer.length());
+                }
+
+                renderTimer.stop();
+                renderEvent.setSource(method, matchedElements);
+                renderEvent.commit(template.getName(), outputFile, outputBuffer.length());
+            }
+            metrics.templateRendered();
+
+            // Create output file on the compiler thread
             FileObject resource = filer.createResource(outputRootLocation, "", outputFile);
-            outputWriter = new PrintWriter(new BufferedWriter(resource.openWriter()));
 
-            // Process template
-            template.process(rootMap, outputWriter);
+            if (outputPipeline.isWriteBehind()) {
+                // Output buffer is released by the pipeline, even if submitting fails
+                OutputBuffer submittedBuffer = outputBuffer;
+                outputBuffer = null;
+                outputPipeline.submit(resource, outputRootLocation, outputFile, submittedBuffer,
+                        metrics.getFlightEvents(), method, matchedElements);
+            } else {
+                PhaseTimer writeTimer = metrics.start(Phase.WRITE);
+                PhaseEvent writeEvent = metrics.beginEvent(Phase.WRITE);
+                OutputStats stats;
+                try {
+                    stats = outputPipeline.write(resource, outputRootLocation, outputFile, outputBuffer);
+                } finally {
+                    writeTimer.stop();
+                }
+
+                writeEvent.setSource(method, matchedElements);
+                writeEvent.commit(null, outputFile, stats.charsWritten());
+
+                metrics.outputWritten(stats.charsWritten());
+                logger.debug("Generated %s", stats);
+            }
         } finally {
-            // Close output writer
-            if (outputWriter != null) {
-                outputWriter.close();
+            // Return output buffer for reuse
+            if (outputBuffer != null) {
+                outputPipeline.release(outputBuffer);
             }
         }
     }
@@ -16,7 +16,11 @@
 
 package genftw.core;
 
+import freemarker.cache.ClassTemplateLoader;
+import freemarker.cache.FileTemplateLoader;
+import freemarker.cache.MultiTemplateLoader;
 import freemarker.cache.StrongCacheStorage;
+import freemarker.cache.TemplateLoader;
 import freemarker.log.Logger;
 import freemarker.template.Configuration;
 import freemarker.template.DefaultObjectWrapper;
@@ -24,13 +28,32 @@ import genftw.api.Generator;
 import genftw.api.Where;
 import genftw.core.match.ElementFinder;
 import genftw.core.match.ElementMatcher;
+import genftw.core.match.ElementPredicateLoader;
+import genftw.core.match.ElementTraversal;
+import genftw.core.match.MatchDefinition;
+import genftw.core.match.MatchProfiler;
 import genftw.core.match.MetaDataMatcher;
+import genftw.core.metrics.MeteredCacheStorage;
+import genftw.core.metrics.Phase;
+import genftw.core.metrics.PhaseTimer;
+import genftw.core.metrics.ProcessorMetrics;
+import genftw.core.metrics.ProcessorStatistics;
+import genftw.core.metrics.RenderProfiler;
+import genftw.core.output.OutputPipeline;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -49,6 +72,9 @@ import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
+import javax.management.JMException;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
 
 /**
  * JSR-269 annotation processor that interprets {@linkplain Generator generators}.
@@ -61,7 +87,19 @@ import javax.lang.model.util.Types;
         GeneratorProcessor.OPT_MATCHED_ELEMENT_PACKAGE_FILTER,
         GeneratorProcessor.OPT_TEMPLATE_ROOT_DIR,
         GeneratorProcessor.OPT_TEMPLATE_LOGGER_LIBRARY,
-        GeneratorProcessor.OPT_TEMPLATE_DEFAULT_ENCODING })
+        GeneratorProcessor.OPT_TEMPLATE_DEFAULT_ENCODING,
+        GeneratorProcessor.OPT_OUTPUT_ENCODING,
+        GeneratorProcessor.OPT_OUTPUT_BUFFER_SIZE,
+        GeneratorProcessor.OPT_OUTPUT_WRITE_BEHIND_QUEUE_SIZE,
+        GeneratorProcessor.OPT_METRICS_FILE,
+        GeneratorProcessor.OPT_MATCH_PROFILE,
+        GeneratorProcessor.OPT_RENDER_PROFILE_FILE,
+        GeneratorProcessor.OPT_LOG_LEVEL,
+        GeneratorProcessor.OPT_LOG_FILE,
+        GeneratorProcessor.OPT_JMX_STATISTICS,
+        GeneratorProcessor.OPT_DROP_SCAN_STATE_PER_ROOT_ELEMENT,
+        GeneratorProcessor.OPT_ELEMENT_SCAN_ORDER,
+        GeneratorProcessor.OPT_GENERATOR_INDEX })
 public class GeneratorProcessor extends AbstractProcessor {
 
     /**
@@ -77,7 +115,9 @@ public class GeneratorProcessor extends AbstractProcessor {
     /**
      * This option defines template file root directory.
      * <p>
-     * Selected value must be a pathname that points to an existing directory.
+     * Selected value must be a pathname that points to an existing directory. Templates not found in this directory
+     * are looked up on the processor path under {@value genftw.core.GeneratorIndex#TEMPLATE_RESOURCE_PATH}, where
+     * generator libraries package templates of their generator methods.
      */
     public static final String OPT_TEMPLATE_ROOT_DIR = "genftw.templateRootDir";
 
@@ -96,27 +136,187 @@ public class GeneratorProcessor extends AbstractProcessor {
      */
     public static final String OPT_TEMPLATE_DEFAULT_ENCODING = "genftw.templateDefaultEncoding";
 
+    /**
+     * This option defines output file encoding.
+     * <p>
+     * Selected value should match the encoding used by Java compiler to read generated source files. By default, output
+     * files are encoded by the compiler, using its source file encoding.
+     */
+    public static final String OPT_OUTPUT_ENCODING = "genftw.outputEncoding";
+
+    /**
+     * This option defines initial size (in characters) of output buffers, as well as the size (in bytes) of chunks
+     * written to output files.
+     * <p>
+     * Output buffers grow as needed and are reused across output files. Default value is
+     * {@value #DEFAULT_OUTPUT_BUFFER_SIZE}, minimum value is {@value #MIN_OUTPUT_BUFFER_SIZE}.
+     */
+    public static final String OPT_OUTPUT_BUFFER_SIZE = "genftw.outputBufferSize";
+
+    /**
+     * This option enables asynchronous writing of output files, defining the maximum number of rendered outputs
+     * waiting to be written.
+     * <p>
+     * Output files are still created and opened on the compiler thread, but their contents are copied by a background
+     * thread while subsequent outputs are rendered. All writes are confirmed before processing of each generator method
+     * completes. Write-behind is disabled by default.
+     */
+    public static final String OPT_OUTPUT_WRITE_BEHIND_QUEUE_SIZE = "genftw.outputWriteBehindQueueSize";
+
+    /**
+     * This option defines pathname of a file that receives processing metrics report in JSON format.
+     * <p>
+     * The report contains wall time and allocated bytes of each processing phase, as well as element, match and output
+     * counters of each processing round. Metrics are always summarized in the compiler output, the report file is not
+     * written by default.
+     */
+    public static final String OPT_METRICS_FILE = "genftw.metricsFile";
+
+    /**
+     * This option enables match profiling.
+     * <p>
+     * When set to {@code true}, the cost of element matching is recorded for each match definition and each of its
+     * predicates, and reported as a ranked table after scanning source elements. Definitions that impose no
+     * restriction are reported as warnings. Match profiling is disabled by default.
+     */
+    public static final String OPT_MATCH_PROFILE = "genftw.matchProfile";
+
+    /**
+     * This option enables render profiling, defining pathname of a file that receives profiled template render times
+     * in collapsed stack format, suitable for flame graph tools.
+     * <p>
+     * Each template is profiled for render time, invocation count and output size. Template sections can be profiled
+     * using <tt>&lt;@genftw_profile name="..."&gt;</tt> directive, which is available to all templates. Render
+     * profiling is disabled by default.
+     */
+    public static final String OPT_RENDER_PROFILE_FILE = "genftw.renderProfileFile";
+
+    /**
+     * This option defines processor logging level.
+     * <p>
+     * Selected value must be one of {@link ProcessorLogger.LogLevel} names (case insensitive). At default
+     * {@linkplain ProcessorLogger.LogLevel#INFO info} level, processing of each round is summarized in the compiler
+     * output; {@linkplain ProcessorLogger.LogLevel#DEBUG debug} level adds a message for each generator method and each
+     * output file.
+     */
+    public static final String OPT_LOG_LEVEL = "genftw.logLevel";
+
+    /**
+     * This option defines pathname of a file that receives debug level messages instead of the compiler output.
+     * <p>
+     * Debug messages are written to the compiler output by default.
+     */
+    public static final String OPT_LOG_FILE = "genftw.logFile";
+
+    /**
+     * This option enables publishing of processor statistics through a platform MBean named
+     * {@value genftw.core.metrics.ProcessorStatistics#OBJECT_NAME}.
+     * <p>
+     * When set to {@code true}, statistics of all processor runs within the JVM are accumulated, which is useful for
+     * long-lived build daemons. Once processing is over, the MBean is replaced by a snapshot of the statistics that
+     * doesn't reference processor classes. JMX statistics are disabled by default.
+     */
+    public static final String OPT_JMX_STATISTICS = "genftw.jmxStatistics";
+
+    /**
+     * This option reduces memory used by element scanning.
+     * <p>
+     * When set to {@code true}, elements remembered as scanned are dropped after scanning each
+     * {@linkplain RoundEnvironment#getRootElements() root element}, so that types reachable from multiple root elements
+     * (e.g. common supertypes) are scanned repeatedly. Scan state is retained until all root elements are scanned by
+     * default.
+     */
+    public static final String OPT_DROP_SCAN_STATE_PER_ROOT_ELEMENT = "genftw.dropScanStatePerRootElement";
+
+    /**
+     * This option defines the order in which elements reachable from root elements are scanned.
+     * <p>
+     * Supported values are {@code depthFirst} and {@code breadthFirst}. Order of scanning affects the order of
+     * matched elements, as well as the size of scan work queue: depth-first scanning keeps pending siblings of
+     * elements on the current path, while breadth-first scanning keeps the whole next level. Elements are scanned
+     * depth-first by default.
+     */
+    public static final String OPT_ELEMENT_SCAN_ORDER = "genftw.elementScanOrder";
+
+    /**
+     * This option enables writing of generator index, which makes generators of the compiled library available to
+     * other compilations.
+     * <p>
+     * When set to {@code true}, generator methods found during the compilation are described in
+     * {@value genftw.core.GeneratorIndex#RESOURCE_NAME} class output resource. Generator methods described by indexes
+     * found on the processor path are always processed in the first round of each compilation, in addition to
+     * generators found among its source elements. Their templates should be packaged with the library under
+     * {@value genftw.core.GeneratorIndex#TEMPLATE_RESOURCE_PATH}. Generator index is not written by default.
+     */
+    public static final String OPT_GENERATOR_INDEX = "genftw.generatorIndex";
+
+    static final int DEFAULT_OUTPUT_BUFFER_SIZE = 8192;
+    static final int MIN_OUTPUT_BUFFER_SIZE = 1024;
+
     private ProcessorLogger logger;
+    private ProcessorMetrics metrics;
+    private String metricsFile;
+    private ProcessorStatistics statistics;
+    private MatchProfiler matchProfiler;
+    private RenderProfiler renderProfiler;
+    private String renderProfileFile;
+    private ElementPredicateLoader predicateLoader;
     private ElementFinder elementFinder;
     private GeneratorMethodFinder methodFinder;
     private GeneratorMethodEnvironment methodEnv;
+    private GeneratorIndex generatorIndex;
+    private Map<String, List<GeneratorMethodDescriptor>> indexedMethods = Collections.emptyMap();
+    private boolean indexedMethodsProcessed;
 
     @Override
     public synchronized void init(ProcessingEnvironment processingEnv) {
         super.init(processingEnv);
         Map<String, String> options = processingEnv.getOptions();
 
-        setLogger(createLogger(processingEnv.getMessager()));
+        ProcessorLogger.LogLevel logLevel = ProcessorLogger.LogLevel.parse(
+                options.get(OPT_LOG_LEVEL), ProcessorLogger.LogLevel.INFO);
+        setLogger(createLogger(processingEnv.getMessager(), logLevel, options.get(OPT_LOG_FILE)));
+
+        metrics = createMetrics();
+        metricsFile = options.get(OPT_METRICS_FILE);
+
+        if (Boolean.parseBoolean(options.get(OPT_JMX_STATISTICS))) {
+            try {
+                statistics = createStatistics();
+                metrics.publishTo(statistics);
+            } catch (JMException e) {
+                logger.warning(logger.formatErrorMessage("Error while registering statistics MBean", e));
+            }
+        }
 
         String elementPackageFilter = options.containsKey(OPT_MATCHED_ELEMENT_PACKAGE_FILTER)
                 ? options.get(OPT_MATCHED_ELEMENT_PACKAGE_FILTER) : ".*";
 
+        if (Boolean.parseBoolean(options.get(OPT_MATCH_PROFILE))) {
+            matchProfiler = createMatchProfiler();
+        }
+
+        renderProfileFile = options.get(OPT_RENDER_PROFILE_FILE);
+        if (renderProfileFile != null) {
+            renderProfiler = createRenderProfiler();
+        }
+
+        predicateLoader = createPredicateLoader();
         elementFinder = createElementFinder(processingEnv.getElementUtils(),
-                        processingEnv.getTypeUtils(), elementPackageFilter);
+                        processingEnv.getTypeUtils(), metrics, matchProfiler, predicateLoader,
+                        elementPackageFilter, Boolean.parseBoolean(options.get(OPT_DROP_SCAN_STATE_PER_ROOT_ELEMENT)),
+                        ElementTraversal.Order.parse(options.get(OPT_ELEMENT_SCAN_ORDER),
+                                ElementTraversal.Order.DEPTH_FIRST));
 
         methodFinder = createMethodFinder(processingEnv.getElementUtils(),
                 elementFinder, logger);
 
+        if (Boolean.parseBoolean(options.get(OPT_GENERATOR_INDEX))) {
+            generatorIndex = new GeneratorIndex();
+        }
+
+        indexedMethods = loadIndexedMethods();
+
         String templateRootDir = options.get(OPT_TEMPLATE_ROOT_DIR);
         if (templateRootDir == null) {
             logger.warning("Template root directory not defined, using current user working directory");
@@ -136,29 +336,123 @@ public class GeneratorProcessor extends AbstractProcessor {
                 ? options.get(OPT_TEMPLATE_DEFAULT_ENCODING)
                 : Charset.defaultCharset().name();
 
-        methodEnv = createMethodEnvironment(processingEnv.getFiler(),
-                processingEnv.getElementUtils(), logger, templateRootDir,
+        // Leave output encoding to the compiler by default
+        String outputEncoding = options.get(OPT_OUTPUT_ENCODING);
+
+        int outputBufferSize = DEFAULT_OUTPUT_BUFFER_SIZE;
+        if (options.containsKey(OPT_OUTPUT_BUFFER_SIZE)) {
+            try {
+                outputBufferSize = Math.max(MIN_OUTPUT_BUFFER_SIZE,
+                        Integer.parseInt(options.get(OPT_OUTPUT_BUFFER_SIZE)));
+            } catch (NumberFormatException e) {
+                // Ignore exception
+            }
+        }
+
+        int outputWriteBehindQueueSize = 0;
+        if (options.containsKey(OPT_OUTPUT_WRITE_BEHIND_QUEUE_SIZE)) {
+            try {
+                outputWriteBehindQueueSize = Integer.parseInt(options.get(OPT_OUTPUT_WRITE_BEHIND_QUEUE_SIZE));
+            } catch (NumberFormatException e) {
+                // Ignore exception
+            }
+        }
+
+        OutputPipeline outputPipeline = createOutputPipeline(outputEncoding,
+                outputBufferSize, outputWriteBehindQueueSize);
+
+        methodEnv = createMethodEnvironment(processingEnv.getFiler(), outputPipeline,
+                processingEnv.getElementUtils(), logger, metrics, renderProfiler, templateRootDir,
                 templateLoggerLibrary, defaultEncoding);
 
         logger.info("GeneratorProcessor initialized, using FreeMarker " + Configuration.getVersionNumber());
     }
 
+    /**
+     * Returns all annotation types if there are indexed generator methods, which must be processed even if there are
+     * no generators among source elements.
+     */
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return indexedMethods.isEmpty() ? super.getSupportedAnnotationTypes() : Collections.singleton("*");
+    }
+
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-        if (annotations.isEmpty() || roundEnv.processingOver()) {
+        if (roundEnv.processingOver()) {
+            if (generatorIndex != null && !generatorIndex.isEmpty()) {
+                writeGeneratorIndex();
+            }
+
+            // Release statistics MBean, so that it doesn't pin processor class loader
+            if (statistics != null) {
+                try {
+                    releaseStatistics(statistics);
+                } catch (JMException e) {
+                    logger.warning(logger.formatErrorMessage("Error while unregistering statistics MBean", e));
+                }
+                statistics = null;
+            }
+
+            // Release log file
+            logger.close();
+
             return false;
         }
 
-        logger.info("GeneratorProcessor started");
+        if (!containsGeneratorAnnotation(annotations) && (indexedMethods.isEmpty() || indexedMethodsProcessed)) {
+            return false;
+        }
+
+        logger.debug("GeneratorProcessor started");
+        metrics.beginRound();
 
         // Find generator methods
-        methodFinder.scan(getGeneratorElements(roundEnv));
+        PhaseTimer methodScanTimer = metrics.start(Phase.METHOD_SCAN);
+        Set<TypeElement> generatorElements;
+        try {
+            generatorElements = getGeneratorElements(roundEnv);
+            methodFinder.scan(generatorElements);
+        } finally {
+            methodScanTimer.stop();
+        }
+
         GeneratorMethod[] methodsFound = methodFinder.getMethodsFound();
 
+        if (generatorIndex != null) {
+            addToGeneratorIndex(methodsFound);
+        }
+
+        if (!indexedMethodsProcessed) {
+            methodsFound = addIndexedMethods(methodsFound, generatorElements, processingEnv.getElementUtils());
+            indexedMethodsProcessed = true;
+        }
+
+        metrics.generatorMethodsFound(methodsFound.length);
+
         // Scan source elements by generator method match criteria
-        Set<Where> matchDefinitions = getMatchDefinitions(methodsFound);
+        Set<MatchDefinition> matchDefinitions = getMatchDefinitions(methodsFound);
         if (!matchDefinitions.isEmpty()) {
-            elementFinder.scan(roundEnv.getRootElements(), matchDefinitions);
+            if (matchProfiler != null) {
+                matchProfiler.reset();
+            }
+
+            PhaseTimer elementScanTimer = metrics.start(Phase.ELEMENT_SCAN);
+            try {
+                elementFinder.scan(roundEnv.getRootElements(), matchDefinitions);
+            } finally {
+                elementScanTimer.stop();
+            }
+
+            if (matchProfiler != null) {
+                reportMatchProfile();
+            }
+
+            for (MatchDefinition def : matchDefinitions) {
+                metrics.matchesFound(def.toString(), elementFinder.getElementsFound(def.getWhere()).size());
+            }
+
+            metrics.elementsRetained(elementFinder.getScannedElementCount(), elementFinder.getFoundElementCount());
         }
 
         // Process generator methods
@@ -166,13 +460,132 @@ public class GeneratorProcessor extends AbstractProcessor {
             try {
                 methodEnv.process(m);
             } catch (Exception e) {
-                logger.error("Error while processing generator method", e, m.getElement());
+                logger.error(m.getElement() != null ? "Error while processing generator method"
+                        : "Error while processing indexed generator method " + m, e, m.getElement());
             }
         }
 
-        logger.info("GeneratorProcessor finished");
+        // Release element-related caches, elements must not be retained across rounds
+        methodEnv.clearCaches();
 
-        return true;
+        // Report processing metrics
+        logger.info(metrics.endRound());
+        if (metricsFile != null) {
+            writeMetricsReport(metricsFile);
+        }
+
+        // Report render profile
+        if (renderProfiler != null) {
+            logger.info(renderProfiler.formatReport());
+            writeRenderProfile(renderProfileFile);
+        }
+
+        logger.debug("GeneratorProcessor finished");
+        logger.flush();
+
+        // Don't claim annotations of other processors
+        return indexedMethods.isEmpty();
+    }
+
+    boolean containsGeneratorAnnotation(Set<? extends TypeElement> annotations) {
+        for (TypeElement annotation : annotations) {
+            if (annotation.getQualifiedName().contentEquals(Generator.class.getName())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns descriptors of generator methods listed by generator indexes found on the processor path, keyed by
+     * binary name of their generator.
+     */
+    Map<String, List<GeneratorMethodDescriptor>> loadIndexedMethods() {
+        try {
+            Map<String, List<GeneratorMethodDescriptor>> result = GeneratorIndex.load(
+                    GeneratorProcessor.class.getClassLoader(), logger);
+
+            for (List<GeneratorMethodDescriptor> generatorMethods : result.values()) {
+                for (GeneratorMethodDescriptor descriptor : generatorMethods) {
+                    logger.debug("Found indexed generator method %s", descriptor);
+                }
+            }
+
+            return result;
+        } catch (IOException e) {
+            logger.warning(logger.formatErrorMessage("Error while loading generator index", e));
+            return Collections.emptyMap();
+        }
+    }
+
+    void setIndexedMethods(Map<String, List<GeneratorMethodDescriptor>> indexedMethods) {
+        this.indexedMethods = indexedMethods;
+    }
+
+    /**
+     * Returns given generator methods followed by indexed generator methods.
+     * <p>
+     * Generators found among source elements take precedence over indexed ones, e.g. when recompiling a generator
+     * library whose previous index is still on the processor path.
+     */
+    GeneratorMethod[] addIndexedMethods(GeneratorMethod[] methods, Set<TypeElement> generatorElements,
+            Elements elementUtils) {
+        Set<String> sourceGeneratorNames = new HashSet<String>();
+
+        for (TypeElement generator : generatorElements) {
+            sourceGeneratorNames.add(elementUtils.getBinaryName(generator).toString());
+        }
+
+        List<GeneratorMethod> result = new ArrayList<GeneratorMethod>(Arrays.asList(methods));
+
+        for (Map.Entry<String, List<GeneratorMethodDescriptor>> entry : indexedMethods.entrySet()) {
+            if (sourceGeneratorNames.contains(entry.getKey())) {
+                logger.debug("Skipping indexed generator %s found among source elements", entry.getKey());
+                continue;
+            }
+
+            for (GeneratorMethodDescriptor descriptor : entry.getValue()) {
+                // Indexed generator methods have no source elements
+                result.add(new GeneratorMethod(descriptor, null, elementUtils, elementFinder, logger));
+            }
+        }
+
+        return result.toArray(new GeneratorMethod[result.size()]);
+    }
+
+    void addToGeneratorIndex(GeneratorMethod[] methods) {
+        Elements elementUtils = processingEnv.getElementUtils();
+
+        for (GeneratorMethod m : methods) {
+            TypeElement generator = (TypeElement) m.getElement().getEnclosingElement();
+            List<Annotation> annotations = new ArrayList<Annotation>();
+
+            for (Class<? extends Annotation> type : GeneratorIndex.GENERATOR_METHOD_ANNOTATIONS) {
+                Annotation annotation = m.getElement().getAnnotation(type);
+                if (annotation != null) {
+                    annotations.add(annotation);
+                }
+            }
+
+            generatorIndex.add(elementUtils.getBinaryName(generator).toString(),
+                    m.getElement().getSimpleName().toString(), annotations);
+        }
+    }
+
+    void writeGeneratorIndex() {
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    GeneratorIndex.RESOURCE_NAME);
+            Writer writer = new OutputStreamWriter(resource.openOutputStream(), GeneratorIndex.ENCODING);
+            try {
+                generatorIndex.write(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            logger.error("Error while writing generator index", e, null);
+        }
     }
 
     /**
@@ -202,32 +615,131 @@ public class GeneratorProcessor extends AbstractProcessor {
     /**
      * Returns all match definitions declared by generator methods.
      */
-    Set<Where> getMatchDefinitions(GeneratorMethod[] methods) {
-        Map<Integer, Where> matchDefinitions = new HashMap<Integer, Where>();
+    Set<MatchDefinition> getMatchDefinitions(GeneratorMethod[] methods) {
+        Map<Integer, MatchDefinition> matchDefinitions = new HashMap<Integer, MatchDefinition>();
 
         for (GeneratorMethod m : methods) {
-            for (Where def : m.getMatchDefinitions()) {
-                matchDefinitions.put(elementFinder.getKey(def), def);
+            for (MatchDefinition def : m.getCompiledDefinitions()) {
+                if (isFilterLoadable(def.getWhere(), m)) {
+                    matchDefinitions.put(elementFinder.getKey(def.getWhere()), def);
+                }
             }
         }
 
-        return new HashSet<Where>(matchDefinitions.values());
+        return new HashSet<MatchDefinition>(matchDefinitions.values());
+    }
+
+    /**
+     * Loads {@linkplain Where#filter() custom filters} of the given definition ahead of element scan, reporting an
+     * error on generator method if any of the filters cannot be loaded.
+     */
+    boolean isFilterLoadable(Where def, GeneratorMethod m) {
+        for (String filter : ElementMatcher.getFilters(def)) {
+            try {
+                predicateLoader.load(filter);
+            } catch (IllegalArgumentException e) {
+                logger.error("Error while loading match definition filter", e, m.getElement());
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    void reportMatchProfile() {
+        for (Where def : matchProfiler.getUnrestrictedDefinitions()) {
+            logger.warning("Match definition " + MatchProfiler.describe(def)
+                    + " imposes no restriction, all scanned elements will match");
+        }
+
+        logger.info(matchProfiler.formatReport());
+    }
+
+    void writeMetricsReport(String pathname) {
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(pathname), "UTF-8");
+            try {
+                writer.write(metrics.toJson());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            logger.warning(logger.formatErrorMessage("Error while writing metrics report", e));
+        }
+    }
+
+    void writeRenderProfile(String pathname) {
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(pathname), "UTF-8");
+            try {
+                renderProfiler.writeCollapsedStacks(writer);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            logger.warning(logger.formatErrorMessage("Error while writing render profile", e));
+        }
     }
 
     void setLogger(ProcessorLogger logger) {
         this.logger = logger;
     }
 
-    ProcessorLogger createLogger(Messager messager) {
-        return new ProcessorLogger(messager);
+    ProcessorLogger createLogger(Messager messager, ProcessorLogger.LogLevel logLevel, String logFile) {
+        Writer detailWriter = null;
+        IOException logFileError = null;
+
+        if (logFile != null && logLevel == ProcessorLogger.LogLevel.DEBUG) {
+            try {
+                detailWriter = new OutputStreamWriter(new FileOutputStream(logFile), "UTF-8");
+            } catch (IOException e) {
+                logFileError = e;
+            }
+        }
+
+        ProcessorLogger processorLogger = new ProcessorLogger(messager, logLevel, detailWriter);
+
+        if (logFileError != null) {
+            processorLogger.warning(processorLogger.formatErrorMessage("Error while opening log file", logFileError));
+        }
+
+        return processorLogger;
+    }
+
+    ProcessorMetrics createMetrics() {
+        return new ProcessorMetrics();
+    }
+
+    ProcessorStatistics createStatistics() throws JMException {
+        return ProcessorStatistics.registerPlatformMBean();
     }
 
-    ElementFinder createElementFinder(Elements elementUtils,
-            Types typeUtils, String elementPackageFilter) {
+    void releaseStatistics(ProcessorStatistics statistics) throws JMException {
+        ProcessorStatistics.unregisterPlatformMBean(statistics);
+    }
+
+    RenderProfiler createRenderProfiler() {
+        return new RenderProfiler();
+    }
+
+    MatchProfiler createMatchProfiler() {
+        return new MatchProfiler();
+    }
+
+    ElementFinder createElementFinder(Elements elementUtils, Types typeUtils,
+            ProcessorMetrics metrics, MatchProfiler matchProfiler, ElementPredicateLoader predicateLoader,
+            String elementPackageFilter, boolean dropScanStatePerRootElement, ElementTraversal.Order scanOrder) {
         MetaDataMatcher metaDataMatcher = new MetaDataMatcher(elementUtils);
-        ElementMatcher elementMatcher = new ElementMatcher(elementUtils, metaDataMatcher);
+        ElementMatcher elementMatcher = new ElementMatcher(elementUtils, metaDataMatcher, matchProfiler,
+                predicateLoader);
 
-        return new ElementFinder(elementUtils, typeUtils, elementMatcher, elementPackageFilter);
+        return new ElementFinder(elementUtils, typeUtils, elementMatcher, metrics,
+                elementPackageFilter, dropScanStatePerRootElement, scanOrder);
+    }
+
+    ElementPredicateLoader createPredicateLoader() {
+        // Custom filters are loaded from the processor path
+        return new ElementPredicateLoader(GeneratorProcessor.class.getClassLoader(), processingEnv);
     }
 
     GeneratorMethodFinder createMethodFinder(Elements elementUtils,
@@ -235,8 +747,21 @@ public class GeneratorProcessor extends AbstractProcessor {
         return new GeneratorMethodFinder(elementUtils, elementFinder, logger);
     }
 
-    GeneratorMethodEnvironment createMethodEnvironment(Filer filer,
-            Elements elementUtils, ProcessorLogger logger, String templateRootDir,
+    OutputPipeline createOutputPipeline(String outputEncoding,
+            int outputBufferSize, int outputWriteBehindQueueSize) {
+        OutputPipeline outputPipeline = new OutputPipeline(
+                outputEncoding != null ? Charset.forName(outputEncoding) : null, outputBufferSize);
+
+        if (outputWriteBehindQueueSize > 0) {
+            outputPipeline.enableWriteBehind(outputWriteBehindQueueSize);
+        }
+
+        return outputPipeline;
+    }
+
+    GeneratorMethodEnvironment createMethodEnvironment(Filer filer, OutputPipeline outputPipeline,
+            Elements elementUtils, ProcessorLogger logger, ProcessorMetrics metrics,
+            RenderProfiler renderProfiler, String templateRootDir,
             int templateLoggerLibrary, String defaultEncoding) {
         // Configure FreeMarker logging
         try {
@@ -248,16 +773,18 @@ public class GeneratorProcessor extends AbstractProcessor {
         // Create FreeMarker configuration
         Configuration templateConfig = new Configuration();
 
-        // Configure template root directory
+        // Configure template root directory, falling back to templates of generator libraries
         try {
-            templateConfig.setDirectoryForTemplateLoading(new File(templateRootDir));
+            templateConfig.setTemplateLoader(new MultiTemplateLoader(new TemplateLoader[] {
+                    new FileTemplateLoader(new File(templateRootDir)),
+                    new ClassTemplateLoader(GeneratorProcessor.class, "/" + GeneratorIndex.TEMPLATE_RESOURCE_PATH) }));
         } catch (IOException e) {
             throw new IllegalArgumentException(logger.formatErrorMessage(
                     "Error while setting template root directory", e), e);
         }
 
         // Cache templates using strong references for efficiency
-        templateConfig.setCacheStorage(new StrongCacheStorage());
+        templateConfig.setCacheStorage(new MeteredCacheStorage(new StrongCacheStorage(), metrics));
 
         // Cache templates during annotation processor lifetime
         templateConfig.setTemplateUpdateDelay(Integer.MAX_VALUE);
@@ -268,7 +795,8 @@ public class GeneratorProcessor extends AbstractProcessor {
         templateConfig.setDefaultEncoding(defaultEncoding);
         templateConfig.setLocalizedLookup(false);
 
-        return new GeneratorMethodEnvironment(templateConfig, filer, elementUtils, logger);
+        return new GeneratorMethodEnvironment(templateConfig, filer, outputPipeline,
+                elementUtils, logger, metrics, renderProfiler);
     }
 
 }
@@ -16,19 +16,62 @@
 
 package genftw.core;
 
+import java.io.IOException;
+import java.io.Writer;
+
 import javax.annotation.processing.Messager;
 import javax.lang.model.element.Element;
 import javax.tools.Diagnostic.Kind;
 
 /**
- * Simple logging facade for JSR-269 {@link Messager}.
+ * Leveled logging facade for JSR-269 {@link Messager}.
+ * <p>
+ * Detailed per-element and per-file events are logged at {@linkplain LogLevel#DEBUG debug} level, using lazily
+ * formatted messages that cost nothing unless the level is enabled. Such events are otherwise summarized once per
+ * processing round. Debug messages can be redirected to a detail writer, keeping them out of the compiler output.
  */
 public class ProcessorLogger {
 
+    /**
+     * Logging levels, ordered from the least to the most verbose.
+     */
+    public enum LogLevel {
+
+        ERROR, WARNING, INFO, DEBUG;
+
+        /**
+         * Parses case-insensitive level name, returning default level for unknown names.
+         */
+        public static LogLevel parse(String name, LogLevel defaultLevel) {
+            if (name != null) {
+                for (LogLevel level : values()) {
+                    if (level.name().equalsIgnoreCase(name.trim())) {
+                        return level;
+                    }
+                }
+            }
+
+            return defaultLevel;
+        }
+
+    }
+
     private final Messager messager;
+    private final LogLevel level;
+    private Writer detailWriter;
 
     public ProcessorLogger(Messager messager) {
+        this(messager, LogLevel.INFO, null);
+    }
+
+    /**
+     * Creates logger with given level, writing debug messages to given writer, or to {@link Messager} if
+     * {@code null}.
+     */
+    public ProcessorLogger(Messager messager, LogLevel level, Writer detailWriter) {
         this.messager = messager;
+        this.level = level;
+        this.detailWriter = detailWriter;
     }
 
     void log(Kind kind, String msg, Element elm) {
@@ -39,10 +82,88 @@ public class ProcessorLogger {
         }
     }
 
+    public boolean isEnabled(LogLevel msgLevel) {
+        return msgLevel.compareTo(level) <= 0;
+    }
+
+    /**
+     * Logs debug message, formatted using {@link String#format(String, Object...)} only if debug level is enabled.
+     */
+    public void debug(Element elm, String format, Object... args) {
+        if (!isEnabled(LogLevel.DEBUG)) {
+            return;
+        }
+
+        String msg = String.format(format, args);
+
+        if (detailWriter != null) {
+            writeDetail(msg, elm);
+        } else {
+            log(Kind.WARNING, msg, elm);
+        }
+    }
+
+    public void debug(String format, Object... args) {
+        debug(null, format, args);
+    }
+
+    void writeDetail(String msg, Element elm) {
+        try {
+            detailWriter.write(elm != null ? msg + " [" + elm + "]\n" : msg + "\n");
+        } catch (IOException e) {
+            // Stop writing details, fall back to Messager
+            detailWriterFailed(e);
+            log(Kind.WARNING, msg, elm);
+        }
+    }
+
+    void detailWriterFailed(IOException e) {
+        Writer writer = detailWriter;
+        detailWriter = null;
+        warning(formatErrorMessage("Error while writing log file", e));
+
+        try {
+            writer.close();
+        } catch (IOException ex) {
+            // Failure already reported, ignore exception
+        }
+    }
+
+    /**
+     * Flushes debug messages written so far, typically at the end of each processing round.
+     */
+    public void flush() {
+        if (detailWriter != null) {
+            try {
+                detailWriter.flush();
+            } catch (IOException e) {
+                detailWriterFailed(e);
+            }
+        }
+    }
+
+    /**
+     * Closes the detail writer once processing is over. Any further debug messages are logged to {@link Messager}.
+     */
+    public void close() {
+        if (detailWriter != null) {
+            Writer writer = detailWriter;
+            detailWriter = null;
+
+            try {
+                writer.close();
+            } catch (IOException e) {
+                warning(formatErrorMessage("Error while closing log file", e));
+            }
+        }
+    }
+
     public void info(String msg, Element elm) {
-        // Kinds others than WARNING are treated as ERRORS in IDEA
-        // http://youtrack.jetbrains.com/issue/IDEA-105383
-        log(Kind.WARNING, msg, elm);
+        if (isEnabled(LogLevel.INFO)) {
+            // Kinds others than WARNING are treated as ERRORS in IDEA
+            // http://youtrack.jetbrains.com/issue/IDEA-105383
+            log(Kind.WARNING, msg, elm);
+        }
     }
 
     public void info(String msg) {
@@ -50,7 +171,9 @@ public class ProcessorLogger {
     }
 
     public void warning(String msg, Element elm) {
-        log(Kind.WARNING, msg, elm);
+        if (isEnabled(LogLevel.WARNING)) {
+            log(Kind.WARNING, msg, elm);
+        }
     }
 
     public void warning(String msg) {
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+
+/**
+ * Condition satisfied by elements annotated with all the given annotations.
+ */
+class AnnotationsCondition extends MatchCondition {
+
+    private final Set<String> annotationNames;
+
+    AnnotationsCondition(String[] annotationNames) {
+        super(MatchPredicate.ANNOTATIONS);
+        this.annotationNames = new HashSet<String>(Arrays.asList(annotationNames));
+    }
+
+    @Override
+    boolean test(Element elm, ElementMatcher matcher) {
+        Set<String> elementAnnotationNames = new HashSet<String>();
+        for (AnnotationMirror a : matcher.getElementUtils().getAllAnnotationMirrors(elm)) {
+            elementAnnotationNames.add(a.getAnnotationType().toString());
+        }
+
+        return elementAnnotationNames.containsAll(annotationNames);
+    }
+
+}
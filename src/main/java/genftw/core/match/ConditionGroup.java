@@ -0,0 +1,137 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import genftw.api.Where;
+
+import java.util.List;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Conditions that must be all satisfied, or at least one of which must be satisfied.
+ */
+class ConditionGroup extends MatchCondition {
+
+    // Both must be powers of two
+    static final int SAMPLE_INTERVAL = 64;
+    static final int REORDER_INTERVAL = 1024;
+
+    private final boolean any;
+    private final MatchCondition[] conditions;
+    private int evaluations;
+
+    ConditionGroup(MatchPredicate predicate, boolean any, List<MatchCondition> conditions) {
+        super(predicate);
+        this.any = any;
+        this.conditions = conditions.toArray(new MatchCondition[conditions.size()]);
+        reorder();
+    }
+
+    MatchCondition[] getConditions() {
+        return conditions;
+    }
+
+    @Override
+    long getEstimatedNanos() {
+        long result = 0;
+
+        for (MatchCondition c : conditions) {
+            result += c.getEstimatedNanos();
+        }
+
+        return result;
+    }
+
+    @Override
+    boolean test(Element elm, ElementMatcher matcher) {
+        int evaluation = ++evaluations;
+        boolean sample = (evaluation & (SAMPLE_INTERVAL - 1)) == 0;
+
+        if ((evaluation & (REORDER_INTERVAL - 1)) == 0) {
+            reorder();
+        }
+
+        for (MatchCondition c : conditions) {
+            boolean passed;
+
+            if (sample) {
+                long startNanos = System.nanoTime();
+                passed = c.test(elm, matcher);
+                c.recordSample(System.nanoTime() - startNanos);
+            } else {
+                passed = c.test(elm, matcher);
+            }
+
+            c.recordTest(passed);
+
+            // Short-circuit evaluation
+            if (passed == any) {
+                return any;
+            }
+        }
+
+        return !any;
+    }
+
+    /**
+     * Evaluates this group like {@link #test(Element, ElementMatcher)}, recording cost of each condition using given
+     * profiler.
+     */
+    boolean testProfiled(Element elm, ElementMatcher matcher, Where def, MatchProfiler profiler) {
+        for (MatchCondition c : conditions) {
+            long startNanos = System.nanoTime();
+            boolean passed = c.test(elm, matcher);
+            long nanos = System.nanoTime() - startNanos;
+
+            c.recordTest(passed);
+            c.recordSample(nanos);
+            profiler.predicateTested(def, c.getPredicate(), passed, nanos);
+
+            if (passed == any) {
+                return any;
+            }
+        }
+
+        return !any;
+    }
+
+    /**
+     * Orders conditions by expected cost per element decided by the condition: an element fails a condition that must
+     * be satisfied, or passes a condition from alternatives.
+     */
+    void reorder() {
+        // Insertion sort, keeping current order of equally ranked conditions
+        for (int i = 1; i < conditions.length; i++) {
+            MatchCondition c = conditions[i];
+            double rank = getRank(c);
+            int j = i - 1;
+
+            while (j >= 0 && getRank(conditions[j]) > rank) {
+                conditions[j + 1] = conditions[j];
+                j--;
+            }
+
+            conditions[j + 1] = c;
+        }
+    }
+
+    double getRank(MatchCondition c) {
+        return c.getCost() / (any ? c.getPassRate() : 1 - c.getPassRate());
+    }
+
+}
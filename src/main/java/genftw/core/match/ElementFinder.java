@@ -17,56 +17,124 @@
 package genftw.core.match;
 
 import genftw.api.Where;
+import genftw.core.metrics.Phase;
+import genftw.core.metrics.PhaseEvent;
+import genftw.core.metrics.ProcessorMetrics;
 import genftw.core.util.HashCodeUtil;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
 import javax.lang.model.element.Element;
-import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.PackageElement;
-import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.TypeParameterElement;
-import javax.lang.model.element.VariableElement;
-import javax.lang.model.type.TypeMirror;
-import javax.lang.model.util.ElementScanner6;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 
 /**
- * Element visitor that scans root elements, looking for elements matching given criteria.
+ * Scans root elements, looking for elements matching given criteria.
+ * <p>
+ * Reachable elements are traversed by {@link ElementTraversal}, in configurable order. Traversal state is dropped once
+ * the scan completes, or optionally after scanning each root element; in that case, elements reachable from multiple
+ * root elements are scanned repeatedly, trading time for memory.
+ * <p>
+ * Elements are matched only against definitions whose {@linkplain Where#packages() package scope} includes their
+ * package. Packages and types out of scope of all definitions are not traversed any further.
  */
-public class ElementFinder extends ElementScanner6<Void, Set<Where>> {
+public class ElementFinder implements ElementTraversal.Visitor {
 
     private final Elements elementUtils;
-    private final Types typeUtils;
     private final ElementMatcher elementMatcher;
+    private final ProcessorMetrics metrics;
     private final Pattern elementPackagePattern;
-    private final Set<Element> elementsScanned;
-    private final Map<Integer, Set<Element>> elementsFound;
-
-    public ElementFinder(Elements elementUtils, Types typeUtils,
-            ElementMatcher elementMatcher, String elementPackageFilter) {
+    private final boolean dropScanStatePerRootElement;
+    private final ElementTraversal traversal;
+    private int peakScannedElementCount;
+    private final Map<Integer, MatchResult> elementsFound;
+    private ElementTable elementTable;
+    private Set<MatchDefinition> matchDefinitions;
+    private boolean packageScoped;
+    private final Map<PackageElement, Set<MatchDefinition>> definitionsInScope;
+
+    public ElementFinder(Elements elementUtils, Types typeUtils, ElementMatcher elementMatcher,
+            ProcessorMetrics metrics, String elementPackageFilter, boolean dropScanStatePerRootElement,
+            ElementTraversal.Order scanOrder) {
         this.elementUtils = elementUtils;
-        this.typeUtils = typeUtils;
         this.elementMatcher = elementMatcher;
+        this.metrics = metrics;
         this.elementPackagePattern = Pattern.compile(elementPackageFilter);
-        this.elementsScanned = new HashSet<Element>();
-        this.elementsFound = new HashMap<Integer, Set<Element>>();
+        this.dropScanStatePerRootElement = dropScanStatePerRootElement;
+        this.traversal = new ElementTraversal(typeUtils, scanOrder);
+        this.elementsFound = new HashMap<Integer, MatchResult>();
+        this.elementTable = new ElementTable();
+        this.definitionsInScope = new IdentityHashMap<PackageElement, Set<MatchDefinition>>();
+    }
+
+    public void scan(Set<? extends Element> rootElements, Set<MatchDefinition> matchDefinitions) {
+        // Element IDs are scoped to a single scan
+        this.elementsFound.clear();
+        this.elementTable = new ElementTable();
+        this.matchDefinitions = matchDefinitions;
+        this.packageScoped = false;
+
+        for (MatchDefinition def : matchDefinitions) {
+            if (def.getPackageScope() != null) {
+                packageScoped = true;
+            }
+        }
+
+        try {
+            for (Element root : rootElements) {
+                PhaseEvent scanEvent = metrics.beginEvent(Phase.ELEMENT_SCAN);
+                long elementsVisited = metrics.getElementsVisited();
+
+                traversal.traverse(root, this);
+                scanEvent.commit(null, root, metrics.getElementsVisited() - elementsVisited);
+
+                if (dropScanStatePerRootElement) {
+                    traversal.clearTraversed();
+                }
+            }
+        } finally {
+            // Scan state is not needed anymore
+            traversal.clearTraversed();
+            peakScannedElementCount = traversal.resetPeakTraversedCount();
+            this.matchDefinitions = null;
+            definitionsInScope.clear();
+
+            // Type hierarchy is not retained across scans
+            elementMatcher.clearCaches();
+        }
+    }
+
+    /**
+     * Returns elements matching the given definition, as a read-only view of this finder's storage.
+     * <p>
+     * Returned list is valid until the next {@linkplain #scan(Set, Set) scan}.
+     */
+    public List<Element> getElementsFound(Where def) {
+        MatchResult found = elementsFound.get(getKey(def));
+        return found != null ? found : MatchResult.EMPTY;
     }
 
-    public Void scan(Set<? extends Element> rootElements, Set<Where> matchDefinitions) {
-        elementsScanned.clear();
-        elementsFound.clear();
-        return super.scan(rootElements, matchDefinitions);
+    /**
+     * Returns the peak number of elements remembered as scanned during the last scan.
+     */
+    public int getScannedElementCount() {
+        return peakScannedElementCount;
     }
 
-    public Element[] getElementsFound(Where def) {
-        Set<Element> found = elementsFound.get(getKey(def));
-        return found != null ? found.toArray(new Element[0]) : new Element[0];
+    /**
+     * Returns the number of distinct elements found for all definitions, which are retained until the next scan.
+     */
+    public int getFoundElementCount() {
+        return elementTable.size();
     }
 
     boolean packageIncluded(PackageElement pkg) {
@@ -75,18 +143,22 @@ public class ElementFinder extends ElementScanner6<Void, Set<Where>> {
 
     void addElement(Element elm, Where def) {
         int key = getKey(def);
+        MatchResult found = elementsFound.get(key);
 
-        if (elementsFound.get(key) == null) {
-            elementsFound.put(key, new HashSet<Element>());
+        if (found == null) {
+            found = new MatchResult(elementTable);
+            elementsFound.put(key, found);
         }
 
-        elementsFound.get(key).add(elm);
+        found.addElement(elm);
     }
 
-    void matchElement(Element elm, Set<Where> matchDefinitions) {
-        for (Where def : matchDefinitions) {
+    void matchElement(Element elm, Set<MatchDefinition> matchDefinitions) {
+        for (MatchDefinition def : matchDefinitions) {
+            metrics.matchTested();
+
             if (elementMatcher.matches(elm, def)) {
-                addElement(elm, def);
+                addElement(elm, def.getWhere());
             }
         }
     }
@@ -104,122 +176,80 @@ public class ElementFinder extends ElementScanner6<Void, Set<Where>> {
     public int getKey(Where def) {
         int result = HashCodeUtil.SEED;
         result = HashCodeUtil.hash(result, def.kind());
+        result = HashCodeUtil.hash(result, def.packages());
         result = HashCodeUtil.hash(result, def.modifiers());
         result = HashCodeUtil.hash(result, def.simpleNameMatches());
         result = HashCodeUtil.hash(result, def.annotations());
+        result = HashCodeUtil.hash(result, def.subtypeOf());
+        result = HashCodeUtil.hash(result, def.assignableTo());
         result = HashCodeUtil.hash(result, def.metaData());
+        result = HashCodeUtil.hash(result, def.filter());
+        result = HashCodeUtil.hash(result, def.anyOf());
+        result = HashCodeUtil.hash(result, def.noneOf());
         return result;
     }
 
     @Override
-    public Void scan(Element e, Set<Where> p) {
-        if (!elementsScanned.contains(e)) {
-            // Remember scanned elements to avoid infinite recursion
-            elementsScanned.add(e);
-            return super.scan(e, p);
-        }
-
-        return DEFAULT_VALUE;
-    }
-
-    @Override
-    public Void visitPackage(PackageElement e, Set<Where> p) {
-        // Apply package filter
-        if (!packageIncluded(e)) {
-            return DEFAULT_VALUE;
-        }
+    public boolean visit(Element e) {
+        metrics.elementVisited();
 
-        // Match package
-        matchElement(e, p);
-
-        // Match enclosed elements
-        return scan(e.getEnclosedElements(), p);
-    }
+        ElementKind kind = e.getKind();
+        boolean packageOrType = kind == ElementKind.PACKAGE || kind.isClass() || kind.isInterface();
+        PackageElement pkg = packageOrType || packageScoped ? elementUtils.getPackageOf(e) : null;
 
-    @Override
-    public Void visitType(TypeElement e, Set<Where> p) {
         // Apply package filter
-        if (!packageIncluded(elementUtils.getPackageOf(e))) {
-            return DEFAULT_VALUE;
+        if (packageOrType && !packageIncluded(pkg)) {
+            return false;
         }
 
-        // Match type
-        matchElement(e, p);
-
-        // Match superclass
-        Element superclass = typeUtils.asElement(e.getSuperclass());
-        if (superclass != null) {
-            scan(superclass, p);
+        // Skip packages and types that no definition can match within
+        Set<MatchDefinition> defs = pkg != null ? getDefinitionsInScope(pkg) : matchDefinitions;
+        if (defs.isEmpty()) {
+            return false;
         }
 
-        // Match interfaces
-        for (TypeMirror t : e.getInterfaces()) {
-            Element iface = typeUtils.asElement(t);
-            scan(iface, p);
-        }
+        // Match element
+        matchElement(e, defs);
 
-        // Match type parameters
-        for (TypeParameterElement tp : e.getTypeParameters()) {
-            scan(tp, p);
+        // Match parameterized element
+        if (kind == ElementKind.TYPE_PARAMETER) {
+            matchElement(((TypeParameterElement) e).getGenericElement(), defs);
         }
 
-        // Match enclosed elements
-        return scan(e.getEnclosedElements(), p);
+        return true;
     }
 
-    @Override
-    public Void visitExecutable(ExecutableElement e, Set<Where> p) {
-        // Match executable
-        matchElement(e, p);
-
-        // Match type parameters
-        for (TypeParameterElement tp : e.getTypeParameters()) {
-            scan(tp, p);
-        }
-
-        // Match return type
-        Element retType = typeUtils.asElement(e.getReturnType());
-        if (retType != null) {
-            scan(retType, p);
-        }
-
-        // Match parameters
-        for (VariableElement v : e.getParameters()) {
-            scan(v, p);
+    /**
+     * Returns match definitions whose package scope includes the given package.
+     */
+    Set<MatchDefinition> getDefinitionsInScope(PackageElement pkg) {
+        if (!packageScoped) {
+            return matchDefinitions;
         }
 
-        // Match thrown types
-        for (TypeMirror t : e.getThrownTypes()) {
-            Element throwable = typeUtils.asElement(t);
-            scan(throwable, p);
-        }
+        Set<MatchDefinition> result = definitionsInScope.get(pkg);
 
-        return DEFAULT_VALUE;
-    }
+        if (result == null) {
+            String packageName = pkg.getQualifiedName().toString();
+            result = new HashSet<MatchDefinition>();
 
-    @Override
-    public Void visitVariable(VariableElement e, Set<Where> p) {
-        // Match variable
-        matchElement(e, p);
+            for (MatchDefinition def : matchDefinitions) {
+                PackageScope scope = def.getPackageScope();
 
-        return DEFAULT_VALUE;
-    }
-
-    @Override
-    public Void visitTypeParameter(TypeParameterElement e, Set<Where> p) {
-        // Match type parameter
-        matchElement(e, p);
+                if (scope == null || scope.includes(packageName)) {
+                    result.add(def);
+                }
+            }
 
-        // Match parameterized element
-        matchElement(e.getGenericElement(), p);
+            // Share definition set if all definitions are in scope
+            if (result.size() == matchDefinitions.size()) {
+                result = matchDefinitions;
+            }
 
-        // Match parameter bounds
-        for (TypeMirror t : e.getBounds()) {
-            Element bound = typeUtils.asElement(t);
-            scan(bound, p);
+            definitionsInScope.put(pkg, result);
         }
 
-        return DEFAULT_VALUE;
+        return result;
     }
 
 }
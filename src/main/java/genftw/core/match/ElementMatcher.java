@@ -16,66 +16,238 @@
 
 package genftw.core.match;
 
+import genftw.api.Criteria;
 import genftw.api.Where;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
-import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
 import javax.lang.model.util.Elements;
 
 /**
  * Matches elements against given criteria.
+ * <p>
+ * Each match definition is {@linkplain MatchDefinition compiled} into a tree of {@linkplain MatchCondition
+ * conditions} up front, and conditions access elements through this matcher. Conditions are evaluated in the order of
+ * their measured cost and selectivity, which adapts to matched elements. Subtype criteria are served by a
+ * {@linkplain TypeHierarchyIndex type hierarchy index}. The index and other element-related caches are kept until
+ * {@linkplain #clearCaches() cleared}.
  */
 public class ElementMatcher {
 
     private final Elements elementUtils;
     private final MetaDataMatcher metaDataMatcher;
+    private final MatchProfiler profiler;
+    private final ElementPredicateLoader predicateLoader;
+    private final TypeHierarchyIndex hierarchyIndex;
+    private final Map<PackageElement, String> packageNames;
 
     public ElementMatcher(Elements elementUtils, MetaDataMatcher metaDataMatcher) {
+        this(elementUtils, metaDataMatcher, null);
+    }
+
+    /**
+     * Creates matcher that records match costs using given profiler, or {@code null} to disable profiling.
+     */
+    public ElementMatcher(Elements elementUtils, MetaDataMatcher metaDataMatcher, MatchProfiler profiler) {
+        this(elementUtils, metaDataMatcher, profiler,
+                new ElementPredicateLoader(ElementMatcher.class.getClassLoader(), null));
+    }
+
+    /**
+     * Creates matcher that loads {@linkplain Where#filter() custom filters} using given predicate loader.
+     */
+    public ElementMatcher(Elements elementUtils, MetaDataMatcher metaDataMatcher, MatchProfiler profiler,
+            ElementPredicateLoader predicateLoader) {
         this.elementUtils = elementUtils;
         this.metaDataMatcher = metaDataMatcher;
+        this.profiler = profiler;
+        this.predicateLoader = predicateLoader;
+        this.hierarchyIndex = new TypeHierarchyIndex(elementUtils);
+        this.packageNames = new IdentityHashMap<PackageElement, String>();
+    }
+
+    public boolean matches(Element elm, MatchDefinition def) {
+        ConditionGroup conditions = def.getConditions();
+
+        if (profiler != null) {
+            long startNanos = System.nanoTime();
+            boolean result = conditions.testProfiled(elm, this, def.getWhere(), profiler);
+            profiler.candidateTested(def.getWhere(), result, System.nanoTime() - startNanos);
+            return result;
+        }
+
+        return conditions.test(elm, this);
+    }
+
+    /**
+     * Releases the type hierarchy index and cached package names. Compiled definitions, along with their measured
+     * cost and selectivity, are not affected.
+     */
+    public void clearCaches() {
+        hierarchyIndex.clear();
+        packageNames.clear();
+    }
+
+    Elements getElementUtils() {
+        return elementUtils;
+    }
+
+    MetaDataMatcher getMetaDataMatcher() {
+        return metaDataMatcher;
+    }
+
+    ElementPredicateLoader getPredicateLoader() {
+        return predicateLoader;
+    }
+
+    TypeHierarchyIndex getHierarchyIndex() {
+        return hierarchyIndex;
+    }
+
+    /**
+     * Returns qualified name of the package enclosing given element.
+     */
+    String getPackageName(Element elm) {
+        PackageElement pkg = elementUtils.getPackageOf(elm);
+        String result = packageNames.get(pkg);
+
+        if (result == null) {
+            result = pkg.getQualifiedName().toString();
+            packageNames.put(pkg, result);
+        }
+
+        return result;
     }
 
-    public boolean matches(Element elm, Where def) {
-        boolean result = true;
+    static ConditionGroup compile(Where def) {
+        List<MatchCondition> conditions = new ArrayList<MatchCondition>();
 
-        // Match by kind
-        if (result && def.kind().length > 0) {
-            Set<ElementKind> restrictedKinds = new HashSet<ElementKind>(Arrays.asList(def.kind()));
-            result = result && restrictedKinds.contains(elm.getKind());
+        if (isRestricted(def, MatchPredicate.PACKAGES)) {
+            conditions.add(new PackageCondition(def.packages()));
         }
 
-        // Match by modifiers
-        if (result && def.modifiers().length > 0) {
-            Set<Modifier> mandatoryModifiers = new HashSet<Modifier>(Arrays.asList(def.modifiers()));
-            result = result && elm.getModifiers().containsAll(mandatoryModifiers);
+        addConditions(conditions, def.kind(), def.modifiers(), def.simpleNameMatches(), def.annotations(),
+                def.subtypeOf(), def.assignableTo(), def.metaData(), def.filter());
+
+        if (isRestricted(def, MatchPredicate.ANY_OF)) {
+            conditions.add(new ConditionGroup(MatchPredicate.ANY_OF, true, compile(def.anyOf())));
         }
 
-        // Match by simple name
-        if (result && !Where.DONT_MATCH.equals(def.simpleNameMatches())) {
-            result = result && elm.getSimpleName().toString().matches(def.simpleNameMatches());
+        if (isRestricted(def, MatchPredicate.NONE_OF)) {
+            conditions.add(new NegatedCondition(MatchPredicate.NONE_OF,
+                    new ConditionGroup(null, true, compile(def.noneOf()))));
         }
 
-        // Match by annotations
-        if (result && def.annotations().length > 0) {
-            Set<String> mandatoryAnnotationNames = new HashSet<String>(Arrays.asList(def.annotations()));
+        return new ConditionGroup(null, false, conditions);
+    }
 
-            Set<String> elementAnnotationNames = new HashSet<String>();
-            for (AnnotationMirror a : elementUtils.getAllAnnotationMirrors(elm)) {
-                elementAnnotationNames.add(a.getAnnotationType().toString());
-            }
+    static List<MatchCondition> compile(Criteria[] criteria) {
+        List<MatchCondition> result = new ArrayList<MatchCondition>(criteria.length);
 
-            result = result && elementAnnotationNames.containsAll(mandatoryAnnotationNames);
+        for (Criteria c : criteria) {
+            List<MatchCondition> conditions = new ArrayList<MatchCondition>();
+            addConditions(conditions, c.kind(), c.modifiers(), c.simpleNameMatches(), c.annotations(),
+                    c.subtypeOf(), c.assignableTo(), c.metaData(), c.filter());
+
+            MatchCondition group = new ConditionGroup(null, false, conditions);
+            result.add(c.negate() ? new NegatedCondition(null, group) : group);
+        }
+
+        return result;
+    }
+
+    static void addConditions(List<MatchCondition> conditions, ElementKind[] kind, Modifier[] modifiers,
+            String simpleNameMatches, String[] annotations, String[] subtypeOf, String[] assignableTo,
+            String metaData, String filter) {
+        if (kind.length > 0) {
+            conditions.add(new KindCondition(kind));
+        }
+
+        if (modifiers.length > 0) {
+            conditions.add(new ModifiersCondition(modifiers));
+        }
+
+        if (!Where.DONT_MATCH.equals(simpleNameMatches)) {
+            conditions.add(new SimpleNameCondition(simpleNameMatches));
+        }
+
+        if (annotations.length > 0) {
+            conditions.add(new AnnotationsCondition(annotations));
+        }
+
+        if (subtypeOf.length > 0) {
+            conditions.add(new SupertypeCondition(MatchPredicate.SUBTYPE_OF, subtypeOf, false));
         }
 
-        // Match by meta-data
-        if (result && !Where.DONT_MATCH.equals(def.metaData())) {
-            result = result && metaDataMatcher.matches(elm, def.metaData());
+        if (assignableTo.length > 0) {
+            conditions.add(new SupertypeCondition(MatchPredicate.ASSIGNABLE_TO, assignableTo, true));
+        }
+
+        if (!Where.DONT_MATCH.equals(metaData)) {
+            conditions.add(new MetaDataCondition(metaData));
+        }
+
+        if (filter.length() > 0) {
+            conditions.add(new FilterCondition(filter));
+        }
+    }
+
+    /**
+     * Returns {@code true} if given definition restricts matched elements using given predicate.
+     */
+    public static boolean isRestricted(Where def, MatchPredicate predicate) {
+        switch (predicate) {
+        case KIND:
+            return def.kind().length > 0;
+        case PACKAGES:
+            return def.packages().length > 0;
+        case MODIFIERS:
+            return def.modifiers().length > 0;
+        case SIMPLE_NAME:
+            return !Where.DONT_MATCH.equals(def.simpleNameMatches());
+        case ANNOTATIONS:
+            return def.annotations().length > 0;
+        case SUBTYPE_OF:
+            return def.subtypeOf().length > 0;
+        case ASSIGNABLE_TO:
+            return def.assignableTo().length > 0;
+        case META_DATA:
+            return !Where.DONT_MATCH.equals(def.metaData());
+        case FILTER:
+            return def.filter().length() > 0;
+        case ANY_OF:
+            return def.anyOf().length > 0;
+        case NONE_OF:
+            return def.noneOf().length > 0;
+        default:
+            throw new IllegalArgumentException("Unknown predicate " + predicate);
+        }
+    }
+
+    /**
+     * Returns names of all {@linkplain Where#filter() custom filters} used by given definition, including its
+     * criteria.
+     */
+    public static List<String> getFilters(Where def) {
+        List<String> result = new ArrayList<String>();
+
+        if (isRestricted(def, MatchPredicate.FILTER)) {
+            result.add(def.filter());
+        }
+
+        for (Criteria[] criteria : new Criteria[][] { def.anyOf(), def.noneOf() }) {
+            for (Criteria c : criteria) {
+                if (c.filter().length() > 0) {
+                    result.add(c.filter());
+                }
+            }
         }
 
         return result;
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import genftw.api.GroupBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+
+/**
+ * Partitions matched elements into groups, as defined by {@link GroupBy}, or into shards of similar size.
+ */
+public class ElementPartitioner {
+
+    private final Elements elementUtils;
+    private final MetaDataMatcher metaDataMatcher;
+
+    public ElementPartitioner(Elements elementUtils, MetaDataMatcher metaDataMatcher) {
+        this.elementUtils = elementUtils;
+        this.metaDataMatcher = metaDataMatcher;
+    }
+
+    /**
+     * Returns groups of given elements, sorted by group key. Elements within each group keep their order.
+     */
+    public SortedMap<String, List<Element>> partition(List<Element> elements, GroupBy groupBy,
+            String metaDataProperty) {
+        SortedMap<String, List<Element>> result = new TreeMap<String, List<Element>>();
+
+        for (Element e : elements) {
+            String key = getGroupKey(e, groupBy, metaDataProperty);
+
+            if (key == null) {
+                continue;
+            }
+
+            List<Element> group = result.get(key);
+
+            if (group == null) {
+                group = new ArrayList<Element>();
+                result.put(key, group);
+            }
+
+            group.add(e);
+        }
+
+        return result;
+    }
+
+    /**
+     * Splits given elements into {@linkplain #getShardCount(int, int) shards} holding about {@code shardSize}
+     * elements each.
+     * <p>
+     * Each element is assigned to a shard by hash code of its qualified name, so that adding or removing an element
+     * changes only the shard it belongs to, as long as the shard count stays the same. Elements within each shard are
+     * sorted by their qualified names, so that shards don't depend on the order in which elements were found.
+     */
+    public List<List<Element>> shard(List<Element> elements, int shardSize) {
+        int shardCount = getShardCount(elements.size(), shardSize);
+        final Map<Element, String> sortKeys = new IdentityHashMap<Element, String>();
+        List<List<Element>> result = new ArrayList<List<Element>>(shardCount);
+
+        for (int i = 0; i < shardCount; i++) {
+            result.add(new ArrayList<Element>());
+        }
+
+        for (Element e : elements) {
+            String sortKey = getSortKey(e);
+            sortKeys.put(e, sortKey);
+            result.get(getShardIndex(sortKey, shardCount)).add(e);
+        }
+
+        Comparator<Element> bySortKey = new Comparator<Element>() {
+            @Override
+            public int compare(Element e1, Element e2) {
+                return sortKeys.get(e1).compareTo(sortKeys.get(e2));
+            }
+        };
+
+        for (List<Element> shard : result) {
+            Collections.sort(shard, bySortKey);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of shards that the given number of elements is split into.
+     * <p>
+     * Shard count is the smallest power of two that keeps the average shard size within {@code shardSize}. As the
+     * number of elements grows, shard count changes only when it doubles, splitting each shard in two.
+     */
+    public int getShardCount(int elementCount, int shardSize) {
+        int minShardCount = (elementCount + shardSize - 1) / shardSize;
+        int result = 1;
+
+        while (result < minShardCount) {
+            result <<= 1;
+        }
+
+        return result;
+    }
+
+    static int getShardIndex(String sortKey, int shardCount) {
+        // String hash code is specified, so shard assignment is the same across compilations
+        return (sortKey.hashCode() & Integer.MAX_VALUE) % shardCount;
+    }
+
+    /**
+     * Returns a name that identifies the given element within the compilation, e.g. qualified name of a type or
+     * qualified name of the enclosing type followed by the method signature.
+     */
+    String getSortKey(Element elm) {
+        if (elm.getKind() == ElementKind.PACKAGE) {
+            return elementUtils.getPackageOf(elm).getQualifiedName().toString();
+        } else if (isType(elm)) {
+            return ((TypeElement) elm).getQualifiedName().toString();
+        }
+
+        Element enclosing = elm.getEnclosingElement();
+        String enclosingKey = enclosing != null ? getSortKey(enclosing) : "";
+
+        // Element string representation includes signature of executable elements
+        return enclosingKey + "#" + elm.toString();
+    }
+
+    /**
+     * Returns group key of the given element, or {@code null} if the element is not part of any group.
+     */
+    public String getGroupKey(Element elm, GroupBy groupBy, String metaDataProperty) {
+        switch (groupBy) {
+        case PACKAGE:
+            return elementUtils.getPackageOf(elm).getQualifiedName().toString();
+        case ENCLOSING_TYPE:
+            TypeElement type = getEnclosingType(elm);
+            return type != null ? type.getQualifiedName().toString() : null;
+        case META_DATA_PROPERTY:
+            return metaDataMatcher.getPropertyValue(elm, metaDataProperty);
+        default:
+            throw new IllegalArgumentException("Unknown grouping " + groupBy);
+        }
+    }
+
+    TypeElement getEnclosingType(Element elm) {
+        Element enclosing = elm.getEnclosingElement();
+
+        while (enclosing != null && !isType(enclosing)) {
+            enclosing = enclosing.getEnclosingElement();
+        }
+
+        // Top-level types are grouped by themselves
+        if (enclosing == null && isType(elm)) {
+            return (TypeElement) elm;
+        }
+
+        return (TypeElement) enclosing;
+    }
+
+    static boolean isType(Element elm) {
+        ElementKind kind = elm.getKind();
+        return kind.isClass() || kind.isInterface();
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import genftw.api.ElementPredicate;
+
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.processing.ProcessingEnvironment;
+
+/**
+ * Loads {@linkplain ElementPredicate element predicates} using the given class loader, caching a single instance per
+ * predicate class.
+ */
+public class ElementPredicateLoader {
+
+    private final ClassLoader classLoader;
+    private final ProcessingEnvironment processingEnv;
+    private final Map<String, ElementPredicate> predicates;
+
+    /**
+     * Creates loader that passes given processing environment, or {@code null} if not available, to predicates that
+     * accept it.
+     */
+    public ElementPredicateLoader(ClassLoader classLoader, ProcessingEnvironment processingEnv) {
+        this.classLoader = classLoader;
+        this.processingEnv = processingEnv;
+        this.predicates = new HashMap<String, ElementPredicate>();
+    }
+
+    /**
+     * Returns predicate instance of the given class.
+     * 
+     * @throws IllegalArgumentException
+     *             if the predicate class cannot be loaded or instantiated
+     */
+    public ElementPredicate load(String className) {
+        ElementPredicate predicate = predicates.get(className);
+
+        if (predicate == null) {
+            predicate = createPredicate(className);
+            predicates.put(className, predicate);
+        }
+
+        return predicate;
+    }
+
+    ElementPredicate createPredicate(String className) {
+        try {
+            Class<? extends ElementPredicate> predicateClass = Class.forName(className, true, classLoader)
+                    .asSubclass(ElementPredicate.class);
+
+            if (processingEnv != null) {
+                try {
+                    Constructor<? extends ElementPredicate> constructor =
+                            predicateClass.getConstructor(ProcessingEnvironment.class);
+                    return constructor.newInstance(processingEnv);
+                } catch (NoSuchMethodException e) {
+                    // Fall back to no-arg constructor
+                }
+            }
+
+            return predicateClass.newInstance();
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("Class " + className + " does not implement "
+                    + ElementPredicate.class.getName(), e);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Error while loading element predicate " + className, e);
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Scan-scoped table that assigns dense integer IDs to matched elements, in the order they were first matched.
+ * <p>
+ * Each element is referenced by this table only once, regardless of the number of match definitions it matches, so
+ * that {@linkplain MatchResult match results} can store element IDs as bit sets.
+ */
+class ElementTable {
+
+    static final int NO_ID = -1;
+
+    private final List<Element> elements;
+    private final Map<Element, Integer> ids;
+
+    ElementTable() {
+        this.elements = new ArrayList<Element>();
+        this.ids = new IdentityHashMap<Element, Integer>();
+    }
+
+    /**
+     * Returns ID of the given element, assigning the next free ID to elements not yet in this table.
+     */
+    int register(Element elm) {
+        Integer id = ids.get(elm);
+
+        if (id == null) {
+            id = elements.size();
+            elements.add(elm);
+            ids.put(elm, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Returns ID of the given element, or {@link #NO_ID} if the element is not in this table.
+     */
+    int find(Object elm) {
+        Integer id = ids.get(elm);
+        return id != null ? id : NO_ID;
+    }
+
+    Element get(int id) {
+        return elements.get(id);
+    }
+
+    int size() {
+        return elements.size();
+    }
+
+}
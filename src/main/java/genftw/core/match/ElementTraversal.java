@@ -0,0 +1,218 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+
+/**
+ * Iterative traversal of elements reachable from root elements, using an explicit work queue instead of recursion.
+ * <p>
+ * Elements are reached through enclosure, as well as through supertypes, signature types and type parameter bounds.
+ * Each reached element is passed to a {@link Visitor}, which decides whether to traverse elements reachable from it.
+ * Elements are dispatched by their {@linkplain ElementKind kind}, so traversal depth is not limited by thread stack
+ * size.
+ * <p>
+ * Members are reached only through their enclosing elements, so only elements that can be reached through types (i.e.
+ * types and type parameters) are remembered as traversed, by identity, until {@linkplain #clearTraversed() cleared}.
+ * <p>
+ * Instances of this class are not thread-safe.
+ */
+public class ElementTraversal {
+
+    /**
+     * Order in which reachable elements are traversed.
+     */
+    public enum Order {
+
+        /**
+         * Elements reachable from an element are traversed before its siblings, as with recursive element scanning.
+         * Work queue holds pending siblings of elements on the current path.
+         */
+        DEPTH_FIRST,
+
+        /**
+         * Elements are traversed level by level. Work queue holds the whole next level.
+         */
+        BREADTH_FIRST;
+
+        /**
+         * Parses case-insensitive order name, ignoring dashes and underscores, returning default order for unknown
+         * names.
+         */
+        public static Order parse(String name, Order defaultOrder) {
+            if (name != null) {
+                String normalized = name.replace("-", "").replace("_", "");
+
+                for (Order order : values()) {
+                    if (order.name().replace("_", "").equalsIgnoreCase(normalized)) {
+                        return order;
+                    }
+                }
+            }
+
+            return defaultOrder;
+        }
+
+    }
+
+    /**
+     * Per-element traversal hook.
+     */
+    public interface Visitor {
+
+        /**
+         * Visits reached element, returning {@code true} to traverse elements reachable from it.
+         */
+        boolean visit(Element e);
+
+    }
+
+    private final Types typeUtils;
+    private final Order order;
+    private final Deque<Element> workQueue;
+    private final List<Element> reachable;
+    private final Set<Element> traversed;
+    private int peakTraversedCount;
+
+    public ElementTraversal(Types typeUtils, Order order) {
+        this.typeUtils = typeUtils;
+        this.order = order;
+        this.workQueue = new ArrayDeque<Element>();
+        this.reachable = new ArrayList<Element>();
+        this.traversed = Collections.newSetFromMap(new IdentityHashMap<Element, Boolean>());
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Traverses elements reachable from the given root element, skipping elements traversed since the state was last
+     * {@linkplain #clearTraversed() cleared}.
+     */
+    public void traverse(Element root, Visitor visitor) {
+        workQueue.add(root);
+
+        while (!workQueue.isEmpty()) {
+            Element e = workQueue.pollFirst();
+
+            // Remember traversed types to avoid infinite loops
+            if (isReachableThroughType(e) && !traversed.add(e)) {
+                continue;
+            }
+
+            if (visitor.visit(e)) {
+                addReachable(e);
+                enqueueReachable();
+            }
+        }
+    }
+
+    /**
+     * Forgets elements traversed so far.
+     */
+    public void clearTraversed() {
+        peakTraversedCount = Math.max(peakTraversedCount, traversed.size());
+        traversed.clear();
+    }
+
+    /**
+     * Returns the peak number of elements remembered as traversed, resetting the peak.
+     */
+    public int resetPeakTraversedCount() {
+        int result = Math.max(peakTraversedCount, traversed.size());
+        peakTraversedCount = 0;
+        return result;
+    }
+
+    /**
+     * Returns {@code true} if the given element can be reached through a type, and must be therefore remembered as
+     * traversed.
+     */
+    static boolean isReachableThroughType(Element e) {
+        ElementKind kind = e.getKind();
+        return kind.isClass() || kind.isInterface() || kind == ElementKind.TYPE_PARAMETER;
+    }
+
+    void enqueueReachable() {
+        if (order == Order.DEPTH_FIRST) {
+            // Push in reverse, so that reachable elements are polled in their natural order
+            for (int i = reachable.size() - 1; i >= 0; i--) {
+                workQueue.addFirst(reachable.get(i));
+            }
+        } else {
+            workQueue.addAll(reachable);
+        }
+
+        reachable.clear();
+    }
+
+    void addReachable(Element e) {
+        ElementKind kind = e.getKind();
+
+        if (kind == ElementKind.PACKAGE) {
+            reachable.addAll(((PackageElement) e).getEnclosedElements());
+        } else if (kind.isClass() || kind.isInterface()) {
+            TypeElement type = (TypeElement) e;
+            addReachable(type.getSuperclass());
+
+            for (TypeMirror t : type.getInterfaces()) {
+                addReachable(t);
+            }
+
+            reachable.addAll(type.getTypeParameters());
+            reachable.addAll(type.getEnclosedElements());
+        } else if (e instanceof ExecutableElement) {
+            ExecutableElement executable = (ExecutableElement) e;
+            reachable.addAll(executable.getTypeParameters());
+            addReachable(executable.getReturnType());
+            reachable.addAll(executable.getParameters());
+
+            for (TypeMirror t : executable.getThrownTypes()) {
+                addReachable(t);
+            }
+        } else if (kind == ElementKind.TYPE_PARAMETER) {
+            for (TypeMirror t : ((TypeParameterElement) e).getBounds()) {
+                addReachable(t);
+            }
+        }
+    }
+
+    void addReachable(TypeMirror type) {
+        Element e = type != null ? typeUtils.asElement(type) : null;
+
+        if (e != null) {
+            reachable.add(e);
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+
+/**
+ * Condition satisfied by elements of one of the given kinds.
+ */
+class KindCondition extends MatchCondition {
+
+    private final Set<ElementKind> kinds;
+
+    KindCondition(ElementKind[] kinds) {
+        super(MatchPredicate.KIND);
+        this.kinds = EnumSet.noneOf(ElementKind.class);
+        this.kinds.addAll(Arrays.asList(kinds));
+    }
+
+    @Override
+    boolean test(Element elm, ElementMatcher matcher) {
+        return kinds.contains(elm.getKind());
+    }
+
+}
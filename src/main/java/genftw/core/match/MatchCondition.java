@@ -0,0 +1,86 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Compiled element match condition that tracks its own cost and selectivity.
+ * <p>
+ * Conditions are combined into {@linkplain ConditionGroup groups} that short-circuit evaluation. Each group counts
+ * tests and passes of its conditions, and samples their evaluation time once in a while. Conditions of a group are
+ * periodically reordered by their expected cost per decided element, so that cheap and selective conditions (such as
+ * element kind restriction) are evaluated first, and expensive ones (such as meta-data resolution) last.
+ * <p>
+ * Until evaluation time of a condition is measured, it is estimated by its {@linkplain MatchPredicate predicate}.
+ */
+abstract class MatchCondition {
+
+    private final MatchPredicate predicate;
+    private long tests;
+    private long passes;
+    private long sampledNanos;
+    private int samples;
+
+    MatchCondition(MatchPredicate predicate) {
+        this.predicate = predicate;
+    }
+
+    /**
+     * Returns predicate represented by this condition, or {@code null} for nested criteria.
+     */
+    MatchPredicate getPredicate() {
+        return predicate;
+    }
+
+    /**
+     * Tests given element, accessing element information through given matcher.
+     */
+    abstract boolean test(Element elm, ElementMatcher matcher);
+
+    long getEstimatedNanos() {
+        return predicate.estimatedNanos();
+    }
+
+    void recordTest(boolean passed) {
+        tests++;
+
+        if (passed) {
+            passes++;
+        }
+    }
+
+    void recordSample(long nanos) {
+        sampledNanos += nanos;
+        samples++;
+    }
+
+    /**
+     * Returns average evaluation time, or estimated time if not measured yet.
+     */
+    double getCost() {
+        return samples > 0 ? (double) sampledNanos / samples : getEstimatedNanos();
+    }
+
+    /**
+     * Returns smoothed ratio of passed tests, which is never 0 or 1.
+     */
+    double getPassRate() {
+        return (passes + 1.0) / (tests + 2.0);
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import genftw.api.Where;
+
+/**
+ * Match definition compiled into a tree of {@linkplain MatchCondition conditions}.
+ * <p>
+ * Definitions are compiled once, when generator method is resolved. Compiled conditions don't depend on processing
+ * rounds, as they access elements through the {@link ElementMatcher} testing them, so their measured cost and
+ * selectivity are retained across scans.
+ */
+public final class MatchDefinition {
+
+    private final Where where;
+    private final ConditionGroup conditions;
+    private final PackageScope packageScope;
+
+    public MatchDefinition(Where where) {
+        this.where = where;
+        this.conditions = ElementMatcher.compile(where);
+        this.packageScope = ElementMatcher.isRestricted(where, MatchPredicate.PACKAGES)
+                ? new PackageScope(where.packages()) : null;
+    }
+
+    public Where getWhere() {
+        return where;
+    }
+
+    ConditionGroup getConditions() {
+        return conditions;
+    }
+
+    /**
+     * Returns package scope of this definition, or {@code null} if it's not restricted to any packages.
+     */
+    PackageScope getPackageScope() {
+        return packageScope;
+    }
+
+    @Override
+    public String toString() {
+        return where.toString();
+    }
+
+}
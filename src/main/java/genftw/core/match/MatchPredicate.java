@@ -0,0 +1,59 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+/**
+ * Individual element match predicates of a {@link genftw.api.Where} definition.
+ * <p>
+ * Predicates are evaluated in the order of their measured cost and selectivity, starting with the order of their
+ * estimated cost, see {@link MatchCondition}.
+ */
+public enum MatchPredicate {
+
+    KIND("kind", 5),
+    PACKAGES("packages", 20),
+    MODIFIERS("modifiers", 10),
+    SIMPLE_NAME("simpleName", 50),
+    ANNOTATIONS("annotations", 200),
+    SUBTYPE_OF("subtypeOf", 100),
+    ASSIGNABLE_TO("assignableTo", 100),
+    META_DATA("metaData", 500),
+    FILTER("filter", 1000),
+    ANY_OF("anyOf", 0),
+    NONE_OF("noneOf", 0);
+
+    private final String id;
+    private final long estimatedNanos;
+
+    private MatchPredicate(String id, long estimatedNanos) {
+        this.id = id;
+        this.estimatedNanos = estimatedNanos;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    /**
+     * Returns estimated evaluation time of this predicate, used until actual time is measured. Composite predicates
+     * are estimated by their criteria.
+     */
+    long estimatedNanos() {
+        return estimatedNanos;
+    }
+
+}
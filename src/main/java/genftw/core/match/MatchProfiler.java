@@ -0,0 +1,222 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import genftw.api.Where;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records element matching costs per match definition and {@linkplain MatchPredicate predicate}.
+ * <p>
+ * For each definition, the profiler tracks the number of candidate elements tested, the number of matches and the
+ * cumulative match time, along with the same figures for each predicate evaluated. Profiles are reset at the start of
+ * each processing round.
+ */
+public class MatchProfiler {
+
+    private static final MatchPredicate[] PREDICATES = MatchPredicate.values();
+
+    private final Map<Where, DefinitionProfile> profiles;
+
+    public MatchProfiler() {
+        this.profiles = new LinkedHashMap<Where, DefinitionProfile>();
+    }
+
+    public void reset() {
+        profiles.clear();
+    }
+
+    void candidateTested(Where def, boolean matched, long nanos) {
+        DefinitionProfile profile = getProfile(def);
+        profile.candidates++;
+        profile.nanos += nanos;
+
+        if (matched) {
+            profile.matches++;
+        }
+    }
+
+    void predicateTested(Where def, MatchPredicate predicate, boolean passed, long nanos) {
+        DefinitionProfile profile = getProfile(def);
+        int i = predicate.ordinal();
+        profile.predicateTests[i]++;
+        profile.predicateNanos[i] += nanos;
+
+        if (passed) {
+            profile.predicatePasses[i]++;
+        }
+    }
+
+    DefinitionProfile getProfile(Where def) {
+        DefinitionProfile profile = profiles.get(def);
+
+        if (profile == null) {
+            profile = new DefinitionProfile(def);
+            profiles.put(def, profile);
+        }
+
+        return profile;
+    }
+
+    /**
+     * Returns profiled definitions that impose no restriction, thus matching every element scanned.
+     */
+    public List<Where> getUnrestrictedDefinitions() {
+        List<Where> result = new ArrayList<Where>();
+
+        for (Where def : profiles.keySet()) {
+            if (isUnrestricted(def)) {
+                result.add(def);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns profiling report as a table of definitions ranked by cumulative match time.
+     */
+    public String formatReport() {
+        List<DefinitionProfile> ranked = new ArrayList<DefinitionProfile>(profiles.values());
+        Collections.sort(ranked, new Comparator<DefinitionProfile>() {
+            @Override
+            public int compare(DefinitionProfile a, DefinitionProfile b) {
+                return a.nanos < b.nanos ? 1 : (a.nanos == b.nanos ? 0 : -1);
+            }
+        });
+
+        StringBuilder sb = new StringBuilder("Match profile (ranked by cumulative time)\n");
+        sb.append(String.format("%4s %10s %10s %9s %7s  %s%n",
+                "#", "time [ms]", "tested", "matched", "pass", "definition"));
+
+        int rank = 1;
+        for (DefinitionProfile p : ranked) {
+            sb.append(String.format("%4d %10.3f %10d %9d %6.1f%%  %s%n", rank++, toMillis(p.nanos),
+                    p.candidates, p.matches, percent(p.matches, p.candidates), describe(p.definition)));
+
+            for (MatchPredicate predicate : PREDICATES) {
+                int i = predicate.ordinal();
+
+                if (p.predicateTests[i] > 0) {
+                    sb.append(String.format("%4s %10.3f %10d %9d %6.1f%%    - %s%n", "",
+                            toMillis(p.predicateNanos[i]), p.predicateTests[i], p.predicatePasses[i],
+                            percent(p.predicatePasses[i], p.predicateTests[i]), predicate.id()));
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    static boolean isUnrestricted(Where def) {
+        for (MatchPredicate predicate : PREDICATES) {
+            if (ElementMatcher.isRestricted(def, predicate)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns compact description of the given definition, listing its restrictions only.
+     */
+    public static String describe(Where def) {
+        StringBuilder sb = new StringBuilder();
+
+        if (ElementMatcher.isRestricted(def, MatchPredicate.KIND)) {
+            sb.append(" kind=").append(Arrays.toString(def.kind()));
+        }
+
+        if (ElementMatcher.isRestricted(def, MatchPredicate.PACKAGES)) {
+            sb.append(" packages=").append(Arrays.toString(def.packages()));
+        }
+
+        if (ElementMatcher.isRestricted(def, MatchPredicate.MODIFIERS)) {
+            sb.append(" modifiers=").append(Arrays.toString(def.modifiers()));
+        }
+
+        if (ElementMatcher.isRestricted(def, MatchPredicate.SIMPLE_NAME)) {
+            sb.append(" simpleNameMatches=").append(def.simpleNameMatches());
+        }
+
+        if (ElementMatcher.isRestricted(def, MatchPredicate.ANNOTATIONS)) {
+            sb.append(" annotations=").append(Arrays.toString(def.annotations()));
+        }
+
+        if (ElementMatcher.isRestricted(def, MatchPredicate.SUBTYPE_OF)) {
+            sb.append(" subtypeOf=").append(Arrays.toString(def.subtypeOf()));
+        }
+
+        if (ElementMatcher.isRestricted(def, MatchPredicate.ASSIGNABLE_TO)) {
+            sb.append(" assignableTo=").append(Arrays.toString(def.assignableTo()));
+        }
+
+        if (ElementMatcher.isRestricted(def, MatchPredicate.META_DATA)) {
+            sb.append(" metaData=").append(def.metaData());
+        }
+
+        if (ElementMatcher.isRestricted(def, MatchPredicate.FILTER)) {
+            sb.append(" filter=").append(def.filter());
+        }
+
+        if (ElementMatcher.isRestricted(def, MatchPredicate.ANY_OF)) {
+            sb.append(" anyOf=").append(def.anyOf().length).append(" criteria");
+        }
+
+        if (ElementMatcher.isRestricted(def, MatchPredicate.NONE_OF)) {
+            sb.append(" noneOf=").append(def.noneOf().length).append(" criteria");
+        }
+
+        return sb.length() > 0 ? "@Where(" + sb.substring(1) + ")" : "@Where()";
+    }
+
+    static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    static double percent(long part, long total) {
+        return total > 0 ? 100.0 * part / total : 0.0;
+    }
+
+    /**
+     * Cumulative match costs of a single element match definition.
+     */
+    static class DefinitionProfile {
+
+        final Where definition;
+        long candidates;
+        long matches;
+        long nanos;
+        final long[] predicateTests = new long[MatchPredicate.values().length];
+        final long[] predicatePasses = new long[MatchPredicate.values().length];
+        final long[] predicateNanos = new long[MatchPredicate.values().length];
+
+        DefinitionProfile(Where definition) {
+            this.definition = definition;
+        }
+
+    }
+
+}
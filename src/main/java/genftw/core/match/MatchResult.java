@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Elements matching a single match definition, in the order they were found.
+ * <p>
+ * This is a read-only list view of {@link ElementFinder} storage, so callers can access the result without copying.
+ * Matched elements are stored as a bit set of their {@linkplain ElementTable element table} IDs, which are assigned in
+ * the order elements were first matched; indexed access is served from an array of IDs built on first use.
+ */
+public class MatchResult extends AbstractList<Element> implements RandomAccess {
+
+    static final MatchResult EMPTY = new MatchResult(new ElementTable());
+
+    private final ElementTable table;
+    private final BitSet elementIds;
+    private int size;
+    private int[] indexedIds;
+
+    MatchResult(ElementTable table) {
+        this.table = table;
+        this.elementIds = new BitSet();
+    }
+
+    void addElement(Element elm) {
+        int id = table.register(elm);
+
+        // Same element can be matched more than once, e.g. as a generic element of its type parameter
+        if (!elementIds.get(id)) {
+            elementIds.set(id);
+            size++;
+            indexedIds = null;
+        }
+    }
+
+    @Override
+    public Element get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        if (indexedIds == null) {
+            indexedIds = new int[size];
+
+            for (int i = 0, id = elementIds.nextSetBit(0); id >= 0; i++, id = elementIds.nextSetBit(id + 1)) {
+                indexedIds[i] = id;
+            }
+        }
+
+        return table.get(indexedIds[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        int id = table.find(o);
+        return id != ElementTable.NO_ID && elementIds.get(id);
+    }
+
+    @Override
+    public Iterator<Element> iterator() {
+        return new Iterator<Element>() {
+
+            private int nextId = elementIds.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return nextId >= 0;
+            }
+
+            @Override
+            public Element next() {
+                if (nextId < 0) {
+                    throw new NoSuchElementException();
+                }
+
+                Element result = table.get(nextId);
+                nextId = elementIds.nextSetBit(nextId + 1);
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+        };
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Condition satisfied by elements matching the given meta-data expression.
+ */
+class MetaDataCondition extends MatchCondition {
+
+    private final String metaData;
+
+    MetaDataCondition(String metaData) {
+        super(MatchPredicate.META_DATA);
+        this.metaData = metaData;
+    }
+
+    @Override
+    boolean test(Element elm, ElementMatcher matcher) {
+        return matcher.getMetaDataMatcher().matches(elm, metaData);
+    }
+
+}
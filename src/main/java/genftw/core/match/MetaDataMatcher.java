@@ -97,6 +97,30 @@ public class MetaDataMatcher {
         return true;
     }
 
+    /**
+     * Returns value of the given meta-data property of an element, or {@code null} if the element has no such property
+     * value.
+     * <p>
+     * Property names starting with {@code @} refer to {@link MetaData} target annotation properties.
+     */
+    public String getPropertyValue(Element elm, String propertyName) {
+        MetaDataMirror metaDataMirror = getMetaDataMirror(elm);
+        if (metaDataMirror == null) {
+            return null;
+        }
+
+        if (propertyName.startsWith(META_DATA_ANNOTATION_TARGET_PROPERTY_PREFIX)) {
+            Map<String, String> annotationTargetPropertyMap = metaDataMirror.annotationTargetPropertyMap();
+
+            return annotationTargetPropertyMap != null
+                    ? annotationTargetPropertyMap.get(propertyName.substring(
+                            META_DATA_ANNOTATION_TARGET_PROPERTY_PREFIX.length()))
+                    : null;
+        }
+
+        return metaDataMirror.propertyMap().get(propertyName);
+    }
+
     boolean propertyMatches(String propertyName, String propertyValue, Map<String, String> propertyMap) {
         boolean result = true;
 
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Condition satisfied by elements that don't satisfy the given condition.
+ */
+class NegatedCondition extends MatchCondition {
+
+    private final MatchCondition condition;
+
+    NegatedCondition(MatchPredicate predicate, MatchCondition condition) {
+        super(predicate);
+        this.condition = condition;
+    }
+
+    @Override
+    long getEstimatedNanos() {
+        return condition.getEstimatedNanos();
+    }
+
+    @Override
+    boolean test(Element elm, ElementMatcher matcher) {
+        return !condition.test(elm, matcher);
+    }
+
+}
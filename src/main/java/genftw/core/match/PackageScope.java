@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Set of packages defined by {@linkplain genftw.api.Where#packages() package name prefixes}.
+ * <p>
+ * A prefix matches the named package and all its subpackages. Prefixes starting with {@code !} exclude packages from
+ * the scope; when there are exclusions only, all other packages are included.
+ */
+class PackageScope {
+
+    static final String EXCLUDE_PREFIX = "!";
+
+    private final String[] includes;
+    private final String[] excludes;
+
+    PackageScope(String[] prefixes) {
+        List<String> includeList = new ArrayList<String>();
+        List<String> excludeList = new ArrayList<String>();
+
+        for (String prefix : prefixes) {
+            if (prefix.startsWith(EXCLUDE_PREFIX)) {
+                excludeList.add(prefix.substring(EXCLUDE_PREFIX.length()));
+            } else {
+                includeList.add(prefix);
+            }
+        }
+
+        this.includes = includeList.toArray(new String[includeList.size()]);
+        this.excludes = excludeList.toArray(new String[excludeList.size()]);
+    }
+
+    boolean includes(String packageName) {
+        for (String prefix : excludes) {
+            if (isWithin(packageName, prefix)) {
+                return false;
+            }
+        }
+
+        if (includes.length == 0) {
+            return true;
+        }
+
+        for (String prefix : includes) {
+            if (isWithin(packageName, prefix)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    static boolean isWithin(String packageName, String prefix) {
+        return prefix.length() == 0 || packageName.startsWith(prefix)
+                && (packageName.length() == prefix.length() || packageName.charAt(prefix.length()) == '.');
+    }
+
+}
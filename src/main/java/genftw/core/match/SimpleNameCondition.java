@@ -0,0 +1,40 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import java.util.regex.Pattern;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Condition satisfied by elements whose simple name matches the given regular expression.
+ */
+class SimpleNameCondition extends MatchCondition {
+
+    private final Pattern pattern;
+
+    SimpleNameCondition(String regex) {
+        super(MatchPredicate.SIMPLE_NAME);
+        this.pattern = Pattern.compile(regex);
+    }
+
+    @Override
+    boolean test(Element elm, ElementMatcher matcher) {
+        return pattern.matcher(elm.getSimpleName().toString()).matches();
+    }
+
+}
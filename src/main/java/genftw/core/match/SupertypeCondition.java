@@ -0,0 +1,44 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+
+/**
+ * Condition satisfied by elements whose type is a subtype of all given types.
+ */
+class SupertypeCondition extends MatchCondition {
+
+    private final Set<String> typeNames;
+    private final boolean boxPrimitives;
+
+    SupertypeCondition(MatchPredicate predicate, String[] typeNames, boolean boxPrimitives) {
+        super(predicate);
+        this.typeNames = new HashSet<String>(Arrays.asList(typeNames));
+        this.boxPrimitives = boxPrimitives;
+    }
+
+    @Override
+    boolean test(Element elm, ElementMatcher matcher) {
+        return matcher.getHierarchyIndex().isSubtype(elm, typeNames, boxPrimitives);
+    }
+
+}
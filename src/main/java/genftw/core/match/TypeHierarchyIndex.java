@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.Elements;
+
+/**
+ * Index of type hierarchy that maps types to the qualified names of all their supertypes, including themselves.
+ * <p>
+ * Supertype names of a type are computed once, from supertype names of its direct supertypes, so that each subtype
+ * check is a single hash lookup. Types are compared by erasure, and interfaces are subtypes of {@code Object}, as
+ * they are for the compiler. Index holds elements, so it must be {@linkplain #clear() cleared} before the end of each
+ * processing round.
+ */
+class TypeHierarchyIndex {
+
+    private final Elements elementUtils;
+    private final Map<TypeElement, Set<String>> supertypeNames;
+
+    TypeHierarchyIndex(Elements elementUtils) {
+        this.elementUtils = elementUtils;
+        this.supertypeNames = new IdentityHashMap<TypeElement, Set<String>>();
+    }
+
+    /**
+     * Returns {@code true} if the type of the given element is a subtype of all given types, optionally applying
+     * boxing conversion to primitive types.
+     * <p>
+     * Type of a type element is the type itself, type of an executable element is its return type, and type of other
+     * elements is their {@linkplain Element#asType() type}.
+     */
+    boolean isSubtype(Element elm, Set<String> typeNames, boolean boxPrimitives) {
+        TypeElement type = getTypeElement(elm, boxPrimitives);
+        return type != null && getSupertypeNames(type).containsAll(typeNames);
+    }
+
+    Set<String> getSupertypeNames(TypeElement type) {
+        Set<String> result = supertypeNames.get(type);
+
+        if (result == null) {
+            // Guard against cyclic inheritance of erroneous types
+            supertypeNames.put(type, Collections.<String> emptySet());
+
+            result = new HashSet<String>();
+            result.add(type.getQualifiedName().toString());
+            addSupertypeNames(result, type.getSuperclass());
+
+            for (TypeMirror t : type.getInterfaces()) {
+                addSupertypeNames(result, t);
+            }
+
+            // Interfaces have no superclass, but are still subtypes of Object
+            if (type.getKind().isInterface()) {
+                result.add(Object.class.getName());
+            }
+
+            supertypeNames.put(type, result);
+        }
+
+        return result;
+    }
+
+    void addSupertypeNames(Set<String> names, TypeMirror supertype) {
+        if (supertype.getKind() == TypeKind.DECLARED) {
+            names.addAll(getSupertypeNames((TypeElement) ((DeclaredType) supertype).asElement()));
+        }
+    }
+
+    TypeElement getTypeElement(Element elm, boolean boxPrimitives) {
+        ElementKind kind = elm.getKind();
+
+        if (kind.isClass() || kind.isInterface()) {
+            return (TypeElement) elm;
+        } else if (kind == ElementKind.PACKAGE) {
+            return null;
+        }
+
+        TypeMirror type = elm instanceof ExecutableElement ? ((ExecutableElement) elm).getReturnType() : elm.asType();
+
+        // Type variables are subtypes of their upper bounds
+        while (type.getKind() == TypeKind.TYPEVAR) {
+            type = ((TypeVariable) type).getUpperBound();
+        }
+
+        if (type.getKind() == TypeKind.DECLARED) {
+            return (TypeElement) ((DeclaredType) type).asElement();
+        } else if (boxPrimitives && type.getKind().isPrimitive()) {
+            return elementUtils.getTypeElement(getBoxedTypeName(type.getKind()));
+        }
+
+        return null;
+    }
+
+    static String getBoxedTypeName(TypeKind primitiveKind) {
+        switch (primitiveKind) {
+        case BOOLEAN:
+            return Boolean.class.getName();
+        case BYTE:
+            return Byte.class.getName();
+        case SHORT:
+            return Short.class.getName();
+        case INT:
+            return Integer.class.getName();
+        case LONG:
+            return Long.class.getName();
+        case CHAR:
+            return Character.class.getName();
+        case FLOAT:
+            return Float.class.getName();
+        case DOUBLE:
+            return Double.class.getName();
+        default:
+            throw new IllegalArgumentException("Not a primitive type " + primitiveKind);
+        }
+    }
+
+    void clear() {
+        supertypeNames.clear();
+    }
+
+}
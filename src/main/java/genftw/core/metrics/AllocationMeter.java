@@ -0,0 +1,77 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Reads the number of bytes allocated by the current thread, where supported by the JVM.
+ * <p>
+ * Relies on {@code com.sun.management.ThreadMXBean} extension, accessed reflectively to keep the processor portable.
+ */
+class AllocationMeter {
+
+    static final long UNSUPPORTED = -1;
+
+    private final ThreadMXBean threadBean;
+    private final Method allocatedBytesMethod;
+
+    AllocationMeter() {
+        this(ManagementFactory.getThreadMXBean());
+    }
+
+    AllocationMeter(ThreadMXBean bean) {
+        Method method = null;
+
+        try {
+            Class<?> extensionClass = Class.forName("com.sun.management.ThreadMXBean");
+
+            if (extensionClass.isInstance(bean)) {
+                Method supported = extensionClass.getMethod("isThreadAllocatedMemorySupported");
+                Method enabled = extensionClass.getMethod("isThreadAllocatedMemoryEnabled");
+
+                if (Boolean.TRUE.equals(supported.invoke(bean)) && Boolean.TRUE.equals(enabled.invoke(bean))) {
+                    method = extensionClass.getMethod("getThreadAllocatedBytes", long.class);
+                }
+            }
+        } catch (Exception e) {
+            // Extension not available, ignore exception
+        }
+
+        this.threadBean = bean;
+        this.allocatedBytesMethod = method;
+    }
+
+    boolean isSupported() {
+        return allocatedBytesMethod != null;
+    }
+
+    long currentThreadAllocatedBytes() {
+        if (allocatedBytesMethod == null) {
+            return UNSUPPORTED;
+        }
+
+        try {
+            return (Long) allocatedBytesMethod.invoke(threadBean, Thread.currentThread().getId());
+        } catch (Exception e) {
+            return UNSUPPORTED;
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+/**
+ * Records processing events to JDK Flight Recorder, where supported by the JVM.
+ * <p>
+ * Flight Recorder API is not available to Java 6 code, so the recording implementation in
+ * {@code genftw.core.metrics.jfr} package is excluded from the Java 6 build and compiled separately into the Java 11
+ * part of the multi-release jar. It is loaded reflectively, and only if both {@code jdk.jfr} classes and the implementation are
+ * present. Otherwise, events are discarded at no cost.
+ * <p>
+ * Implementations are thread-safe, each event must be committed on the thread that began it.
+ */
+public abstract class FlightEvents {
+
+    static final String JFR_EVENT_CLASS = "jdk.jfr.Event";
+    static final String JFR_FLIGHT_EVENTS_CLASS = "genftw.core.metrics.jfr.JfrFlightEvents";
+
+    static final PhaseEvent DISCARDED_EVENT = new PhaseEvent() {
+        @Override
+        public void setSource(Object generatorMethod, long matchedElements) {
+            // Event discarded
+        }
+
+        @Override
+        public void commit(Object context, Object subject, long count) {
+            // Event discarded
+        }
+    };
+
+    static final FlightEvents NONE = new FlightEvents() {
+        @Override
+        public PhaseEvent begin(Phase phase) {
+            return DISCARDED_EVENT;
+        }
+
+        @Override
+        public void matchesFound(String definition, int count) {
+            // Event discarded
+        }
+    };
+
+    static FlightEvents create() {
+        try {
+            Class.forName(JFR_EVENT_CLASS);
+            return (FlightEvents) Class.forName(JFR_FLIGHT_EVENTS_CLASS).newInstance();
+        } catch (Exception e) {
+            // Flight Recorder not available, ignore exception
+        } catch (LinkageError e) {
+            // Flight Recorder not available, ignore error
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Returns an event of the given phase that starts now, or a discarded event if the phase is not recorded.
+     */
+    public abstract PhaseEvent begin(Phase phase);
+
+    /**
+     * Records the number of elements matching the given definition.
+     */
+    public abstract void matchesFound(String definition, int count);
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+import freemarker.cache.CacheStorage;
+import freemarker.cache.ConcurrentCacheStorage;
+
+/**
+ * Template cache storage that counts cache hits and misses in {@link ProcessorMetrics}.
+ */
+public class MeteredCacheStorage implements ConcurrentCacheStorage {
+
+    private final CacheStorage storage;
+    private final ProcessorMetrics metrics;
+
+    public MeteredCacheStorage(CacheStorage storage, ProcessorMetrics metrics) {
+        this.storage = storage;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean isConcurrent() {
+        return storage instanceof ConcurrentCacheStorage && ((ConcurrentCacheStorage) storage).isConcurrent();
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value = storage.get(key);
+
+        if (value != null) {
+            metrics.templateCacheHit();
+        } else {
+            metrics.templateCacheMiss();
+        }
+
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        storage.put(key, value);
+    }
+
+    @Override
+    public void remove(Object key) {
+        storage.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        storage.clear();
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+/**
+ * Event of a single processing {@link Phase} execution, recorded by {@link FlightEvents}.
+ * <p>
+ * Event attributes depend on the phase:
+ * <ul>
+ * <li>{@link Phase#ELEMENT_SCAN}: scanned root element, number of elements visited
+ * <li>{@link Phase#TEMPLATE_LOAD}: generator method, template name
+ * <li>{@link Phase#RENDER}: generator method, number of matched elements, template name, output file, number of
+ * characters rendered
+ * <li>{@link Phase#WRITE}: generator method, number of matched elements, output file, number of characters written
+ * </ul>
+ * Attribute values are converted to strings only if the event is actually recorded.
+ */
+public interface PhaseEvent {
+
+    /**
+     * Sets the generator method being processed and the number of its matched elements, where recorded by the phase.
+     */
+    void setSource(Object generatorMethod, long matchedElements);
+
+    void commit(Object context, Object subject, long count);
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+/**
+ * Measures a single execution of a processing {@link Phase}.
+ * <p>
+ * Timers must be {@linkplain #stop() stopped} on the thread that started them.
+ */
+public class PhaseTimer {
+
+    private final ProcessorMetrics metrics;
+    private final Phase phase;
+    private final long startNanos;
+    private final long startAllocatedBytes;
+
+    PhaseTimer(ProcessorMetrics metrics, Phase phase, long startNanos, long startAllocatedBytes) {
+        this.metrics = metrics;
+        this.phase = phase;
+        this.startNanos = startNanos;
+        this.startAllocatedBytes = startAllocatedBytes;
+    }
+
+    public void stop() {
+        metrics.phaseCompleted(phase, startNanos, startAllocatedBytes);
+    }
+
+}
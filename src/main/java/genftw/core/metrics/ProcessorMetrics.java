@@ -0,0 +1,342 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects timing and counters of processing rounds.
+ * <p>
+ * Each {@linkplain Phase phase} execution records wall time and, where supported by the JVM, bytes allocated by the
+ * compiler thread. Counters track elements visited, match tests, matches per definition, rendered templates and
+ * written outputs. Completed rounds are kept so that the report covers the whole processor lifetime.
+ * <p>
+ * Completed rounds are optionally published to {@link ProcessorStatistics}. Phase details are also recorded as
+ * {@linkplain FlightEvents flight recorder events} where supported by the JVM.
+ * <p>
+ * Instances of this class are not thread-safe, all methods must be called on the compiler thread. Phases executed on
+ * other threads are timed there and {@linkplain #recordPhase(Phase, long) recorded} on the compiler thread later.
+ */
+public class ProcessorMetrics {
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final AllocationMeter allocationMeter;
+    private final FlightEvents flightEvents;
+    private ProcessorStatistics statistics;
+    private final List<String> completedRounds;
+
+    private int round;
+    private long roundStartNanos;
+    private final long[] phaseCount;
+    private final long[] phaseNanos;
+    private final long[] phaseAllocatedBytes;
+    private long elementsVisited;
+    private long matchTests;
+    private int generatorMethods;
+    private final Map<String, Integer> matchesPerDefinition;
+    private long templatesRendered;
+    private long outputsWritten;
+    private long outputChars;
+    private long templateCacheHits;
+    private long scannedElementsRetained;
+    private long foundElementsRetained;
+    private long templateCacheMisses;
+
+    public ProcessorMetrics() {
+        this(new AllocationMeter(), FlightEvents.create());
+    }
+
+    ProcessorMetrics(AllocationMeter allocationMeter, FlightEvents flightEvents) {
+        this.allocationMeter = allocationMeter;
+        this.flightEvents = flightEvents;
+        this.completedRounds = new ArrayList<String>();
+        this.phaseCount = new long[PHASES.length];
+        this.phaseNanos = new long[PHASES.length];
+        this.phaseAllocatedBytes = new long[PHASES.length];
+        this.matchesPerDefinition = new LinkedHashMap<String, Integer>();
+    }
+
+    public void beginRound() {
+        round++;
+        roundStartNanos = System.nanoTime();
+
+        for (int i = 0; i < PHASES.length; i++) {
+            phaseCount[i] = 0;
+            phaseNanos[i] = 0;
+            phaseAllocatedBytes[i] = 0;
+        }
+
+        elementsVisited = 0;
+        matchTests = 0;
+        generatorMethods = 0;
+        matchesPerDefinition.clear();
+        templatesRendered = 0;
+        outputsWritten = 0;
+        outputChars = 0;
+        templateCacheHits = 0;
+        scannedElementsRetained = 0;
+        foundElementsRetained = 0;
+        templateCacheMisses = 0;
+    }
+
+    /**
+     * Publishes completed rounds to the given statistics, starting a new statistics run.
+     */
+    public void publishTo(ProcessorStatistics statistics) {
+        this.statistics = statistics;
+        statistics.runStarted();
+    }
+
+    /**
+     * Completes current round, returning its one-line summary.
+     */
+    public String endRound() {
+        long elapsedNanos = System.nanoTime() - roundStartNanos;
+        completedRounds.add(roundToJson(elapsedNanos));
+
+        if (statistics != null) {
+            long matches = 0;
+            for (Integer count : matchesPerDefinition.values()) {
+                matches += count;
+            }
+
+            statistics.roundCompleted(elementsVisited, matchTests, matches, templatesRendered, outputsWritten,
+                    outputChars, templateCacheHits, templateCacheMisses, phaseNanos, phaseAllocatedBytes);
+        }
+        return roundSummary(elapsedNanos);
+    }
+
+    public PhaseTimer start(Phase phase) {
+        return new PhaseTimer(this, phase, System.nanoTime(), allocationMeter.currentThreadAllocatedBytes());
+    }
+
+    /**
+     * Begins flight recorder event of the given phase, to be committed with phase details on completion.
+     */
+    public PhaseEvent beginEvent(Phase phase) {
+        return flightEvents.begin(phase);
+    }
+
+    /**
+     * Returns flight events of this processor, which may also be recorded on other threads.
+     */
+    public FlightEvents getFlightEvents() {
+        return flightEvents;
+    }
+
+    void phaseCompleted(Phase phase, long startNanos, long startAllocatedBytes) {
+        long nanos = System.nanoTime() - startNanos;
+        long allocatedBytes = 0;
+
+        if (startAllocatedBytes != AllocationMeter.UNSUPPORTED) {
+            long endAllocatedBytes = allocationMeter.currentThreadAllocatedBytes();
+
+            // Measurement may be disabled while the phase runs
+            if (endAllocatedBytes != AllocationMeter.UNSUPPORTED) {
+                allocatedBytes = Math.max(0, endAllocatedBytes - startAllocatedBytes);
+            }
+        }
+
+        recordPhase(phase, nanos, allocatedBytes);
+    }
+
+    /**
+     * Records single execution of the given phase, taking given time on another thread. Allocations of other threads
+     * are not measured.
+     */
+    public void recordPhase(Phase phase, long nanos) {
+        recordPhase(phase, nanos, 0);
+    }
+
+    /**
+     * Records single execution of the given phase, taking given time and allocating given number of bytes.
+     */
+    void recordPhase(Phase phase, long nanos, long allocatedBytes) {
+        int i = phase.ordinal();
+        phaseCount[i]++;
+        phaseNanos[i] += nanos;
+        phaseAllocatedBytes[i] += allocatedBytes;
+    }
+
+    public void elementVisited() {
+        elementsVisited++;
+    }
+
+    public void matchTested() {
+        matchTests++;
+    }
+
+    public void generatorMethodsFound(int count) {
+        generatorMethods = count;
+    }
+
+    public void matchesFound(String definition, int count) {
+        matchesPerDefinition.put(definition, count);
+        flightEvents.matchesFound(definition, count);
+    }
+
+    public void templateRendered() {
+        templatesRendered++;
+    }
+
+    /**
+     * Records an output of the given number of characters. Written bytes are not counted, since outputs may be encoded
+     * by the compiler.
+     */
+    public void outputWritten(long charsWritten) {
+        outputsWritten++;
+        outputChars += charsWritten;
+    }
+
+    /**
+     * Records the number of elements retained by element scanning state after scanning source elements.
+     */
+    public void elementsRetained(long scannedElements, long foundElements) {
+        scannedElementsRetained = Math.max(scannedElementsRetained, scannedElements);
+        foundElementsRetained = Math.max(foundElementsRetained, foundElements);
+    }
+
+    public void templateCacheHit() {
+        templateCacheHits++;
+    }
+
+    public void templateCacheMiss() {
+        templateCacheMisses++;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public long getElementsVisited() {
+        return elementsVisited;
+    }
+
+    public long getMatchTests() {
+        return matchTests;
+    }
+
+    public long getTemplatesRendered() {
+        return templatesRendered;
+    }
+
+    public long getOutputChars() {
+        return outputChars;
+    }
+
+    /**
+     * Returns the report of all completed rounds in JSON format.
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{\n  \"allocationMeasured\": ");
+        sb.append(allocationMeter.isSupported()).append(",\n  \"rounds\": [");
+
+        for (int i = 0; i < completedRounds.size(); i++) {
+            sb.append(i == 0 ? "\n" : ",\n").append(completedRounds.get(i));
+        }
+
+        return sb.append("\n  ]\n}\n").toString();
+    }
+
+    String roundToJson(long elapsedNanos) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("    {\n");
+        sb.append("      \"round\": ").append(round).append(",\n");
+        sb.append("      \"elapsedMillis\": ").append(toMillis(elapsedNanos)).append(",\n");
+        sb.append("      \"phases\": {");
+
+        for (int i = 0; i < PHASES.length; i++) {
+            sb.append(i == 0 ? "\n" : ",\n");
+            sb.append("        \"").append(PHASES[i].id()).append("\": { ");
+            sb.append("\"count\": ").append(phaseCount[i]).append(", ");
+            sb.append("\"millis\": ").append(toMillis(phaseNanos[i])).append(", ");
+            sb.append("\"allocatedBytes\": ");
+            sb.append(allocationMeter.isSupported() ? String.valueOf(phaseAllocatedBytes[i]) : "null");
+            sb.append(" }");
+        }
+
+        sb.append("\n      },\n");
+        sb.append("      \"generatorMethods\": ").append(generatorMethods).append(",\n");
+        sb.append("      \"elementsVisited\": ").append(elementsVisited).append(",\n");
+        sb.append("      \"matchTests\": ").append(matchTests).append(",\n");
+        sb.append("      \"scannedElementsRetained\": ").append(scannedElementsRetained).append(",\n");
+        sb.append("      \"foundElementsRetained\": ").append(foundElementsRetained).append(",\n");
+        sb.append("      \"matches\": [");
+
+        boolean first = true;
+        for (Map.Entry<String, Integer> entry : matchesPerDefinition.entrySet()) {
+            sb.append(first ? "\n" : ",\n");
+            sb.append("        { \"definition\": ");
+            appendJsonString(sb, entry.getKey());
+            sb.append(", \"count\": ").append(entry.getValue()).append(" }");
+            first = false;
+        }
+
+        sb.append(first ? "],\n" : "\n      ],\n");
+        sb.append("      \"templatesRendered\": ").append(templatesRendered).append(",\n");
+        sb.append("      \"outputsWritten\": ").append(outputsWritten).append(",\n");
+        sb.append("      \"outputChars\": ").append(outputChars).append(",\n");
+        sb.append("      \"templateCacheHits\": ").append(templateCacheHits).append(",\n");
+        sb.append("      \"templateCacheMisses\": ").append(templateCacheMisses).append("\n");
+        sb.append("    }");
+        return sb.toString();
+    }
+
+    String roundSummary(long elapsedNanos) {
+        StringBuilder sb = new StringBuilder("GenFTW round ").append(round).append(": ");
+        sb.append(generatorMethods).append(" generator methods, ");
+        sb.append(elementsVisited).append(" elements visited, ");
+        sb.append(matchTests).append(" match tests, ");
+        sb.append(templatesRendered).append(" templates rendered, ");
+        sb.append(outputChars).append(" chars written in ");
+        sb.append(toMillis(elapsedNanos)).append(" ms [");
+
+        for (int i = 0; i < PHASES.length; i++) {
+            sb.append(i == 0 ? "" : ", ").append(PHASES[i].id()).append(' ').append(toMillis(phaseNanos[i]));
+            sb.append(" ms");
+        }
+
+        return sb.append(']').toString();
+    }
+
+    static long toMillis(long nanos) {
+        return nanos / 1000000L;
+    }
+
+    static void appendJsonString(StringBuilder sb, String value) {
+        sb.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+
+        sb.append('"');
+    }
+
+}
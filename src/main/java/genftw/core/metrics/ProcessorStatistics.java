@@ -0,0 +1,387 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.Descriptor;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.MBeanRegistration;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import javax.management.modelmbean.DescriptorSupport;
+import javax.management.modelmbean.ModelMBeanAttributeInfo;
+import javax.management.modelmbean.ModelMBeanInfoSupport;
+import javax.management.modelmbean.RequiredModelMBean;
+
+/**
+ * Platform MBean that exposes processor statistics accumulated over all processor runs in the JVM, as well as
+ * statistics of the last run.
+ * <p>
+ * A run spans the lifetime of a single processor instance, i.e. a single compilation. The MBean name is owned by the
+ * statistics of the class loader that registered them last, for as long as any run of that class loader is in progress.
+ * Once all of its runs are over, statistics are replaced by a snapshot made of JDK classes only, so that the MBean
+ * server does not pin the processor class loader. Long-lived build daemons may load the processor by a different class
+ * loader for each compilation; statistics registered later replace the previous statistics or snapshot, and carry over
+ * their cumulative statistics.
+ * <p>
+ * Each statistic is exposed as {@code Total<Name>} and {@code LastRun<Name>} read-only attribute. Statistics can be
+ * cleared using {@code reset} operation.
+ */
+public class ProcessorStatistics implements DynamicMBean, MBeanRegistration {
+
+    public static final String OBJECT_NAME = "genftw:type=GeneratorProcessor";
+
+    static final String TOTAL_PREFIX = "Total";
+    static final String LAST_RUN_PREFIX = "LastRun";
+    static final String RESET_OPERATION = "reset";
+
+    static final int RUNS = 0;
+    static final int ROUNDS = 1;
+    static final int ELEMENTS_VISITED = 2;
+    static final int MATCH_TESTS = 3;
+    static final int MATCHES = 4;
+    static final int TEMPLATES_RENDERED = 5;
+    static final int OUTPUTS_WRITTEN = 6;
+    static final int CHARS_WRITTEN = 7;
+    static final int TEMPLATE_CACHE_HITS = 8;
+    static final int TEMPLATE_CACHE_MISSES = 9;
+    static final int PHASE_MILLIS = 10;
+    static final int PHASE_ALLOCATED_BYTES = PHASE_MILLIS + Phase.values().length;
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    static final String[] NAMES = createNames();
+
+    private static ProcessorStatistics registered;
+    private static int registeredRuns;
+
+    private final AtomicLongArray totals;
+    private final AtomicLongArray lastRun;
+    private volatile boolean deregistered;
+
+    ProcessorStatistics() {
+        this.totals = new AtomicLongArray(NAMES.length);
+        this.lastRun = new AtomicLongArray(NAMES.length);
+    }
+
+    static String[] createNames() {
+        List<String> names = new ArrayList<String>();
+        names.add("Runs");
+        names.add("Rounds");
+        names.add("ElementsVisited");
+        names.add("MatchTests");
+        names.add("Matches");
+        names.add("TemplatesRendered");
+        names.add("OutputsWritten");
+        names.add("CharsWritten");
+        names.add("TemplateCacheHits");
+        names.add("TemplateCacheMisses");
+
+        for (Phase phase : Phase.values()) {
+            names.add(getPhaseName(phase) + "Millis");
+        }
+
+        for (Phase phase : Phase.values()) {
+            names.add(getPhaseName(phase) + "AllocatedBytes");
+        }
+
+        return names.toArray(new String[names.size()]);
+    }
+
+    static String getPhaseName(Phase phase) {
+        String id = phase.id();
+        return Character.toUpperCase(id.charAt(0)) + id.substring(1);
+    }
+
+    /**
+     * Returns statistics registered with the platform MBean server, registering them if necessary. Each call must be
+     * paired with {@link #unregisterPlatformMBean(ProcessorStatistics)} once the run is over.
+     */
+    public static synchronized ProcessorStatistics registerPlatformMBean() throws JMException {
+        if (registered == null) {
+            ProcessorStatistics statistics = new ProcessorStatistics();
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+
+            try {
+                server.registerMBean(statistics, name);
+            } catch (InstanceAlreadyExistsException e) {
+                // Registered by another class loader, take over its statistics
+                statistics.carryOver(server.getAttributes(name, statistics.getAttributeNames(TOTAL_PREFIX)));
+                server.unregisterMBean(name);
+                server.registerMBean(statistics, name);
+            }
+
+            registered = statistics;
+        }
+
+        registeredRuns++;
+        return registered;
+    }
+
+    /**
+     * Releases statistics of a run that is over. Once all runs of this class loader are over, the registered MBean is
+     * replaced by a snapshot of its statistics, unless the name has been taken over by another class loader meanwhile.
+     */
+    public static synchronized void unregisterPlatformMBean(ProcessorStatistics statistics) throws JMException {
+        if (statistics != registered || --registeredRuns > 0) {
+            return;
+        }
+
+        registered = null;
+
+        if (!statistics.deregistered) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+
+            server.unregisterMBean(name);
+            try {
+                server.registerMBean(statistics.createSnapshot(), name);
+            } catch (InstanceAlreadyExistsException e) {
+                // Registered by another class loader meanwhile, ignore exception
+            }
+        }
+    }
+
+    /**
+     * Returns MBean that exposes current values of all statistics, made of JDK classes only.
+     */
+    DynamicMBean createSnapshot() throws JMException {
+        ModelMBeanAttributeInfo[] attributes = new ModelMBeanAttributeInfo[NAMES.length * 2];
+
+        for (int i = 0; i < NAMES.length; i++) {
+            attributes[i] = createSnapshotAttribute(TOTAL_PREFIX + NAMES[i], getTotal(i),
+                    NAMES[i] + " of all runs");
+            attributes[NAMES.length + i] = createSnapshotAttribute(LAST_RUN_PREFIX + NAMES[i], getLastRun(i),
+                    NAMES[i] + " of the last run");
+        }
+
+        return new RequiredModelMBean(new ModelMBeanInfoSupport(RequiredModelMBean.class.getName(),
+                "GenFTW processor statistics of completed runs", attributes, null, null, null));
+    }
+
+    static ModelMBeanAttributeInfo createSnapshotAttribute(String name, long value, String description) {
+        // Attributes without getter return their default value
+        Descriptor descriptor = new DescriptorSupport(
+                new String[] { "name", "descriptorType", "displayName", "default" },
+                new Object[] { name, "attribute", name, value });
+
+        return new ModelMBeanAttributeInfo(name, Long.class.getName(), description, true, false, false, descriptor);
+    }
+
+    void carryOver(AttributeList previousTotals) {
+        for (Iterator<Object> it = previousTotals.iterator(); it.hasNext();) {
+            Attribute attribute = (Attribute) it.next();
+            int index = indexOf(attribute.getName().substring(TOTAL_PREFIX.length()));
+
+            if (index >= 0 && attribute.getValue() instanceof Long) {
+                long value = (Long) attribute.getValue();
+                totals.addAndGet(index, isPhaseTime(index) ? value * NANOS_PER_MILLI : value);
+            }
+        }
+    }
+
+    /**
+     * Starts a new run, clearing statistics of the last run.
+     */
+    public void runStarted() {
+        for (int i = 0; i < NAMES.length; i++) {
+            lastRun.set(i, 0);
+        }
+
+        add(RUNS, 1);
+    }
+
+    void add(int index, long value) {
+        totals.addAndGet(index, value);
+        lastRun.addAndGet(index, value);
+    }
+
+    public void reset() {
+        for (int i = 0; i < NAMES.length; i++) {
+            totals.set(i, 0);
+            lastRun.set(i, 0);
+        }
+    }
+
+    /**
+     * Records statistics of a completed processing round.
+     */
+    void roundCompleted(long elementsVisited, long matchTests, long matches, long templatesRendered,
+            long outputsWritten, long charsWritten, long templateCacheHits, long templateCacheMisses,
+            long[] phaseNanos, long[] phaseAllocatedBytes) {
+        add(ROUNDS, 1);
+        add(ELEMENTS_VISITED, elementsVisited);
+        add(MATCH_TESTS, matchTests);
+        add(MATCHES, matches);
+        add(TEMPLATES_RENDERED, templatesRendered);
+        add(OUTPUTS_WRITTEN, outputsWritten);
+        add(CHARS_WRITTEN, charsWritten);
+        add(TEMPLATE_CACHE_HITS, templateCacheHits);
+        add(TEMPLATE_CACHE_MISSES, templateCacheMisses);
+
+        for (int i = 0; i < phaseNanos.length; i++) {
+            add(PHASE_MILLIS + i, phaseNanos[i]);
+            add(PHASE_ALLOCATED_BYTES + i, phaseAllocatedBytes[i]);
+        }
+    }
+
+    long getTotal(int index) {
+        return valueOf(index, totals);
+    }
+
+    long getLastRun(int index) {
+        return valueOf(index, lastRun);
+    }
+
+    static long valueOf(int index, AtomicLongArray values) {
+        // Phase times are accumulated in nanoseconds to avoid rounding errors
+        return isPhaseTime(index) ? values.get(index) / NANOS_PER_MILLI : values.get(index);
+    }
+
+    static boolean isPhaseTime(int index) {
+        return index >= PHASE_MILLIS && index < PHASE_ALLOCATED_BYTES;
+    }
+
+    static int indexOf(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    String[] getAttributeNames(String prefix) {
+        String[] result = new String[NAMES.length];
+
+        for (int i = 0; i < NAMES.length; i++) {
+            result[i] = prefix + NAMES[i];
+        }
+
+        return result;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        if (attribute.startsWith(TOTAL_PREFIX)) {
+            int index = indexOf(attribute.substring(TOTAL_PREFIX.length()));
+
+            if (index >= 0) {
+                return getTotal(index);
+            }
+        } else if (attribute.startsWith(LAST_RUN_PREFIX)) {
+            int index = indexOf(attribute.substring(LAST_RUN_PREFIX.length()));
+
+            if (index >= 0) {
+                return getLastRun(index);
+            }
+        }
+
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList result = new AttributeList();
+
+        for (String attribute : attributes) {
+            try {
+                result.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // Omit unknown attribute, ignore exception
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Attribute " + attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if (RESET_OPERATION.equals(actionName) && (params == null || params.length == 0)) {
+            reset();
+            return null;
+        }
+
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public ObjectName preRegister(MBeanServer server, ObjectName name) {
+        return name;
+    }
+
+    @Override
+    public void postRegister(Boolean registrationDone) {
+        // Nothing to do
+    }
+
+    @Override
+    public void preDeregister() {
+        // Nothing to do
+    }
+
+    @Override
+    public void postDeregister() {
+        deregistered = true;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[NAMES.length * 2];
+
+        for (int i = 0; i < NAMES.length; i++) {
+            attributes[i] = new MBeanAttributeInfo(TOTAL_PREFIX + NAMES[i], "long",
+                    NAMES[i] + " of all runs", true, false, false);
+            attributes[NAMES.length + i] = new MBeanAttributeInfo(LAST_RUN_PREFIX + NAMES[i], "long",
+                    NAMES[i] + " of the last run", true, false, false);
+        }
+
+        MBeanOperationInfo[] operations = { new MBeanOperationInfo(RESET_OPERATION, "Clears all statistics",
+                new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION) };
+
+        return new MBeanInfo(getClass().getName(), "GenFTW processor statistics",
+                attributes, null, operations, null);
+    }
+
+}
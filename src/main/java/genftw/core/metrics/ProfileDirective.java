@@ -0,0 +1,87 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+import java.io.IOException;
+import java.util.Map;
+
+import freemarker.core.Environment;
+import freemarker.template.TemplateDirectiveBody;
+import freemarker.template.TemplateDirectiveModel;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateScalarModel;
+
+/**
+ * Template directive that marks a profiled template section.
+ * <p>
+ * Usage: <tt>&lt;@genftw_profile name="section name"&gt;...&lt;/@genftw_profile&gt;</tt>. Sections can be nested.
+ * When render profiling is disabled, the directive simply renders its body, so that templates need not change.
+ */
+public class ProfileDirective implements TemplateDirectiveModel {
+
+    /**
+     * Name of the directive in template data-model, prefixed so that it doesn't shadow user variables.
+     */
+    public static final String VARIABLE_NAME = "genftw_profile";
+
+    static final String PARAM_NAME = "name";
+    static final String DEFAULT_SECTION_NAME = "section";
+
+    private final RenderProfiler profiler;
+
+    /**
+     * Creates directive that records sections using given profiler, or {@code null} to disable profiling.
+     */
+    public ProfileDirective(RenderProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void execute(Environment env, Map params, TemplateModel[] loopVars, TemplateDirectiveBody body)
+            throws TemplateException, IOException {
+        if (body == null) {
+            return;
+        }
+
+        if (profiler == null) {
+            body.render(env.getOut());
+            return;
+        }
+
+        profiler.sectionStarted(getSectionName(params));
+        try {
+            body.render(env.getOut());
+        } finally {
+            profiler.sectionFinished();
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    String getSectionName(Map params) throws TemplateModelException {
+        Object name = params.get(PARAM_NAME);
+
+        if (name instanceof TemplateScalarModel) {
+            return ((TemplateScalarModel) name).getAsString();
+        }
+
+        return DEFAULT_SECTION_NAME;
+    }
+
+}
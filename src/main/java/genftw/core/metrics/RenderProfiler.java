@@ -0,0 +1,187 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records template rendering costs per template and per profiled template section.
+ * <p>
+ * Each template invocation is measured for time and output size. Within templates, sections marked with
+ * {@link ProfileDirective} are measured as nested frames, so that cumulative self time of each template/section path
+ * can be exported in collapsed stack format, as consumed by common flame graph tools.
+ * <p>
+ * Instances of this class are not thread-safe, all methods must be called on the compiler thread.
+ */
+public class RenderProfiler {
+
+    static final String FRAME_SEPARATOR = ";";
+
+    private final Map<String, TemplateProfile> templateProfiles;
+    private final Map<String, Long> collapsedStacks;
+    private final LinkedList<ProfileFrame> stack;
+
+    public RenderProfiler() {
+        this.templateProfiles = new LinkedHashMap<String, TemplateProfile>();
+        this.collapsedStacks = new LinkedHashMap<String, Long>();
+        this.stack = new LinkedList<ProfileFrame>();
+    }
+
+    public void templateStarted(String templateName) {
+        stack.clear();
+        stack.push(new ProfileFrame(frameName(templateName), nanoTime()));
+    }
+
+    public void templateFinished(String templateName, long outputChars) {
+        long totalNanos = popFrame();
+        stack.clear();
+
+        TemplateProfile profile = templateProfiles.get(templateName);
+        if (profile == null) {
+            profile = new TemplateProfile(templateName);
+            templateProfiles.put(templateName, profile);
+        }
+
+        profile.invocations++;
+        profile.nanos += totalNanos;
+        profile.outputChars += outputChars;
+    }
+
+    void sectionStarted(String sectionName) {
+        ProfileFrame parent = stack.peek();
+        String path = parent != null
+                ? parent.path + FRAME_SEPARATOR + frameName(sectionName)
+                : frameName(sectionName);
+
+        stack.push(new ProfileFrame(path, nanoTime()));
+    }
+
+    void sectionFinished() {
+        popFrame();
+    }
+
+    long popFrame() {
+        ProfileFrame frame = stack.poll();
+
+        if (frame == null) {
+            return 0;
+        }
+
+        long totalNanos = nanoTime() - frame.startNanos;
+        long selfNanos = totalNanos - frame.childNanos;
+        Long recorded = collapsedStacks.get(frame.path);
+        collapsedStacks.put(frame.path, (recorded != null ? recorded : 0) + selfNanos);
+
+        ProfileFrame parent = stack.peek();
+        if (parent != null) {
+            parent.childNanos += totalNanos;
+        }
+
+        return totalNanos;
+    }
+
+    /**
+     * Writes self time of each template/section path in collapsed stack format, using microseconds as sample
+     * values.
+     */
+    public void writeCollapsedStacks(Writer writer) throws IOException {
+        for (Map.Entry<String, Long> entry : collapsedStacks.entrySet()) {
+            long micros = entry.getValue() / 1000L;
+
+            if (micros > 0) {
+                writer.write(entry.getKey() + " " + micros + "\n");
+            }
+        }
+    }
+
+    /**
+     * Returns profiling report as a table of templates ranked by cumulative render time.
+     */
+    public String formatReport() {
+        List<TemplateProfile> ranked = new ArrayList<TemplateProfile>(templateProfiles.values());
+        Collections.sort(ranked, new Comparator<TemplateProfile>() {
+            @Override
+            public int compare(TemplateProfile a, TemplateProfile b) {
+                return a.nanos < b.nanos ? 1 : (a.nanos == b.nanos ? 0 : -1);
+            }
+        });
+
+        StringBuilder sb = new StringBuilder("Render profile (ranked by cumulative time)\n");
+        sb.append(String.format("%4s %10s %8s %12s  %s%n", "#", "time [ms]", "renders", "output", "template"));
+
+        int rank = 1;
+        for (TemplateProfile p : ranked) {
+            sb.append(String.format("%4d %10.3f %8d %12d  %s%n",
+                    rank++, p.nanos / 1000000.0, p.invocations, p.outputChars, p.templateName));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns current value of the time source used to measure frames.
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    static String frameName(String name) {
+        // Frame separator and whitespace are significant in collapsed stack format
+        return name.replace(FRAME_SEPARATOR, "_").replace(' ', '_');
+    }
+
+    /**
+     * Template or section invocation in progress.
+     */
+    private static class ProfileFrame {
+
+        final String path;
+        final long startNanos;
+        long childNanos;
+
+        ProfileFrame(String path, long startNanos) {
+            this.path = path;
+            this.startNanos = startNanos;
+        }
+
+    }
+
+    /**
+     * Cumulative rendering costs of a single template.
+     */
+    private static class TemplateProfile {
+
+        final String templateName;
+        long invocations;
+        long nanos;
+        long outputChars;
+
+        TemplateProfile(String templateName) {
+            this.templateName = templateName;
+        }
+
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics.jfr;
+
+import genftw.core.metrics.FlightEvents;
+import genftw.core.metrics.Phase;
+import genftw.core.metrics.PhaseEvent;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Records processing events to JDK Flight Recorder.
+ * <p>
+ * This class depends on {@code jdk.jfr} API and must only be loaded by {@link FlightEvents}. Events are committed only
+ * while a recording is enabling them, so unrecorded events cost a single allocation.
+ */
+public class JfrFlightEvents extends FlightEvents {
+
+    static final PhaseEvent UNRECORDED_EVENT = new PhaseEvent() {
+        @Override
+        public void setSource(Object generatorMethod, long matchedElements) {
+            // Phase not recorded
+        }
+
+        @Override
+        public void commit(Object context, Object subject, long count) {
+            // Phase not recorded
+        }
+    };
+
+    @Override
+    public PhaseEvent begin(Phase phase) {
+        switch (phase) {
+        case ELEMENT_SCAN:
+            return new ScanRootElementEvent();
+        case TEMPLATE_LOAD:
+            return new LoadTemplateEvent();
+        case RENDER:
+            return new RenderOutputEvent();
+        case WRITE:
+            return new WriteResourceEvent();
+        default:
+            return UNRECORDED_EVENT;
+        }
+    }
+
+    @Override
+    public void matchesFound(String definition, int count) {
+        MatchDefinitionEvent event = new MatchDefinitionEvent();
+
+        if (event.shouldCommit()) {
+            event.definition = definition;
+            event.matches = count;
+            event.commit();
+        }
+    }
+
+    static String valueOf(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * Base of phase events that are not related to a generator method.
+     */
+    abstract static class UnsourcedPhaseEvent extends Event implements PhaseEvent {
+
+        @Override
+        public void setSource(Object generatorMethod, long matchedElements) {
+            // Event not related to generator method
+        }
+
+    }
+
+    @Name("genftw.ScanRootElement")
+    @Label("Scan Root Element")
+    @Category("GenFTW")
+    static class ScanRootElementEvent extends UnsourcedPhaseEvent {
+
+        @Label("Root Element")
+        String rootElement;
+
+        @Label("Elements Visited")
+        long elementsVisited;
+
+        ScanRootElementEvent() {
+            begin();
+        }
+
+        @Override
+        public void commit(Object context, Object subject, long count) {
+            end();
+
+            if (shouldCommit()) {
+                rootElement = valueOf(subject);
+                elementsVisited = count;
+                commit();
+            }
+        }
+
+    }
+
+    @Name("genftw.MatchDefinition")
+    @Label("Match Definition")
+    @Category("GenFTW")
+    static class MatchDefinitionEvent extends Event {
+
+        @Label("Definition")
+        String definition;
+
+        @Label("Matches")
+        int matches;
+
+    }
+
+    @Name("genftw.LoadTemplate")
+    @Label("Load Template")
+    @Category("GenFTW")
+    static class LoadTemplateEvent extends UnsourcedPhaseEvent {
+
+        @Label("Generator Method")
+        String generatorMethod;
+
+        @Label("Template")
+        String template;
+
+        LoadTemplateEvent() {
+            begin();
+        }
+
+        @Override
+        public void commit(Object context, Object subject, long count) {
+            end();
+
+            if (shouldCommit()) {
+                generatorMethod = valueOf(context);
+                template = valueOf(subject);
+                commit();
+            }
+        }
+
+    }
+
+    @Name("genftw.RenderOutput")
+    @Label("Render Output")
+    @Category("GenFTW")
+    static class RenderOutputEvent extends Event implements PhaseEvent {
+
+        @Label("Generator Method")
+        String generatorMethod;
+
+        @Label("Matched Elements")
+        long matchedElements;
+
+        @Label("Template")
+        String template;
+
+        @Label("Output File")
+        String outputFile;
+
+        @Label("Characters Rendered")
+        long charactersRendered;
+
+        // Converted to string only if the event is committed
+        transient Object generatorMethodSource;
+
+        RenderOutputEvent() {
+            begin();
+        }
+
+        @Override
+        public void setSource(Object generatorMethod, long matchedElements) {
+            this.generatorMethodSource = generatorMethod;
+            this.matchedElements = matchedElements;
+        }
+
+        @Override
+        public void commit(Object context, Object subject, long count) {
+            end();
+
+            if (shouldCommit()) {
+                generatorMethod = valueOf(generatorMethodSource);
+                template = valueOf(context);
+                outputFile = valueOf(subject);
+                charactersRendered = count;
+                commit();
+            }
+        }
+
+    }
+
+    @Name("genftw.WriteResource")
+    @Label("Write Resource")
+    @Category("GenFTW")
+    static class WriteResourceEvent extends Event implements PhaseEvent {
+
+        @Label("Generator Method")
+        String generatorMethod;
+
+        @Label("Matched Elements")
+        long matchedElements;
+
+        @Label("Output File")
+        String outputFile;
+
+        @Label("Characters Written")
+        long charactersWritten;
+
+        // Converted to string only if the event is committed
+        transient Object generatorMethodSource;
+
+        WriteResourceEvent() {
+            begin();
+        }
+
+        @Override
+        public void setSource(Object generatorMethod, long matchedElements) {
+            this.generatorMethodSource = generatorMethod;
+            this.matchedElements = matchedElements;
+        }
+
+        @Override
+        public void commit(Object context, Object subject, long count) {
+            end();
+
+            if (shouldCommit()) {
+                generatorMethod = valueOf(generatorMethodSource);
+                outputFile = valueOf(subject);
+                charactersWritten = count;
+                commit();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.output;
+
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Reusable, unsynchronized in-memory character buffer that receives rendered template output.
+ * <p>
+ * Unlike {@link java.io.CharArrayWriter}, buffer contents are never copied when read, and the underlying array is kept
+ * after {@linkplain #reset() reset} so that it can be reused for subsequent outputs.
+ */
+public class OutputBuffer extends Writer {
+
+    private char[] chars;
+    private int length;
+
+    OutputBuffer(int initialCapacity) {
+        this.chars = new char[initialCapacity];
+    }
+
+    void reset() {
+        length = 0;
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+        }
+    }
+
+    char[] chars() {
+        return chars;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    int capacity() {
+        return chars.length;
+    }
+
+    @Override
+    public void write(int c) {
+        ensureCapacity(length + 1);
+        chars[length++] = (char) c;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        ensureCapacity(length + len);
+        System.arraycopy(cbuf, off, chars, length, len);
+        length += len;
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        ensureCapacity(length + len);
+        str.getChars(off, off + len, chars, length);
+        length += len;
+    }
+
+    @Override
+    public Writer append(CharSequence csq) {
+        String str = String.valueOf(csq);
+        write(str, 0, str.length());
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        // Nothing to flush, contents are written by OutputPipeline
+    }
+
+    @Override
+    public void close() {
+        // Nothing to close, buffer is returned to OutputPipeline
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+}
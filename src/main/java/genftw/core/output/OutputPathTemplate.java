@@ -0,0 +1,135 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.output;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Output file pathname with {@code {variable}} placeholders, parsed once into literal and variable segments.
+ * <p>
+ * Expanding the template only concatenates segments, instead of scanning the whole pathname for each supported
+ * variable. Placeholders of variables unknown to the {@link Variables resolver} are kept as they are.
+ */
+public class OutputPathTemplate {
+
+    /**
+     * Resolves values of output pathname variables.
+     */
+    public interface Variables {
+
+        /**
+         * Returns value of the given variable, or {@code null} if the variable is not known.
+         */
+        String get(String name);
+
+    }
+
+    private final String pattern;
+    private final String[] segments;
+    private final boolean[] variableSegments;
+
+    public OutputPathTemplate(String pattern) {
+        this.pattern = pattern;
+
+        List<String> parsedSegments = new ArrayList<String>();
+        List<Boolean> parsedVariableSegments = new ArrayList<Boolean>();
+        int literalStart = 0;
+        int variableStart = pattern.indexOf('{');
+
+        while (variableStart >= 0) {
+            int variableEnd = pattern.indexOf('}', variableStart + 1);
+            if (variableEnd < 0) {
+                break;
+            }
+
+            if (variableStart > literalStart) {
+                parsedSegments.add(pattern.substring(literalStart, variableStart));
+                parsedVariableSegments.add(false);
+            }
+
+            parsedSegments.add(pattern.substring(variableStart + 1, variableEnd));
+            parsedVariableSegments.add(true);
+
+            literalStart = variableEnd + 1;
+            variableStart = pattern.indexOf('{', literalStart);
+        }
+
+        if (literalStart < pattern.length()) {
+            parsedSegments.add(pattern.substring(literalStart));
+            parsedVariableSegments.add(false);
+        }
+
+        this.segments = parsedSegments.toArray(new String[parsedSegments.size()]);
+        this.variableSegments = new boolean[segments.length];
+
+        for (int i = 0; i < segments.length; i++) {
+            variableSegments[i] = parsedVariableSegments.get(i);
+        }
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Returns {@code true} if this template refers to the given variable.
+     */
+    public boolean hasVariable(String name) {
+        for (int i = 0; i < segments.length; i++) {
+            if (variableSegments[i] && segments[i].equals(name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns output file pathname with variable placeholders replaced by their values.
+     */
+    public String expand(Variables variables) {
+        if (segments.length == 1 && !variableSegments[0]) {
+            return pattern;
+        }
+
+        StringBuilder sb = new StringBuilder(pattern.length() + 32);
+
+        for (int i = 0; i < segments.length; i++) {
+            if (!variableSegments[i]) {
+                sb.append(segments[i]);
+                continue;
+            }
+
+            String value = variables.get(segments[i]);
+
+            if (value != null) {
+                sb.append(value);
+            } else {
+                sb.append('{').append(segments[i]).append('}');
+            }
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.output;
+
+import genftw.core.metrics.FlightEvents;
+import genftw.core.metrics.Phase;
+import genftw.core.metrics.PhaseEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.FileObject;
+import javax.tools.JavaFileManager.Location;
+
+/**
+ * Writes rendered template output to resources using pooled buffers.
+ * <p>
+ * Templates render into an {@link OutputBuffer} obtained from this pipeline. Buffers are sized by the previous output
+ * size of the same output file, so that repeated processing of the same generator method rarely grows them. Buffer
+ * contents are then encoded directly into the resource output stream, in chunks of fixed size; any I/O error is
+ * propagated to the caller. If no charset is given, buffer contents are written to the resource writer instead, in
+ * chunks of fixed size, leaving the encoding to the compiler (e.g. its {@code -encoding} option).
+ * <p>
+ * Optionally, buffers can be {@linkplain #submit(FileObject, Location, String, OutputBuffer, FlightEvents, Object,
+ * long) submitted} to a bounded write-behind queue served by a single background thread, so that rendering may
+ * proceed while earlier outputs are written. Resources are opened on the submitting thread, since compiler file
+ * managers are not thread-safe; the background thread only copies buffer contents into already opened streams and
+ * closes them. Submitted writes must be {@linkplain #awaitWrites() confirmed} by the caller. Synchronous
+ * {@linkplain #write(FileObject, Location, String, OutputBuffer) writes} must not be mixed with write-behind mode.
+ */
+public class OutputPipeline {
+
+    private static final int MAX_POOLED_BUFFERS = 4;
+    private static final long WRITER_THREAD_KEEP_ALIVE_SECONDS = 10;
+
+    private final Charset charset;
+    private final int bufferSize;
+    private final Queue<OutputBuffer> bufferPool;
+    private final Map<String, Integer> outputSizeHints;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer byteChunk;
+
+    private int maxPooledBuffers = MAX_POOLED_BUFFERS;
+    private ExecutorService writeBehindExecutor;
+    private Semaphore writeBehindPermits;
+    private final List<Future<OutputStats>> pendingWrites;
+
+    /**
+     * Creates pipeline that encodes outputs using the given charset, or using the compiler encoding if {@code null}.
+     */
+    public OutputPipeline(Charset charset, int bufferSize) {
+        this.charset = charset;
+        this.bufferSize = bufferSize;
+        this.bufferPool = new ConcurrentLinkedQueue<OutputBuffer>();
+        this.outputSizeHints = new ConcurrentHashMap<String, Integer>();
+        this.encoder = charset != null ? charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE) : null;
+        this.byteChunk = charset != null ? ByteBuffer.allocate(bufferSize) : null;
+        this.pendingWrites = new LinkedList<Future<OutputStats>>();
+    }
+
+    /**
+     * Returns output charset, or {@code null} if outputs are encoded by the compiler.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Enables write-behind mode, using a queue that holds at most the given number of rendered outputs.
+     */
+    public void enableWriteBehind(int queueSize) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1,
+                WRITER_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "genftw-output-writer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        // Don't keep idle writer thread alive in long-running compiler processes
+        executor.allowCoreThreadTimeOut(true);
+
+        writeBehindExecutor = executor;
+        writeBehindPermits = new Semaphore(queueSize);
+        maxPooledBuffers = Math.max(MAX_POOLED_BUFFERS, queueSize + 2);
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehindExecutor != null;
+    }
+
+    /**
+     * Returns an empty buffer for rendering the given output file.
+     */
+    public OutputBuffer acquire(Location outputRootLocation, String outputFile) {
+        Integer sizeHint = outputSizeHints.get(getOutputKey(outputRootLocation, outputFile));
+        int capacity = sizeHint != null ? Math.max(sizeHint, bufferSize) : bufferSize;
+        OutputBuffer buffer = bufferPool.poll();
+
+        if (buffer == null) {
+            buffer = new OutputBuffer(capacity);
+        } else {
+            buffer.reset();
+            buffer.ensureCapacity(capacity);
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Returns the given buffer to the pool.
+     */
+    public void release(OutputBuffer buffer) {
+        if (bufferPool.size() < maxPooledBuffers) {
+            bufferPool.add(buffer);
+        }
+    }
+
+    /**
+     * Queues buffer contents for writing into the given resource on the background writer thread.
+     * <p>
+     * Blocks while the write-behind queue is full. The resource is opened on the calling thread, any error while
+     * opening it is thrown right away. The buffer is released once written and must not be used by the caller anymore.
+     * Each write is timed and recorded as flight event of the given generator method on the writer thread, its time is
+     * {@linkplain OutputStats#writeNanos() reported} once {@linkplain #awaitWrites() confirmed}.
+     */
+    public void submit(FileObject resource, Location outputRootLocation, final String outputFile,
+            final OutputBuffer buffer, final FlightEvents flightEvents, final Object generatorMethod,
+            final long matchedElements) throws IOException {
+        try {
+            writeBehindPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for write-behind queue");
+        }
+
+        final Writer writer;
+        final OutputStream out;
+        boolean submitted = false;
+
+        try {
+            outputSizeHints.put(getOutputKey(outputRootLocation, outputFile), buffer.length());
+            writer = encoder == null ? resource.openWriter() : null;
+            out = encoder != null ? resource.openOutputStream() : null;
+
+            pendingWrites.add(writeBehindExecutor.submit(new Callable<OutputStats>() {
+                @Override
+                public OutputStats call() throws IOException {
+                    try {
+                        PhaseEvent writeEvent = flightEvents.begin(Phase.WRITE);
+                        long startNanos = System.nanoTime();
+                        OutputStats stats = copy(buffer, writer, out, outputFile);
+                        long writeNanos = System.nanoTime() - startNanos;
+
+                        writeEvent.setSource(generatorMethod, matchedElements);
+                        writeEvent.commit(null, outputFile, stats.charsWritten());
+                        return new OutputStats(outputFile, stats.charsWritten(), stats.bytesWritten(),
+                                stats.writeCount(), writeNanos);
+                    } finally {
+                        release(buffer);
+                        writeBehindPermits.release();
+                    }
+                }
+            }));
+            submitted = true;
+        } finally {
+            if (!submitted) {
+                release(buffer);
+                writeBehindPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Waits until all submitted writes are complete, returning their statistics.
+     * <p>
+     * If any of the writes failed, the first failure is thrown after all writes are complete.
+     */
+    public List<OutputStats> awaitWrites() throws IOException {
+        List<OutputStats> result = new ArrayList<OutputStats>(pendingWrites.size());
+        IOException failure = null;
+
+        for (Future<OutputStats> write : pendingWrites) {
+            try {
+                result.add(getUninterruptibly(write));
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause()
+                            : new IOException(e.getCause());
+                }
+            }
+        }
+
+        pendingWrites.clear();
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        return result;
+    }
+
+    OutputStats getUninterruptibly(Future<OutputStats> write) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return write.get();
+                } catch (InterruptedException e) {
+                    // Writes must be confirmed before returning
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Encodes buffer contents into the given resource and remembers the output size for subsequent buffer
+     * {@linkplain #acquire(Location, String) allocation}.
+     */
+    public OutputStats write(FileObject resource, Location outputRootLocation, String outputFile,
+            OutputBuffer buffer) throws IOException {
+        outputSizeHints.put(getOutputKey(outputRootLocation, outputFile), buffer.length());
+
+        if (encoder == null) {
+            return copy(buffer, resource.openWriter(), null, outputFile);
+        }
+
+        return copy(buffer, null, resource.openOutputStream(), outputFile);
+    }
+
+    /**
+     * Copies buffer contents into the given resource writer, or output stream if writer is {@code null}, and closes it.
+     */
+    OutputStats copy(OutputBuffer buffer, Writer writer, OutputStream out, String outputFile) throws IOException {
+        if (writer != null) {
+            try {
+                return writeChars(buffer, writer, outputFile);
+            } finally {
+                writer.close();
+            }
+        }
+
+        try {
+            return encode(buffer, out, outputFile);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes buffer contents in chunks of fixed size. Written byte count is not known, since the compiler encodes
+     * written characters.
+     */
+    OutputStats writeChars(OutputBuffer buffer, Writer writer, String outputFile) throws IOException {
+        int writeCount = 0;
+
+        for (int offset = 0; offset < buffer.length(); offset += bufferSize) {
+            writer.write(buffer.chars(), offset, Math.min(bufferSize, buffer.length() - offset));
+            writeCount++;
+        }
+
+        return new OutputStats(outputFile, buffer.length(), OutputStats.UNKNOWN, writeCount);
+    }
+
+    OutputStats encode(OutputBuffer buffer, OutputStream out, String outputFile) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(buffer.chars(), 0, buffer.length());
+        long bytesWritten = 0;
+        int writeCount = 0;
+
+        encoder.reset();
+        byteChunk.clear();
+
+        // Encode all characters, writing each full chunk
+        CoderResult result = encoder.encode(chars, byteChunk, true);
+        while (!result.isUnderflow()) {
+            if (result.isError()) {
+                result.throwException();
+            }
+
+            bytesWritten += flushChunk(out);
+            writeCount++;
+            result = encoder.encode(chars, byteChunk, true);
+        }
+
+        // Flush any internal encoder state
+        while (encoder.flush(byteChunk).isOverflow()) {
+            bytesWritten += flushChunk(out);
+            writeCount++;
+        }
+
+        // Write the last chunk
+        if (byteChunk.position() > 0) {
+            bytesWritten += flushChunk(out);
+            writeCount++;
+        }
+
+        return new OutputStats(outputFile, buffer.length(), bytesWritten, writeCount);
+    }
+
+    int flushChunk(OutputStream out) throws IOException {
+        int count = byteChunk.position();
+        out.write(byteChunk.array(), 0, count);
+        byteChunk.clear();
+        return count;
+    }
+
+    String getOutputKey(Location outputRootLocation, String outputFile) {
+        return outputRootLocation.getName() + ":" + outputFile;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.output;
+
+/**
+ * Statistics of a single output file written by {@link OutputPipeline}.
+ * <p>
+ * Written characters are always counted. Written bytes are known only if the pipeline encodes outputs itself; outputs
+ * encoded by the compiler report {@link #UNKNOWN} bytes.
+ */
+public class OutputStats {
+
+    public static final long UNKNOWN = -1;
+
+    private final String outputFile;
+    private final long charsWritten;
+    private final long bytesWritten;
+    private final int writeCount;
+    private final long writeNanos;
+
+    OutputStats(String outputFile, long charsWritten, long bytesWritten, int writeCount) {
+        this(outputFile, charsWritten, bytesWritten, writeCount, 0);
+    }
+
+    OutputStats(String outputFile, long charsWritten, long bytesWritten, int writeCount, long writeNanos) {
+        this.outputFile = outputFile;
+        this.charsWritten = charsWritten;
+        this.bytesWritten = bytesWritten;
+        this.writeCount = writeCount;
+        this.writeNanos = writeNanos;
+    }
+
+    public String outputFile() {
+        return outputFile;
+    }
+
+    public long charsWritten() {
+        return charsWritten;
+    }
+
+    /**
+     * Returns the number of bytes written, or {@link #UNKNOWN} if the output was encoded by the compiler.
+     */
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns the number of write calls made to the resource output stream or writer.
+     */
+    public int writeCount() {
+        return writeCount;
+    }
+
+    /**
+     * Returns time taken by the write on the background writer thread, or {@code 0} if written synchronously.
+     */
+    public long writeNanos() {
+        return writeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return outputFile + " (" + charsWritten + " chars, "
+                + (bytesWritten != UNKNOWN ? bytesWritten + " bytes, " : "") + writeCount + " writes)";
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+
+/**
+ * Decoded values of an annotation, including default values, keyed by annotation element name.
+ * <p>
+ * Values are decoded once from the annotation mirror: enum constants are kept as {@link VariableElement}, class
+ * literals as {@link TypeMirror}, nested annotations as {@link AnnotationValues} and arrays as unmodifiable lists of
+ * decoded values. Typed accessors return {@code null} for missing values.
+ */
+public class AnnotationValues {
+
+    private final String annotationName;
+    private final Map<String, Object> values;
+
+    AnnotationValues(String annotationName, Map<String, Object> values) {
+        this.annotationName = annotationName;
+        this.values = values;
+    }
+
+    static AnnotationValues decode(AnnotationMirror annotation, Elements elementUtils) {
+        Map<? extends ExecutableElement, ? extends AnnotationValue> rawValues =
+                elementUtils.getElementValuesWithDefaults(annotation);
+        Map<String, Object> values = new HashMap<String, Object>(rawValues.size() * 2);
+
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : rawValues.entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(),
+                    decodeValue(entry.getValue().getValue(), elementUtils));
+        }
+
+        return new AnnotationValues(annotation.getAnnotationType().toString(), values);
+    }
+
+    static Object decodeValue(Object rawValue, Elements elementUtils) {
+        if (rawValue instanceof AnnotationMirror) {
+            return decode((AnnotationMirror) rawValue, elementUtils);
+        } else if (rawValue instanceof List<?>) {
+            List<?> rawList = (List<?>) rawValue;
+            List<Object> decodedList = new ArrayList<Object>(rawList.size());
+
+            for (Object item : rawList) {
+                decodedList.add(decodeValue(((AnnotationValue) item).getValue(), elementUtils));
+            }
+
+            return Collections.unmodifiableList(decodedList);
+        }
+
+        return rawValue;
+    }
+
+    public String getAnnotationName() {
+        return annotationName;
+    }
+
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    public Object get(String name) {
+        return values.get(name);
+    }
+
+    public String getString(String name) {
+        Object value = values.get(name);
+        return value != null ? value.toString() : null;
+    }
+
+    public Integer getInt(String name) {
+        Object value = values.get(name);
+        return value instanceof Number ? ((Number) value).intValue() : null;
+    }
+
+    public Boolean getBoolean(String name) {
+        Object value = values.get(name);
+        return value instanceof Boolean ? (Boolean) value : null;
+    }
+
+    /**
+     * Returns the simple name of an enum constant value.
+     */
+    public String getEnum(String name) {
+        Object value = values.get(name);
+        return value instanceof VariableElement ? ((VariableElement) value).getSimpleName().toString() : null;
+    }
+
+    /**
+     * Returns the fully qualified name of a class literal value.
+     */
+    public String getClassName(String name) {
+        Object value = values.get(name);
+        return value instanceof TypeMirror ? value.toString() : null;
+    }
+
+    public AnnotationValues getAnnotation(String name) {
+        Object value = values.get(name);
+        return value instanceof AnnotationValues ? (AnnotationValues) value : null;
+    }
+
+    /**
+     * Returns decoded array items as a read-only sequence.
+     */
+    public ReadOnlySequence getArray(String name) {
+        Object value = values.get(name);
+        return value instanceof List<?> ? new ReadOnlySequence((List<?>) value) : null;
+    }
+
+    /**
+     * Returns array items converted to their string representation, i.e. enum constant simple names and class literal
+     * qualified names.
+     */
+    public List<String> getStringArray(String name) {
+        Object value = values.get(name);
+
+        if (!(value instanceof List<?>)) {
+            return null;
+        }
+
+        List<?> items = (List<?>) value;
+        List<String> result = new ArrayList<String>(items.size());
+
+        for (Object item : items) {
+            result.add(item instanceof VariableElement
+                    ? ((VariableElement) item).getSimpleName().toString()
+                    : item.toString());
+        }
+
+        return result;
+    }
+
+    public Map<String, Object> asMap() {
+        return Collections.unmodifiableMap(values);
+    }
+
+}
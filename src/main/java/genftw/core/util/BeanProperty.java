@@ -0,0 +1,64 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.util;
+
+import javax.lang.model.element.ExecutableElement;
+
+/**
+ * Getter/setter method pair of a type element, identified by its JavaBeans property name.
+ * <p>
+ * Either of the accessor methods may be {@code null}, but never both.
+ */
+public class BeanProperty {
+
+    private final String name;
+    private ExecutableElement getter;
+    private ExecutableElement setter;
+
+    BeanProperty(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ExecutableElement getGetter() {
+        return getter;
+    }
+
+    void setGetter(ExecutableElement getter) {
+        this.getter = getter;
+    }
+
+    public ExecutableElement getSetter() {
+        return setter;
+    }
+
+    void setSetter(ExecutableElement setter) {
+        this.setter = setter;
+    }
+
+    public boolean isReadable() {
+        return getter != null;
+    }
+
+    public boolean isWritable() {
+        return setter != null;
+    }
+
+}
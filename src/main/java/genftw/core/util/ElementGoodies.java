@@ -17,11 +17,17 @@
 package genftw.core.util;
 
 import javax.lang.model.element.AnnotationMirror;
-import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
-import java.util.HashSet;
+import java.beans.Introspector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -30,46 +36,198 @@ import java.util.Set;
  * utilities}.
  * <p/>
  * Intended for use within templates.
+ * <p/>
+ * Structural views (fields, methods, package name, etc.) and decoded annotation values are computed once per element
+ * and cached until {@link #clearCache()} is called at the end of each processing round.
  */
 public class ElementGoodies {
 
   private final Elements elementUtils;
+  private final Map<Element, ElementViews> viewCache;
 
   public ElementGoodies(Elements elementUtils) {
     this.elementUtils = elementUtils;
+    this.viewCache = new HashMap<Element, ElementViews>();
+  }
+
+  /**
+   * Releases all cached views, since source elements must not be retained across processing rounds.
+   */
+  public void clearCache() {
+    viewCache.clear();
   }
 
   public String getPackageOf(Element elm) {
-    return elementUtils.getPackageOf(elm).getQualifiedName().toString();
+    ElementViews views = getViews(elm);
+    if (views.packageName == null) {
+      views.packageName = elementUtils.getPackageOf(elm).getQualifiedName().toString();
+    }
+    return views.packageName;
+  }
+
+  public ReadOnlySequence getFields(Element elm) {
+    ElementViews views = getViews(elm);
+    if (views.fields == null) {
+      views.fields = new ReadOnlySequence(ElementFilter.fieldsIn(elm.getEnclosedElements()));
+    }
+    return views.fields;
+  }
+
+  public ReadOnlySequence getMethods(Element elm) {
+    ElementViews views = getViews(elm);
+    if (views.methods == null) {
+      views.methods = new ReadOnlySequence(ElementFilter.methodsIn(elm.getEnclosedElements()));
+    }
+    return views.methods;
+  }
+
+  public ReadOnlySequence getConstructors(Element elm) {
+    ElementViews views = getViews(elm);
+    if (views.constructors == null) {
+      views.constructors = new ReadOnlySequence(ElementFilter.constructorsIn(elm.getEnclosedElements()));
+    }
+    return views.constructors;
+  }
+
+  public ReadOnlySequence getNestedTypes(Element elm) {
+    ElementViews views = getViews(elm);
+    if (views.nestedTypes == null) {
+      views.nestedTypes = new ReadOnlySequence(ElementFilter.typesIn(elm.getEnclosedElements()));
+    }
+    return views.nestedTypes;
+  }
+
+  /**
+   * Returns {@linkplain BeanProperty getter/setter pairs} declared by the given element, in declaration order.
+   */
+  public ReadOnlySequence getProperties(Element elm) {
+    ElementViews views = getViews(elm);
+    if (views.properties == null) {
+      views.properties = new ReadOnlySequence(findProperties(ElementFilter.methodsIn(elm.getEnclosedElements())));
+    }
+    return views.properties;
   }
 
   public boolean hasAnnotation(Element elm, String annotationName) {
     return getAnnotationByName(elm, annotationName) != null;
   }
 
+  /**
+   * Returns decoded {@code value} element (or its default) of the given annotation present on the element, or
+   * {@code null} if there is no such annotation or element.
+   */
   public Object getAnnotationValue(Element elm, String annotationName) {
-    AnnotationMirror annotation = getAnnotationByName(elm, annotationName);
-    if (annotation != null) {
-      for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues()
-          .entrySet()) {
-        if (entry.getKey().getSimpleName().contentEquals(annotationName)) return entry.getValue();
-      }
+    return getAnnotationValue(elm, annotationName, "value");
+  }
+
+  /**
+   * Returns decoded value (or default) of the named element of the given annotation present on the element, or
+   * {@code null} if there is no such annotation or element.
+   */
+  public Object getAnnotationValue(Element elm, String annotationName, String elementName) {
+    AnnotationValues values = getAnnotationValues(elm, annotationName);
+    return values != null ? values.get(elementName) : null;
+  }
+
+  /**
+   * Returns decoded values (including defaults) of the given annotation present on the element, or {@code null} if
+   * there is no such annotation.
+   */
+  public AnnotationValues getAnnotationValues(Element elm, String annotationName) {
+    ElementViews views = getViews(elm);
+    if (views.annotationValues == null) {
+      views.annotationValues = new HashMap<String, AnnotationValues>();
+    }
+
+    AnnotationValues values = views.annotationValues.get(annotationName);
+    if (values == null) {
+      AnnotationMirror annotation = getAnnotationByName(elm, annotationName);
+      if (annotation == null) return null;
+
+      values = AnnotationValues.decode(annotation, elementUtils);
+      views.annotationValues.put(annotationName, values);
     }
-    return null;
+    return values;
   }
 
   Set<String> getAllAnnotationNames(Element elm) {
-    Set<String> annotationNames = new HashSet<String>();
-    for (AnnotationMirror a : elementUtils.getAllAnnotationMirrors(elm)) {
-      annotationNames.add(a.getAnnotationType().toString());
+    return getAnnotationMirrors(elm).keySet();
+  }
+
+  List<BeanProperty> findProperties(List<ExecutableElement> methods) {
+    Map<String, BeanProperty> properties = new LinkedHashMap<String, BeanProperty>();
+    for (ExecutableElement m : methods) {
+      String methodName = m.getSimpleName().toString();
+      boolean voidReturn = m.getReturnType().getKind() == TypeKind.VOID;
+      int paramCount = m.getParameters().size();
+
+      if (paramCount == 0 && !voidReturn && isAccessorName(methodName, "get")) {
+        getProperty(properties, methodName.substring(3)).setGetter(m);
+      } else if (paramCount == 0 && m.getReturnType().getKind() == TypeKind.BOOLEAN
+          && isAccessorName(methodName, "is")) {
+        getProperty(properties, methodName.substring(2)).setGetter(m);
+      } else if (paramCount == 1 && voidReturn && isAccessorName(methodName, "set")) {
+        getProperty(properties, methodName.substring(3)).setSetter(m);
+      }
     }
-    return annotationNames;
+    return new ArrayList<BeanProperty>(properties.values());
+  }
+
+  private boolean isAccessorName(String methodName, String prefix) {
+    return methodName.length() > prefix.length() && methodName.startsWith(prefix)
+        && Character.isUpperCase(methodName.charAt(prefix.length()));
+  }
+
+  private BeanProperty getProperty(Map<String, BeanProperty> properties, String capitalizedName) {
+    String name = Introspector.decapitalize(capitalizedName);
+    BeanProperty property = properties.get(name);
+    if (property == null) {
+      property = new BeanProperty(name);
+      properties.put(name, property);
+    }
+    return property;
+  }
+
+  private ElementViews getViews(Element elm) {
+    ElementViews views = viewCache.get(elm);
+    if (views == null) {
+      views = new ElementViews();
+      viewCache.put(elm, views);
+    }
+    return views;
   }
 
   private AnnotationMirror getAnnotationByName(Element elm, String name) {
-    for (AnnotationMirror annotation : elementUtils.getAllAnnotationMirrors(elm)) {
-      if (annotation.getAnnotationType().toString().equals(name)) return annotation;
+    return getAnnotationMirrors(elm).get(name);
+  }
+
+  private Map<String, AnnotationMirror> getAnnotationMirrors(Element elm) {
+    ElementViews views = getViews(elm);
+    if (views.annotationMirrors == null) {
+      Map<String, AnnotationMirror> mirrors = new LinkedHashMap<String, AnnotationMirror>();
+      for (AnnotationMirror annotation : elementUtils.getAllAnnotationMirrors(elm)) {
+        String name = annotation.getAnnotationType().toString();
+        // First annotation of given type wins, as with linear lookup
+        if (!mirrors.containsKey(name)) mirrors.put(name, annotation);
+      }
+      views.annotationMirrors = Collections.unmodifiableMap(mirrors);
     }
-    return null;
+    return views.annotationMirrors;
+  }
+
+  /**
+   * Lazily populated structural views of a single element.
+   */
+  private static class ElementViews {
+
+    String packageName;
+    ReadOnlySequence fields;
+    ReadOnlySequence methods;
+    ReadOnlySequence constructors;
+    ReadOnlySequence nestedTypes;
+    ReadOnlySequence properties;
+    Map<String, AnnotationMirror> annotationMirrors;
+    Map<String, AnnotationValues> annotationValues;
+
   }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.util;
+
+import java.util.Collections;
+import java.util.List;
+
+import freemarker.template.ObjectWrapper;
+import freemarker.template.TemplateCollectionModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateModelIterator;
+import freemarker.template.TemplateSequenceModel;
+import freemarker.template.WrappingTemplateModel;
+
+/**
+ * Read-only FreeMarker sequence backed directly by a {@link List}, wrapping items on access.
+ * <p>
+ * Unlike {@linkplain freemarker.template.SimpleSequence simple sequence}, the backing list is never copied, so exposing
+ * it to templates costs O(1) regardless of its size.
+ */
+public class ReadOnlySequence extends WrappingTemplateModel implements TemplateSequenceModel, TemplateCollectionModel {
+
+    private final List<?> items;
+
+    public ReadOnlySequence(List<?> items) {
+        this.items = items;
+    }
+
+    public ReadOnlySequence(List<?> items, ObjectWrapper wrapper) {
+        super(wrapper);
+        this.items = items;
+    }
+
+    @Override
+    public TemplateModel get(int index) throws TemplateModelException {
+        if (index < 0 || index >= items.size()) {
+            return null;
+        }
+
+        return wrap(items.get(index));
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public TemplateModelIterator iterator() {
+        return new TemplateModelIterator() {
+
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < items.size();
+            }
+
+            @Override
+            public TemplateModel next() throws TemplateModelException {
+                return wrap(items.get(index++));
+            }
+
+        };
+    }
+
+    /**
+     * Returns an unmodifiable view of the backing list, intended for use outside of templates.
+     */
+    public List<?> asList() {
+        return Collections.unmodifiableList(items);
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import genftw.api.Criteria;
+import genftw.api.ForAllElements;
+import genftw.api.Produces;
+import genftw.api.Where;
+
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.tools.StandardLocation;
+
+import org.junit.Test;
+
+public class AnnotationFormatTest {
+
+    interface TestGenerator {
+
+        @Produces(output = "com/test/\"Quoted\"\\Out\u00e9.java", template = "all.ftl",
+                outputRootLocation = StandardLocation.CLASS_OUTPUT)
+        @ForAllElements(value = {
+                @Where(kind = { ElementKind.CLASS, ElementKind.INTERFACE }, modifiers = Modifier.PUBLIC,
+                        anyOf = @Criteria(annotations = "com.test.Marker", negate = true)),
+                @Where(matchResultVariable = "extra", packages = "com.test.extra") },
+                shardSize = 10, shardIndexTemplate = "index.ftl", shardIndexOutput = "com/test/Index.java")
+        void generate();
+
+        @Produces(output = "com/test/Out.java", template = "all.ftl")
+        @ForAllElements
+        void defaults();
+
+    }
+
+    AnnotationFormat tested = new AnnotationFormat(GeneratorIndex.GENERATOR_METHOD_ANNOTATIONS);
+
+    @Test
+    public void parse_formattedAnnotationsEqualToOriginals() throws NoSuchMethodException {
+        List<Annotation> originals = getAnnotations("generate");
+
+        List<Annotation> result = tested.parse(AnnotationFormat.format(originals.get(0)) + " "
+                + AnnotationFormat.format(originals.get(1)));
+
+        assertThat(result, equalTo(originals));
+        assertThat(originals, equalTo(result));
+        assertThat(result.get(0).hashCode(), equalTo(originals.get(0).hashCode()));
+        assertThat(result.get(1).hashCode(), equalTo(originals.get(1).hashCode()));
+        assertThat(result.get(1).toString(), equalTo(AnnotationFormat.format(originals.get(1))));
+    }
+
+    @Test
+    public void format_omitsDefaults() throws NoSuchMethodException {
+        List<Annotation> originals = getAnnotations("defaults");
+
+        assertThat(AnnotationFormat.format(originals.get(1)), equalTo("@ForAllElements()"));
+        assertThat(tested.parse("@ForAllElements()").get(0), equalTo(originals.get(1)));
+        assertThat(tested.parse("@ForAllElements(shardSize = 2)").get(0), not(equalTo(originals.get(1))));
+    }
+
+    @Test
+    public void parse_returnedArraysNotShared() {
+        ForAllElements result = (ForAllElements) tested.parse("@ForAllElements()").get(0);
+
+        result.value()[0] = null;
+
+        assertThat(result.value().length, equalTo(1));
+        assertThat(result.value()[0].matchResultVariable(), equalTo("matchResult"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_unknownAttribute() {
+        tested.parse("@Produces(output = \"Out.java\", unknown = 1)");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_unknownAnnotation() {
+        tested.parse("@Where()");
+    }
+
+    List<Annotation> getAnnotations(String methodName) throws NoSuchMethodException {
+        return Arrays.asList(TestGenerator.class.getMethod(methodName).getAnnotations());
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.verify;
+import genftw.api.ForEachElement;
+import genftw.api.Produces;
+import genftw.api.Where;
+import genftw.core.GeneratorMethodDescriptor.MatchMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.ElementKind;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GeneratorIndexTest {
+
+    interface TestGenerator {
+
+        @Produces(output = "{packageElementPath}/{elementSimpleName}Info.java", template = "info.ftl")
+        @ForEachElement(@Where(kind = ElementKind.CLASS))
+        void perClass();
+
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    ProcessorLogger logger;
+
+    @Test
+    public void write_sortedEntries() throws IOException, NoSuchMethodException {
+        GeneratorIndex tested = new GeneratorIndex();
+        tested.add("com.acme.SecondGenerator", "generate", getAnnotations("perClass"));
+        tested.add("com.acme.FirstGenerator", "generate", getAnnotations("perClass"));
+
+        StringWriter writer = new StringWriter();
+        tested.write(writer);
+
+        String annotations = " @Produces(output = \"{packageElementPath}/{elementSimpleName}Info.java\", "
+                + "template = \"info.ftl\") @ForEachElement(value = @Where(kind = {CLASS}))";
+        assertThat(GeneratorIndex.read(new StringReader(writer.toString())), equalTo(Arrays.asList(
+                "com.acme.FirstGenerator#generate" + annotations,
+                "com.acme.SecondGenerator#generate" + annotations)));
+    }
+
+    @Test
+    public void load_resolvesIndexedMethodsWithoutLoadingGenerators() throws IOException, NoSuchMethodException {
+        GeneratorIndex index = new GeneratorIndex();
+        index.add("com.acme.LibraryGenerator$Nested", "perClass", getAnnotations("perClass"));
+        index.add("com.acme.LibraryGenerator$Nested", "missing", Collections.<Annotation> emptyList());
+
+        Map<String, List<GeneratorMethodDescriptor>> indexed = GeneratorIndex.load(createIndexClassLoader(index),
+                logger);
+        List<GeneratorMethodDescriptor> result = indexed.get("com.acme.LibraryGenerator$Nested");
+
+        assertThat(indexed.size(), equalTo(1));
+        assertThat(result.size(), equalTo(1));
+        assertThat(result.get(0).getName(), equalTo("com.acme.LibraryGenerator.Nested.perClass"));
+        assertThat(result.get(0).getMatchMode(), equalTo(MatchMode.EACH_ELEMENT));
+        assertThat(result.get(0).getTemplateFile(), equalTo("info.ftl"));
+        assertThat(result.get(0).getMatchDefinitions().get(0),
+                equalTo(TestGenerator.class.getMethod("perClass").getAnnotation(ForEachElement.class).value()));
+        verify(logger).warning(anyString());
+    }
+
+    List<Annotation> getAnnotations(String methodName) throws NoSuchMethodException {
+        Method method = TestGenerator.class.getMethod(methodName);
+        return Arrays.asList(method.getAnnotation(Produces.class), method.getAnnotation(ForEachElement.class));
+    }
+
+    ClassLoader createIndexClassLoader(GeneratorIndex index) throws IOException {
+        File indexFile = new File(folder.getRoot(), GeneratorIndex.RESOURCE_NAME);
+        indexFile.getParentFile().mkdirs();
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(indexFile), GeneratorIndex.ENCODING);
+        try {
+            index.write(writer);
+        } finally {
+            writer.close();
+        }
+
+        return new URLClassLoader(new URL[] { folder.getRoot().toURI().toURL() }, getClass().getClassLoader());
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import freemarker.template.Configuration;
+import genftw.core.metrics.Phase;
+import genftw.core.metrics.ProcessorMetrics;
+import genftw.core.metrics.ProfileDirective;
+import genftw.core.metrics.RenderProfiler;
+import genftw.core.output.OutputPipeline;
+import genftw.core.output.OutputStats;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.util.Elements;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GeneratorMethodEnvironmentTest {
+
+    @Mock
+    Filer filer;
+
+    @Mock
+    OutputPipeline outputPipeline;
+
+    @Mock
+    Elements elementUtils;
+
+    @Mock
+    ProcessorLogger logger;
+
+    @Mock
+    ProcessorMetrics metrics;
+
+    @Mock
+    RenderProfiler renderProfiler;
+
+    @Mock
+    OutputStats stats;
+
+    GeneratorMethodEnvironment tested;
+
+    @Before
+    public void setUp() {
+        tested = new GeneratorMethodEnvironment(new Configuration(), filer, outputPipeline, elementUtils,
+                logger, metrics, renderProfiler);
+        when(outputPipeline.isWriteBehind()).thenReturn(true);
+    }
+
+    @Test
+    public void confirmWrites_recordsWritePhase() throws IOException {
+        when(stats.writeNanos()).thenReturn(42L);
+        when(stats.charsWritten()).thenReturn(7L);
+        when(outputPipeline.awaitWrites()).thenReturn(Collections.singletonList(stats));
+
+        tested.confirmWrites();
+
+        verify(metrics).recordPhase(Phase.WRITE, 42L);
+        verify(metrics).outputWritten(7L);
+    }
+
+    @Test
+    public void confirmWrites_writeFailureSuppressedByProcessingFailure() throws Exception {
+        IOException writeFailure = new IOException("disk full");
+        when(outputPipeline.awaitWrites()).thenThrow(writeFailure);
+        IllegalStateException failure = new IllegalStateException("render failed");
+
+        IllegalStateException result = tested.confirmWrites(failure);
+
+        assertThat(result, sameInstance(failure));
+        Throwable[] suppressed = (Throwable[]) Throwable.class.getMethod("getSuppressed").invoke(failure);
+        assertThat(suppressed.length, equalTo(1));
+        assertThat(suppressed[0], sameInstance((Throwable) writeFailure));
+        verify(logger, never()).warning(anyString());
+    }
+
+    @Test
+    public void createTemplateRootModel_profileDirectiveDoesNotShadowUserVariables() throws Exception {
+        Map<String, Object> result = tested.createTemplateRootModel();
+
+        assertThat(result.get(ProfileDirective.VARIABLE_NAME), instanceOf(ProfileDirective.class));
+        assertThat(result.containsKey("profile"), equalTo(false));
+    }
+
+}
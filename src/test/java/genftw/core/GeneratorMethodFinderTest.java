@@ -26,7 +26,10 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import genftw.api.ForAllElements;
 import genftw.api.ForEachElement;
+import genftw.api.ForEachGroup;
+import genftw.api.GroupBy;
 import genftw.api.Produces;
+import genftw.api.Where;
 import genftw.core.match.ElementFinder;
 
 import javax.lang.model.element.Element;
@@ -88,6 +91,39 @@ public class GeneratorMethodFinderTest {
         verify(logger).error(anyString(), any(Element.class));
     }
 
+    @Test
+    public void visitExecutable_elementWithKindMethod_groupByMetaDataPropertyWithoutPropertyName() {
+        ExecutableElement executableElement = mockExecutableElement(ElementKind.METHOD);
+        stubGeneratorMethodAnnotations(executableElement, true, false, false);
+
+        ForEachGroup partitionMatch = mock(ForEachGroup.class);
+        when(partitionMatch.groupBy()).thenReturn(GroupBy.META_DATA_PROPERTY);
+        when(partitionMatch.metaDataProperty()).thenReturn("");
+        when(executableElement.getAnnotation(ForEachGroup.class)).thenReturn(partitionMatch);
+
+        tested.visitExecutable(executableElement, null);
+
+        assertThat(tested.getMethodsFound().length, equalTo(0));
+        verify(logger).error(anyString(), any(Element.class));
+    }
+
+    @Test
+    public void visitExecutable_elementWithKindMethod_shardedWithoutShardIndexVariable() {
+        ExecutableElement executableElement = mockExecutableElement(ElementKind.METHOD);
+        stubGeneratorMethodAnnotations(executableElement, true, true, false);
+
+        ForAllElements groupMatch = executableElement.getAnnotation(ForAllElements.class);
+        when(groupMatch.shardSize()).thenReturn(100);
+        when(groupMatch.shardIndexTemplate()).thenReturn("");
+        when(groupMatch.shardIndexOutput()).thenReturn("");
+        when(executableElement.getAnnotation(Produces.class).output()).thenReturn("com/test/Registry.java");
+
+        tested.visitExecutable(executableElement, null);
+
+        assertThat(tested.getMethodsFound().length, equalTo(0));
+        verify(logger).error(anyString(), any(Element.class));
+    }
+
     @Test
     public void visitExecutable_elementWithKindMethod_withExtendedSignature() {
         ExecutableElement executableElement = mockExecutableElement(ElementKind.METHOD);
@@ -119,12 +155,18 @@ public class GeneratorMethodFinderTest {
 
     void stubGeneratorMethodAnnotations(ExecutableElement element, boolean hasProducesAnnotation,
             boolean hasForAllElementsAnnotation, boolean hasForEachElementAnnotation) {
-        when(element.getAnnotation(Produces.class)).thenReturn(
-                hasProducesAnnotation ? mock(Produces.class) : null);
-        when(element.getAnnotation(ForAllElements.class)).thenReturn(
-                hasForAllElementsAnnotation ? mock(ForAllElements.class) : null);
-        when(element.getAnnotation(ForEachElement.class)).thenReturn(
-                hasForEachElementAnnotation ? mock(ForEachElement.class) : null);
+        Produces produces = mock(Produces.class);
+        when(produces.output()).thenReturn("com/test/Output.java");
+
+        ForAllElements groupMatch = mock(ForAllElements.class);
+        when(groupMatch.value()).thenReturn(new Where[0]);
+
+        ForEachElement loopMatch = mock(ForEachElement.class);
+        when(loopMatch.matchExtraElements()).thenReturn(new Where[0]);
+
+        when(element.getAnnotation(Produces.class)).thenReturn(hasProducesAnnotation ? produces : null);
+        when(element.getAnnotation(ForAllElements.class)).thenReturn(hasForAllElementsAnnotation ? groupMatch : null);
+        when(element.getAnnotation(ForEachElement.class)).thenReturn(hasForEachElementAnnotation ? loopMatch : null);
     }
 
     ExecutableElement mockExecutableElement(ElementKind elementKind) {
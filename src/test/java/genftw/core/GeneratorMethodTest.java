@@ -19,8 +19,13 @@ package genftw.core;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.RETURNS_SMART_NULLS;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -29,22 +34,32 @@ import static org.mockito.Mockito.when;
 import freemarker.template.TemplateException;
 import genftw.api.ForAllElements;
 import genftw.api.ForEachElement;
+import genftw.api.ForEachGroup;
+import genftw.api.GroupBy;
 import genftw.api.Produces;
 import genftw.api.Where;
 import genftw.core.match.ElementFinder;
+import genftw.core.util.ReadOnlySequence;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Name;
 import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.Elements;
 import javax.tools.StandardLocation;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentMatcher;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -69,23 +84,33 @@ public class GeneratorMethodTest {
     @Mock
     ForEachElement loopMatchAnnotation;
 
+    @Mock
+    ForEachGroup partitionMatchAnnotation;
+
     @Mock
     Produces outputAnnotation;
 
     @Mock
     GeneratorMethodTemplate methodTemplate;
 
-    @InjectMocks
-    GeneratorMethod tested;
+    @Before
+    public void setUp() {
+        stubOutputAnnotation(StandardLocation.SOURCE_OUTPUT, "com/test/package/OutputFile");
+    }
+
+    GeneratorMethod tested() {
+        return new GeneratorMethod(GeneratorMethodDescriptor.resolve(methodElement), methodElement, elementUtils,
+                elementFinder, logger);
+    }
 
     @Test
     public void processSimpleMethod_expectedBehavior() throws IOException, TemplateException {
         stubOutputAnnotation(StandardLocation.SOURCE_OUTPUT, "com/test/package/OutputFile");
 
-        tested.processSimpleMethod(methodTemplate);
+        tested().processSimpleMethod(methodTemplate);
 
         verify(methodTemplate, never()).setRootModelMapping(anyString(), anyObject());
-        verify(methodTemplate).process(StandardLocation.SOURCE_OUTPUT, "com/test/package/OutputFile");
+        verify(methodTemplate).process(StandardLocation.SOURCE_OUTPUT, "com/test/package/OutputFile", 0);
     }
 
     @Test
@@ -93,19 +118,21 @@ public class GeneratorMethodTest {
         stubGroupMatchAnnotation("one", "two");
         stubOutputAnnotation(StandardLocation.SOURCE_OUTPUT, "com/test/package/OutputFile");
 
-        Element[] matchedElementsForMetaDataOne = new Element[] { mock(Element.class) };
+        List<Element> matchedElementsForMetaDataOne = Arrays.asList(mock(Element.class));
         stubElementFinderWithMatchDefinition(groupMatchAnnotation.value()[0],
                 matchedElementsForMetaDataOne, "matchResultOne");
 
-        Element[] matchedElementsForMetaDataTwo = new Element[] {};
+        List<Element> matchedElementsForMetaDataTwo = Collections.emptyList();
         stubElementFinderWithMatchDefinition(groupMatchAnnotation.value()[1],
                 matchedElementsForMetaDataTwo, "matchResultTwo");
 
-        tested.processGroupMatchMethod(methodTemplate);
+        tested().processGroupMatchMethod(methodTemplate);
 
-        verify(methodTemplate).setRootModelMapping("matchResultOne", matchedElementsForMetaDataOne);
-        verify(methodTemplate).setRootModelMapping("matchResultTwo", matchedElementsForMetaDataTwo);
-        verify(methodTemplate).process(StandardLocation.SOURCE_OUTPUT, "com/test/package/OutputFile");
+        verify(methodTemplate).setRootModelMapping(eq("matchResultOne"),
+                argThat(sequenceOf(matchedElementsForMetaDataOne)));
+        verify(methodTemplate).setRootModelMapping(eq("matchResultTwo"),
+                argThat(sequenceOf(matchedElementsForMetaDataTwo)));
+        verify(methodTemplate).process(StandardLocation.SOURCE_OUTPUT, "com/test/package/OutputFile", 1);
     }
 
     @Test
@@ -113,10 +140,59 @@ public class GeneratorMethodTest {
         stubGroupMatchAnnotation();
         stubOutputAnnotation(StandardLocation.SOURCE_OUTPUT, "com/test/package/OutputFile");
 
-        tested.processGroupMatchMethod(methodTemplate);
+        tested().processGroupMatchMethod(methodTemplate);
 
         verify(methodTemplate, never()).setRootModelMapping(anyString(), anyObject());
-        verify(methodTemplate).process(StandardLocation.SOURCE_OUTPUT, "com/test/package/OutputFile");
+        verify(methodTemplate).process(StandardLocation.SOURCE_OUTPUT, "com/test/package/OutputFile", 0);
+    }
+
+    @Test
+    public void processGroupMatchMethod_sharded() throws IOException, TemplateException {
+        stubGroupMatchAnnotation("one");
+        when(groupMatchAnnotation.shardSize()).thenReturn(2);
+        when(groupMatchAnnotation.shardIndexTemplate()).thenReturn("");
+        when(groupMatchAnnotation.shardIndexOutput()).thenReturn("");
+        stubOutputAnnotation(StandardLocation.SOURCE_OUTPUT, "com/test/package/Shard{shardIndex}");
+
+        Element elementC = mockType("com.test.package.C");
+        Element elementA = mockType("com.test.package.A");
+        Element elementB = mockType("com.test.package.B");
+        List<Element> matchedElements = Arrays.asList(elementC, elementA, elementB);
+        stubElementFinderWithMatchDefinition(groupMatchAnnotation.value()[0], matchedElements, "matchResultOne");
+
+        tested().processGroupMatchMethod(methodTemplate);
+
+        InOrder inOrder = inOrder(methodTemplate);
+        inOrder.verify(methodTemplate).setRootModelMapping(eq("matchResultOne"),
+                argThat(sequenceOf(Arrays.asList(elementA, elementC))));
+        inOrder.verify(methodTemplate).setRootModelMapping("shardIndex", 0);
+        inOrder.verify(methodTemplate).process(StandardLocation.SOURCE_OUTPUT, "com/test/package/Shard0", 2);
+        inOrder.verify(methodTemplate).setRootModelMapping(eq("matchResultOne"),
+                argThat(sequenceOf(Arrays.asList(elementB))));
+        inOrder.verify(methodTemplate).setRootModelMapping("shardIndex", 1);
+        inOrder.verify(methodTemplate).process(StandardLocation.SOURCE_OUTPUT, "com/test/package/Shard1", 1);
+        verify(methodTemplate).setRootModelMapping("shardCount", 2);
+    }
+
+    @Test
+    public void processShardIndex_expectedBehavior() throws IOException, TemplateException {
+        stubGroupMatchAnnotation("one");
+        when(groupMatchAnnotation.shardSize()).thenReturn(2);
+        when(groupMatchAnnotation.shardIndexTemplate()).thenReturn("index.ftl");
+        when(groupMatchAnnotation.shardIndexOutput()).thenReturn("com/test/package/Index");
+        stubOutputAnnotation(StandardLocation.SOURCE_OUTPUT, "com/test/package/Shard{shardIndex}");
+
+        List<Element> matchedElements = Arrays.asList(mock(Element.class), mock(Element.class),
+                mock(Element.class));
+        stubElementFinderWithMatchDefinition(groupMatchAnnotation.value()[0], matchedElements, "matchResultOne");
+
+        tested().processShardIndex(methodTemplate);
+
+        verify(methodTemplate).setRootModelMapping(eq("matchResultOne"), argThat(sequenceOf(matchedElements)));
+        verify(methodTemplate).setRootModelMapping("shardCount", 2);
+        verify(methodTemplate).setRootModelMapping("shardOutputFiles",
+                Arrays.asList("com/test/package/Shard0", "com/test/package/Shard1"));
+        verify(methodTemplate).process(StandardLocation.SOURCE_OUTPUT, "com/test/package/Index", 3);
     }
 
     @Test
@@ -126,28 +202,28 @@ public class GeneratorMethodTest {
 
         Element loopElementOne = mockElement("MyClassOne", "com.test.package");
         Element loopElementTwo = mockElement("MyClassTwo", "com.test.package");
-        Element[] matchedElementsForMetaDataEach = new Element[] { loopElementOne, loopElementTwo };
+        List<Element> matchedElementsForMetaDataEach = Arrays.asList(loopElementOne, loopElementTwo);
         stubElementFinderWithMatchDefinition(loopMatchAnnotation.value(),
                 matchedElementsForMetaDataEach, "matchResultEach");
 
-        Element[] matchedElementsForMetaDataExtraOne = new Element[] { mock(Element.class) };
+        List<Element> matchedElementsForMetaDataExtraOne = Arrays.asList(mock(Element.class));
         stubElementFinderWithMatchDefinition(loopMatchAnnotation.matchExtraElements()[0],
                 matchedElementsForMetaDataExtraOne, "matchResultExtraOne");
 
-        Element[] matchedElementsForMetaDataExtraTwo = new Element[] {};
+        List<Element> matchedElementsForMetaDataExtraTwo = Collections.emptyList();
         stubElementFinderWithMatchDefinition(loopMatchAnnotation.matchExtraElements()[1],
                 matchedElementsForMetaDataExtraTwo, "matchResultExtraTwo");
 
-        tested.processLoopMatchMethod(methodTemplate);
+        tested().processLoopMatchMethod(methodTemplate);
 
-        verify(methodTemplate).setRootModelMapping("matchResultExtraOne",
-                matchedElementsForMetaDataExtraOne);
-        verify(methodTemplate).setRootModelMapping("matchResultExtraTwo",
-                matchedElementsForMetaDataExtraTwo);
+        verify(methodTemplate).setRootModelMapping(eq("matchResultExtraOne"),
+                argThat(sequenceOf(matchedElementsForMetaDataExtraOne)));
+        verify(methodTemplate).setRootModelMapping(eq("matchResultExtraTwo"),
+                argThat(sequenceOf(matchedElementsForMetaDataExtraTwo)));
         verify(methodTemplate).setRootModelMapping("matchResultEach", loopElementOne);
         verify(methodTemplate).setRootModelMapping("matchResultEach", loopElementTwo);
         verify(methodTemplate, times(2)).process(StandardLocation.SOURCE_OUTPUT,
-                "com/test/package/OutputFile");
+                "com/test/package/OutputFile", 1);
     }
 
     @Test
@@ -156,12 +232,55 @@ public class GeneratorMethodTest {
         stubOutputAnnotation(StandardLocation.SOURCE_OUTPUT, "com/test/package/OutputFile");
 
         stubElementFinderWithMatchDefinition(loopMatchAnnotation.value(),
-                new Element[] {}, "matchResultEach");
+                Collections.<Element> emptyList(), "matchResultEach");
 
-        tested.processLoopMatchMethod(methodTemplate);
+        tested().processLoopMatchMethod(methodTemplate);
 
         verify(methodTemplate, never()).setRootModelMapping(anyString(), anyObject());
-        verify(methodTemplate, never()).process(any(StandardLocation.class), anyString());
+        verify(methodTemplate, never()).process(any(StandardLocation.class), anyString(), anyInt());
+        verify(logger).warning(anyString(), any(Element.class));
+    }
+
+    @Test
+    public void processPartitionMatchMethod_expectedBehavior() throws IOException, TemplateException {
+        stubPartitionMatchAnnotation("each", "extra");
+        stubOutputAnnotation(StandardLocation.SOURCE_OUTPUT, "{groupKeyPath}/Index");
+
+        Element elementOne = mockElement("MyClassOne", "com.test.second");
+        Element elementTwo = mockElement("MyClassTwo", "com.test.first");
+        Element elementThree = mockElement("MyClassThree", "com.test.second");
+        stubElementFinderWithMatchDefinition(partitionMatchAnnotation.value(),
+                Arrays.asList(elementOne, elementTwo, elementThree), "matchResultEach");
+
+        List<Element> extraElements = Arrays.asList(mock(Element.class));
+        stubElementFinderWithMatchDefinition(partitionMatchAnnotation.matchExtraElements()[0],
+                extraElements, "matchResultExtra");
+
+        tested().processPartitionMatchMethod(methodTemplate);
+
+        InOrder inOrder = inOrder(methodTemplate);
+        inOrder.verify(methodTemplate).setRootModelMapping(eq("matchResultExtra"), argThat(sequenceOf(extraElements)));
+        inOrder.verify(methodTemplate).setRootModelMapping(eq("matchResultEach"),
+                argThat(sequenceOf(Arrays.asList(elementTwo))));
+        inOrder.verify(methodTemplate).setRootModelMapping("groupKey", "com.test.first");
+        inOrder.verify(methodTemplate).process(StandardLocation.SOURCE_OUTPUT, "com/test/first/Index", 1);
+        inOrder.verify(methodTemplate).setRootModelMapping(eq("matchResultEach"),
+                argThat(sequenceOf(Arrays.asList(elementOne, elementThree))));
+        inOrder.verify(methodTemplate).setRootModelMapping("groupKey", "com.test.second");
+        inOrder.verify(methodTemplate).process(StandardLocation.SOURCE_OUTPUT, "com/test/second/Index", 2);
+    }
+
+    @Test
+    public void processPartitionMatchMethod_noMatchDefinitions() throws IOException, TemplateException {
+        stubPartitionMatchAnnotation("each");
+        stubOutputAnnotation(StandardLocation.SOURCE_OUTPUT, "{groupKeyPath}/Index");
+
+        stubElementFinderWithMatchDefinition(partitionMatchAnnotation.value(),
+                Collections.<Element> emptyList(), "matchResultEach");
+
+        tested().processPartitionMatchMethod(methodTemplate);
+
+        verify(methodTemplate, never()).process(any(StandardLocation.class), anyString(), anyInt());
         verify(logger).warning(anyString(), any(Element.class));
     }
 
@@ -172,17 +291,27 @@ public class GeneratorMethodTest {
     }
 
     void stubElementFinderWithMatchDefinition(Where def,
-            Element[] matchedElements, String matchResultVariable) {
+            List<Element> matchedElements, String matchResultVariable) {
         when(elementFinder.getElementsFound(def)).thenReturn(matchedElements);
         when(def.matchResultVariable()).thenReturn(matchResultVariable);
     }
 
+    ArgumentMatcher<Object> sequenceOf(final List<Element> elements) {
+        return new ArgumentMatcher<Object>() {
+            @Override
+            public boolean matches(Object argument) {
+                return argument instanceof ReadOnlySequence
+                        && ((ReadOnlySequence) argument).asList().equals(elements);
+            }
+        };
+    }
+
     @Test
     public void resolveOutputFile_withSupportedVariables() {
         Element element = mockElement("MyClass", "com.test.package");
+        stubOutputAnnotation(StandardLocation.SOURCE_OUTPUT, "root/{packageElementPath}/{elementSimpleName}Generated");
 
-        String result = tested.resolveOutputFile(element,
-                "root/{packageElementPath}/{elementSimpleName}Generated");
+        String result = tested().resolveOutputFile(element);
 
         assertThat(result, equalTo("root/com/test/package/MyClassGenerated"));
     }
@@ -190,13 +319,22 @@ public class GeneratorMethodTest {
     @Test
     public void resolveOutputFile_withUnknownVariables() {
         Element element = mockElement("MyClass", "com.test.package");
+        stubOutputAnnotation(StandardLocation.SOURCE_OUTPUT, "root/{packageElementPath}/{unknownVariable}Generated");
 
-        String result = tested.resolveOutputFile(element,
-                "root/{packageElementPath}/{unknownVariable}Generated");
+        String result = tested().resolveOutputFile(element);
 
         assertThat(result, equalTo("root/com/test/package/{unknownVariable}Generated"));
     }
 
+    @Test
+    public void resolveGroupOutputFile_withSupportedVariables() {
+        stubOutputAnnotation(StandardLocation.SOURCE_OUTPUT, "root/{groupKeyPath}/{groupKey}.txt");
+
+        String result = tested().resolveGroupOutputFile("com.test.package");
+
+        assertThat(result, equalTo("root/com/test/package/com.test.package.txt"));
+    }
+
     Element mockElement(String simpleName, String packageQualifiedName) {
         Element element = mock(Element.class);
         PackageElement packageElement = mock(PackageElement.class);
@@ -213,41 +351,69 @@ public class GeneratorMethodTest {
         return element;
     }
 
+    Element mockType(String qualifiedName) {
+        TypeElement type = mock(TypeElement.class);
+        Name typeQualifiedName = when(mock(Name.class).toString()).thenReturn(qualifiedName).getMock();
+
+        when(type.getKind()).thenReturn(ElementKind.CLASS);
+        when(type.getQualifiedName()).thenReturn(typeQualifiedName);
+
+        return type;
+    }
+
     @Test
     public void getMatchDefinitions_groupMatchAnnotation() {
         stubGroupMatchAnnotation("one", "two");
 
-        Where[] result = tested.getMatchDefinitions();
+        List<Where> result = tested().getMatchDefinitions();
 
-        assertThat(result.length, equalTo(2));
-        assertThat(result[0].metaData(), equalTo("one"));
-        assertThat(result[1].metaData(), equalTo("two"));
+        assertThat(result.size(), equalTo(2));
+        assertThat(result.get(0).metaData(), equalTo("one"));
+        assertThat(result.get(1).metaData(), equalTo("two"));
     }
 
     @Test
     public void getMatchDefinitions_loopMatchAnnotation() {
         stubLoopMatchAnnotation("each", "extraOne", "extraTwo");
 
-        Where[] result = tested.getMatchDefinitions();
+        List<Where> result = tested().getMatchDefinitions();
 
-        assertThat(result.length, equalTo(3));
-        assertThat(result[0].metaData(), equalTo("each"));
-        assertThat(result[1].metaData(), equalTo("extraOne"));
-        assertThat(result[2].metaData(), equalTo("extraTwo"));
+        assertThat(result.size(), equalTo(3));
+        assertThat(result.get(0).metaData(), equalTo("each"));
+        assertThat(result.get(1).metaData(), equalTo("extraOne"));
+        assertThat(result.get(2).metaData(), equalTo("extraTwo"));
+    }
+
+    @Test
+    public void getMatchDefinitions_partitionMatchAnnotation() {
+        stubPartitionMatchAnnotation("each", "extra");
+
+        List<Where> result = tested().getMatchDefinitions();
+
+        assertThat(result.size(), equalTo(2));
+        assertThat(result.get(0).metaData(), equalTo("each"));
+        assertThat(result.get(1).metaData(), equalTo("extra"));
     }
 
     @Test
     public void getMatchDefinitions_withoutMatchAnnotation() {
-        Where[] result = tested.getMatchDefinitions();
+        List<Where> result = tested().getMatchDefinitions();
+
+        assertThat(result.size(), equalTo(0));
+    }
 
-        assertThat(result.length, equalTo(0));
+    Where mockDefinition(String metaData) {
+        // Match definitions are compiled, so other attributes must not be null
+        Where def = mock(Where.class, RETURNS_SMART_NULLS);
+        when(def.metaData()).thenReturn(metaData);
+        return def;
     }
 
     void stubGroupMatchAnnotation(String... metaData) {
         Where[] defs = new Where[metaData.length];
 
         for (int i = 0; i < metaData.length; i++) {
-            defs[i] = when(mock(Where.class).metaData()).thenReturn(metaData[i]).getMock();
+            defs[i] = mockDefinition(metaData[i]);
         }
 
         when(groupMatchAnnotation.value()).thenReturn(defs);
@@ -255,11 +421,11 @@ public class GeneratorMethodTest {
     }
 
     void stubLoopMatchAnnotation(String valueMetaData, String... extraMetaData) {
-        Where def = when(mock(Where.class).metaData()).thenReturn(valueMetaData).getMock();
+        Where def = mockDefinition(valueMetaData);
         Where[] extraDefs = new Where[extraMetaData.length];
 
         for (int i = 0; i < extraMetaData.length; i++) {
-            extraDefs[i] = when(mock(Where.class).metaData()).thenReturn(extraMetaData[i]).getMock();
+            extraDefs[i] = mockDefinition(extraMetaData[i]);
         }
 
         when(loopMatchAnnotation.value()).thenReturn(def);
@@ -267,4 +433,19 @@ public class GeneratorMethodTest {
         when(methodElement.getAnnotation(ForEachElement.class)).thenReturn(loopMatchAnnotation);
     }
 
+    void stubPartitionMatchAnnotation(String valueMetaData, String... extraMetaData) {
+        Where def = mockDefinition(valueMetaData);
+        Where[] extraDefs = new Where[extraMetaData.length];
+
+        for (int i = 0; i < extraMetaData.length; i++) {
+            extraDefs[i] = mockDefinition(extraMetaData[i]);
+        }
+
+        when(partitionMatchAnnotation.value()).thenReturn(def);
+        when(partitionMatchAnnotation.matchExtraElements()).thenReturn(extraDefs);
+        when(partitionMatchAnnotation.groupBy()).thenReturn(GroupBy.PACKAGE);
+        when(partitionMatchAnnotation.groupKeyVariable()).thenReturn("groupKey");
+        when(methodElement.getAnnotation(ForEachGroup.class)).thenReturn(partitionMatchAnnotation);
+    }
+
 }
@@ -17,25 +17,50 @@
 package genftw.core;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import genftw.api.ForAllElements;
 import genftw.api.Generator;
-
+import genftw.api.Produces;
+import genftw.api.Where;
+import genftw.core.ProcessorLogger.LogLevel;
+import genftw.core.match.MatchProfiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.processing.Messager;
 import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic.Kind;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -50,9 +75,18 @@ public class GeneratorProcessorTest {
     @Mock
     RoundEnvironment roundEnv;
 
+    @Mock
+    Elements elementUtils;
+
+    @Mock
+    MatchProfiler matchProfiler;
+
     @InjectMocks
     GeneratorProcessor tested;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void getGeneratorElements_elementWithKindClass() {
         stubRoundEnvironment(mockElement(Element.class, ElementKind.CLASS));
@@ -83,6 +117,118 @@ public class GeneratorProcessorTest {
         assertThat(result.contains(typeElement), equalTo(true));
     }
 
+    @Test
+    public void addIndexedMethods_skipsGeneratorsFoundAmongSourceElements() throws NoSuchMethodException {
+        TypeElement sourceGenerator = mockElement(TypeElement.class, ElementKind.INTERFACE);
+        Name sourceGeneratorName = when(mock(Name.class).toString())
+                .thenReturn(SourceGenerator.class.getName()).getMock();
+        when(elementUtils.getBinaryName(sourceGenerator)).thenReturn(sourceGeneratorName);
+
+        ExecutableElement sourceMethodElement = mock(ExecutableElement.class);
+        GeneratorMethod sourceMethod = new GeneratorMethod(resolve(SourceGenerator.class), sourceMethodElement,
+                elementUtils, null, logger);
+
+        Map<String, List<GeneratorMethodDescriptor>> indexedMethods =
+                new LinkedHashMap<String, List<GeneratorMethodDescriptor>>();
+        indexedMethods.put(SourceGenerator.class.getName(), Arrays.asList(resolve(SourceGenerator.class)));
+        indexedMethods.put(LibraryGenerator.class.getName(), Arrays.asList(resolve(LibraryGenerator.class)));
+        tested.setIndexedMethods(indexedMethods);
+
+        GeneratorMethod[] result = tested.addIndexedMethods(new GeneratorMethod[] { sourceMethod },
+                Collections.singleton(sourceGenerator), elementUtils);
+
+        assertThat(result.length, equalTo(2));
+        assertThat(result[0], equalTo(sourceMethod));
+        assertThat(result[1].getElement(), nullValue());
+        assertThat(result[1].toString(), equalTo(LibraryGenerator.class.getCanonicalName() + ".generate"));
+    }
+
+    @Test
+    public void reportMatchProfile_warnsAboutUnrestrictedDefinitions() throws NoSuchMethodException {
+        Where def = resolve(UnrestrictedGenerator.class).getMatchDefinitions().get(0);
+        when(matchProfiler.getUnrestrictedDefinitions()).thenReturn(Arrays.asList(def));
+
+        tested.reportMatchProfile();
+
+        verify(logger).warning("Match definition @Where() imposes no restriction, all scanned elements will match");
+    }
+
+    @Test
+    public void process_processingOverClosesLogger() {
+        when(roundEnv.processingOver()).thenReturn(true);
+
+        tested.process(Collections.<TypeElement> emptySet(), roundEnv);
+
+        verify(logger).close();
+    }
+
+    @Test
+    public void createLogger_debugMessagesWrittenToLogFile() throws IOException {
+        Messager messager = mock(Messager.class);
+        File logFile = folder.newFile("genftw.log");
+
+        ProcessorLogger result = tested.createLogger(messager, LogLevel.DEBUG, logFile.getPath());
+        result.debug("Generated %s", "Foo.java");
+        result.close();
+
+        assertThat(readFile(logFile), equalTo("Generated Foo.java\n"));
+        verify(messager, never()).printMessage(any(Kind.class), anyString());
+    }
+
+    @Test
+    public void createLogger_logFileNotWritable() {
+        Messager messager = mock(Messager.class);
+
+        ProcessorLogger result = tested.createLogger(messager, LogLevel.DEBUG, folder.getRoot().getPath());
+        result.debug("Generated %s", "Foo.java");
+
+        verify(messager).printMessage(eq(Kind.WARNING), startsWith("Error while opening log file"));
+        verify(messager).printMessage(Kind.WARNING, "Generated Foo.java");
+    }
+
+    String readFile(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[1024];
+
+            for (int n = reader.read(buffer); n >= 0; n = reader.read(buffer)) {
+                sb.append(buffer, 0, n);
+            }
+
+            return sb.toString();
+        } finally {
+            reader.close();
+        }
+    }
+
+    GeneratorMethodDescriptor resolve(Class<?> generator) throws NoSuchMethodException {
+        return GeneratorMethodDescriptor.resolve(generator.getMethod("generate"));
+    }
+
+    interface SourceGenerator {
+
+        @Produces(output = "com/test/Source.java", template = "source.ftl")
+        void generate();
+
+    }
+
+    interface LibraryGenerator {
+
+        @Produces(output = "com/test/Library.java", template = "library.ftl")
+        void generate();
+
+    }
+
+    interface UnrestrictedGenerator {
+
+        @Produces(output = "com/test/All.java", template = "all.ftl")
+        @ForAllElements(@Where)
+        void generate();
+
+    }
+
     void stubRoundEnvironment(Element... generatorElements) {
         Set<Element> annotatedElements = new HashSet<Element>();
         annotatedElements.addAll(Arrays.asList(generatorElements));
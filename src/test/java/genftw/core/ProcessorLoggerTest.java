@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import genftw.core.ProcessorLogger.LogLevel;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import javax.annotation.processing.Messager;
+import javax.tools.Diagnostic.Kind;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProcessorLoggerTest {
+
+    @Mock
+    Messager messager;
+
+    @Test
+    public void debug_disabledAtInfoLevel() {
+        ProcessorLogger tested = new ProcessorLogger(messager, LogLevel.INFO, null);
+
+        tested.debug("Generated %s", "Foo.java");
+
+        verify(messager, never()).printMessage(any(Kind.class), anyString());
+    }
+
+    @Test
+    public void debug_writtenToDetailWriter() {
+        StringWriter detailWriter = new StringWriter();
+        ProcessorLogger tested = new ProcessorLogger(messager, LogLevel.DEBUG, detailWriter);
+
+        tested.debug("Generated %s", "Foo.java");
+        tested.flush();
+
+        assertThat(detailWriter.toString(), equalTo("Generated Foo.java\n"));
+        verify(messager, never()).printMessage(any(Kind.class), anyString());
+    }
+
+    @Test
+    public void debug_writeFailureFallsBackToMessager() throws IOException {
+        Writer detailWriter = mock(Writer.class);
+        doThrow(new IOException("No space left on device")).when(detailWriter).write(anyString());
+        ProcessorLogger tested = new ProcessorLogger(messager, LogLevel.DEBUG, detailWriter);
+
+        tested.debug("Generated %s", "Foo.java");
+        tested.debug("Generated %s", "Bar.java");
+
+        verify(messager).printMessage(Kind.WARNING,
+                "Error while writing log file: java.io.IOException: No space left on device");
+        verify(messager).printMessage(Kind.WARNING, "Generated Foo.java");
+        verify(messager).printMessage(Kind.WARNING, "Generated Bar.java");
+        verify(detailWriter, times(1)).write(anyString());
+        verify(detailWriter).close();
+    }
+
+    @Test
+    public void close_closesDetailWriter() throws IOException {
+        Writer detailWriter = mock(Writer.class);
+        ProcessorLogger tested = new ProcessorLogger(messager, LogLevel.DEBUG, detailWriter);
+
+        tested.debug("Generated %s", "Foo.java");
+        tested.close();
+        tested.debug("Generated %s", "Bar.java");
+
+        verify(detailWriter).write("Generated Foo.java\n");
+        verify(detailWriter).close();
+        verify(messager).printMessage(Kind.WARNING, "Generated Bar.java");
+    }
+
+    @Test
+    public void warning_disabledAtErrorLevel() {
+        ProcessorLogger tested = new ProcessorLogger(messager, LogLevel.ERROR, null);
+
+        tested.warning("Template root directory not defined");
+        tested.error("Error while processing generator method", null);
+
+        verify(messager, never()).printMessage(Kind.WARNING, "Template root directory not defined");
+        verify(messager).printMessage(Kind.ERROR, "Error while processing generator method");
+    }
+
+    @Test
+    public void parse_unknownLevel() {
+        assertThat(LogLevel.parse("debug", LogLevel.INFO), equalTo(LogLevel.DEBUG));
+        assertThat(LogLevel.parse("verbose", LogLevel.INFO), equalTo(LogLevel.INFO));
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import genftw.core.metrics.Phase;
+import genftw.core.metrics.PhaseEvent;
+import genftw.core.metrics.ProcessorMetrics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ElementFinderTest {
+
+    @Mock
+    Elements elementUtils;
+
+    @Mock
+    Types typeUtils;
+
+    @Mock
+    ElementMatcher elementMatcher;
+
+    @Mock
+    ProcessorMetrics metrics;
+
+    MatchDefinition def;
+
+    TypeElement superType;
+    TypeElement firstType;
+    TypeElement secondType;
+    ExecutableElement method;
+
+    @Before
+    public void setUp() {
+        PackageElement pkg = mock(PackageElement.class);
+        Name pkgName = mock(Name.class);
+        when(pkgName.toString()).thenReturn("com.acme");
+        when(pkg.getQualifiedName()).thenReturn(pkgName);
+        when(elementUtils.getPackageOf(any(Element.class))).thenReturn(pkg);
+        when(metrics.beginEvent(any(Phase.class))).thenReturn(mock(PhaseEvent.class));
+        def = ElementMatcherTest.definition();
+
+        superType = mockType(null);
+        firstType = mockType(superType);
+        secondType = mockType(superType);
+
+        method = mock(ExecutableElement.class);
+        when(method.getKind()).thenReturn(ElementKind.METHOD);
+        when(method.getReturnType()).thenReturn(mock(TypeMirror.class));
+        doReturn(Arrays.asList(method)).when(firstType).getEnclosedElements();
+    }
+
+    @Test
+    public void scan_remembersTypesOnly() {
+        ElementFinder tested = new ElementFinder(elementUtils, typeUtils, elementMatcher, metrics, ".*", false,
+                ElementTraversal.Order.DEPTH_FIRST);
+
+        tested.scan(roots(firstType, secondType), Collections.singleton(def));
+
+        verify(elementMatcher, times(1)).matches(superType, def);
+        verify(elementMatcher, times(1)).matches(method, def);
+        assertThat(tested.getScannedElementCount(), equalTo(3));
+    }
+
+    @Test
+    public void scan_dropScanStatePerRootElement() {
+        ElementFinder tested = new ElementFinder(elementUtils, typeUtils, elementMatcher, metrics, ".*", true,
+                ElementTraversal.Order.DEPTH_FIRST);
+
+        tested.scan(roots(firstType, secondType), Collections.singleton(def));
+
+        verify(elementMatcher, times(2)).matches(superType, def);
+        assertThat(tested.getScannedElementCount(), equalTo(2));
+    }
+
+    @Test
+    public void scan_breadthFirst() {
+        ElementFinder tested = new ElementFinder(elementUtils, typeUtils, elementMatcher, metrics, ".*", false,
+                ElementTraversal.Order.BREADTH_FIRST);
+
+        tested.scan(roots(firstType), Collections.singleton(def));
+
+        InOrder inOrder = inOrder(elementMatcher);
+        inOrder.verify(elementMatcher).matches(firstType, def);
+        inOrder.verify(elementMatcher).matches(superType, def);
+        inOrder.verify(elementMatcher).matches(method, def);
+    }
+
+    @Test
+    public void scan_deepHierarchy() {
+        TypeElement type = superType;
+        for (int i = 0; i < 2000; i++) {
+            type = mockType(type);
+        }
+
+        ElementFinder tested = new ElementFinder(elementUtils, typeUtils, elementMatcher, metrics, ".*", false,
+                ElementTraversal.Order.DEPTH_FIRST);
+
+        tested.scan(roots(type), Collections.singleton(def));
+
+        verify(elementMatcher, times(1)).matches(superType, def);
+        assertThat(tested.getScannedElementCount(), equalTo(2001));
+    }
+
+    @Test
+    public void scan_skipsPackagesOutOfScope() {
+        MatchDefinition scopedDef = ElementMatcherTest.definition("packages", new String[] { "com.acme.api" });
+
+        ElementFinder tested = new ElementFinder(elementUtils, typeUtils, elementMatcher, metrics, ".*", false,
+                ElementTraversal.Order.DEPTH_FIRST);
+
+        tested.scan(roots(firstType), Collections.singleton(scopedDef));
+
+        verify(elementMatcher, never()).matches(any(Element.class), any(MatchDefinition.class));
+        verify(firstType, never()).getEnclosedElements();
+    }
+
+    Set<Element> roots(Element... elements) {
+        return new LinkedHashSet<Element>(Arrays.asList(elements));
+    }
+
+    TypeElement mockType(TypeElement superclass) {
+        TypeElement type = mock(TypeElement.class);
+        TypeMirror superclassMirror = mock(TypeMirror.class);
+
+        when(type.getKind()).thenReturn(ElementKind.CLASS);
+        when(type.getSuperclass()).thenReturn(superclassMirror);
+        doReturn(superclass).when(typeUtils).asElement(superclassMirror);
+
+        return type;
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import genftw.api.Criteria;
+import genftw.api.ElementPredicate;
+import genftw.api.Where;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.Name;
+import javax.lang.model.util.Elements;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ElementMatcherTest {
+
+    @Mock
+    Elements elementUtils;
+
+    @Mock
+    MetaDataMatcher metaDataMatcher;
+
+    ElementMatcher tested;
+
+    @Before
+    public void setUp() {
+        tested = new ElementMatcher(elementUtils, metaDataMatcher);
+    }
+
+    @Test
+    public void matches_anyOf() {
+        MatchDefinition def = definition(
+                "kind", new ElementKind[] { ElementKind.CLASS },
+                "anyOf", new Criteria[] {
+                        annotation(Criteria.class, "simpleNameMatches", "Person"),
+                        annotation(Criteria.class, "modifiers", new Modifier[] { Modifier.ABSTRACT }) });
+
+        assertThat(tested.matches(mockElement(ElementKind.CLASS, "Person"), def), equalTo(true));
+        assertThat(tested.matches(mockElement(ElementKind.CLASS, "Order", Modifier.ABSTRACT), def), equalTo(true));
+        assertThat(tested.matches(mockElement(ElementKind.CLASS, "Order"), def), equalTo(false));
+        assertThat(tested.matches(mockElement(ElementKind.FIELD, "Person"), def), equalTo(false));
+    }
+
+    @Test
+    public void matches_noneOf() {
+        MatchDefinition def = definition(
+                "noneOf", new Criteria[] {
+                        annotation(Criteria.class, "modifiers", new Modifier[] { Modifier.ABSTRACT }) });
+
+        assertThat(tested.matches(mockElement(ElementKind.CLASS, "Person"), def), equalTo(true));
+        assertThat(tested.matches(mockElement(ElementKind.CLASS, "Order", Modifier.ABSTRACT), def), equalTo(false));
+    }
+
+    @Test
+    public void matches_negatedCriteria() {
+        MatchDefinition def = definition(
+                "anyOf", new Criteria[] {
+                        annotation(Criteria.class, "kind", new ElementKind[] { ElementKind.CLASS }, "negate", true),
+                        annotation(Criteria.class, "simpleNameMatches", "Person") });
+
+        assertThat(tested.matches(mockElement(ElementKind.FIELD, "name"), def), equalTo(true));
+        assertThat(tested.matches(mockElement(ElementKind.CLASS, "Person"), def), equalTo(true));
+        assertThat(tested.matches(mockElement(ElementKind.CLASS, "Order"), def), equalTo(false));
+    }
+
+    @Test
+    public void matches_filterLoadedOnce() {
+        ElementPredicateLoader predicateLoader = mock(ElementPredicateLoader.class);
+        ElementPredicate filter = mock(ElementPredicate.class);
+        when(predicateLoader.load("com.acme.EntityFilter")).thenReturn(filter);
+        tested = new ElementMatcher(elementUtils, metaDataMatcher, null, predicateLoader);
+
+        MatchDefinition def = definition("filter", "com.acme.EntityFilter");
+        Element person = mockElement(ElementKind.CLASS, "Person");
+        when(filter.matches(person)).thenReturn(true);
+
+        assertThat(tested.matches(person, def), equalTo(true));
+        assertThat(tested.matches(mockElement(ElementKind.CLASS, "Order"), def), equalTo(false));
+        verify(predicateLoader, times(1)).load("com.acme.EntityFilter");
+    }
+
+    @Test
+    public void matches_evaluatesCheapConditionsFirst() {
+        MatchDefinition def = definition(
+                "metaData", "entity",
+                "kind", new ElementKind[] { ElementKind.CLASS });
+        Element field = mockElement(ElementKind.FIELD, "name");
+
+        assertThat(tested.matches(field, def), equalTo(false));
+        verify(metaDataMatcher, never()).matches(field, "entity");
+    }
+
+    @Test
+    public void reorder_movesSelectiveConditionFirst() {
+        MatchCondition permissive = new KindCondition(ElementKind.values());
+        MatchCondition selective = new KindCondition(new ElementKind[] { ElementKind.CLASS });
+        ConditionGroup group = new ConditionGroup(null, false, Arrays.asList(permissive, selective));
+        Element field = mockElement(ElementKind.FIELD, "name");
+
+        for (int i = 0; i < ConditionGroup.REORDER_INTERVAL; i++) {
+            group.test(field, tested);
+        }
+
+        assertThat(group.getConditions()[0], sameInstance(selective));
+    }
+
+    @Test
+    public void clearCaches_keepsCompiledDefinition() {
+        MatchDefinition def = definition("kind", new ElementKind[] { ElementKind.CLASS });
+        MatchCondition kindCondition = def.getConditions().getConditions()[0];
+
+        tested.matches(mockElement(ElementKind.FIELD, "name"), def);
+        tested.clearCaches();
+        tested.matches(mockElement(ElementKind.FIELD, "name"), def);
+
+        assertThat(def.getConditions().getConditions()[0], sameInstance(kindCondition));
+        assertThat(kindCondition.getPassRate(), equalTo(0.25));
+    }
+
+    static Element mockElement(ElementKind kind, String simpleName, Modifier... modifiers) {
+        Element element = mock(Element.class);
+        Name name = mock(Name.class);
+
+        when(name.toString()).thenReturn(simpleName);
+        when(element.getKind()).thenReturn(kind);
+        when(element.getSimpleName()).thenReturn(name);
+        doReturn(modifiers.length > 0 ? EnumSet.of(modifiers[0], modifiers) : Collections.emptySet())
+                .when(element).getModifiers();
+
+        return element;
+    }
+
+    /**
+     * Creates match definition with given attribute name and value pairs, using default values for other attributes.
+     */
+    static MatchDefinition definition(Object... nameValuePairs) {
+        return new MatchDefinition(annotation(Where.class, nameValuePairs));
+    }
+
+    /**
+     * Creates annotation with given attribute name and value pairs, using default values for other attributes.
+     */
+    static <A extends Annotation> A annotation(final Class<A> type, Object... nameValuePairs) {
+        final Map<String, Object> values = new HashMap<String, Object>();
+
+        for (int i = 0; i < nameValuePairs.length; i += 2) {
+            values.put((String) nameValuePairs[i], nameValuePairs[i + 1]);
+        }
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+
+                        if ("annotationType".equals(name)) {
+                            return type;
+                        } else if ("hashCode".equals(name)) {
+                            return values.hashCode();
+                        } else if ("equals".equals(name)) {
+                            return proxy == args[0];
+                        } else if ("toString".equals(name)) {
+                            return "@" + type.getName() + values;
+                        }
+
+                        return values.containsKey(name) ? values.get(name) : method.getDefaultValue();
+                    }
+                }));
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import genftw.api.GroupBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ElementPartitionerTest {
+
+    @Mock
+    Elements elementUtils;
+
+    @Mock
+    MetaDataMatcher metaDataMatcher;
+
+    @InjectMocks
+    ElementPartitioner tested;
+
+    @Test
+    public void partition_byEnclosingType() {
+        TypeElement outer = mockType("com.acme.Outer", null);
+        TypeElement inner = mockType("com.acme.Outer.Inner", outer);
+        Element field = mockElement(ElementKind.FIELD, inner);
+        Element method = mockElement(ElementKind.METHOD, outer);
+
+        SortedMap<String, List<Element>> result = tested.partition(Arrays.asList(field, outer, method),
+                GroupBy.ENCLOSING_TYPE, "");
+
+        assertThat(result.keySet().toArray(), equalTo(new Object[] { "com.acme.Outer", "com.acme.Outer.Inner" }));
+        assertThat(result.get("com.acme.Outer"), equalTo(Arrays.asList(outer, method)));
+        assertThat(result.get("com.acme.Outer.Inner"), equalTo(Arrays.asList(field)));
+    }
+
+    @Test
+    public void partition_byMetaDataProperty_skipsElementsWithoutValue() {
+        Element first = mock(Element.class);
+        Element second = mock(Element.class);
+        when(metaDataMatcher.getPropertyValue(first, "layer")).thenReturn("service");
+
+        SortedMap<String, List<Element>> result = tested.partition(Arrays.asList(first, second),
+                GroupBy.META_DATA_PROPERTY, "layer");
+
+        assertThat(result.size(), equalTo(1));
+        assertThat(result.get("service"), equalTo(Arrays.asList(first)));
+    }
+
+    @Test
+    public void shard_byQualifiedNameHash() {
+        TypeElement first = mockType("com.acme.A", null);
+        TypeElement second = mockType("com.acme.B", null);
+        TypeElement third = mockType("com.acme.C", null);
+
+        List<List<Element>> result = tested.shard(Arrays.<Element> asList(third, first, second), 2);
+
+        assertThat(result.size(), equalTo(2));
+        assertThat(result.get(0), equalTo(Arrays.<Element> asList(first, third)));
+        assertThat(result.get(1), equalTo(Arrays.<Element> asList(second)));
+    }
+
+    @Test
+    public void shard_addingElementChangesSingleShard() {
+        List<Element> elements = new ArrayList<Element>();
+        for (int i = 0; i < 20; i++) {
+            elements.add(mockType("com.acme.T" + i, null));
+        }
+
+        List<List<Element>> before = tested.shard(elements, 4);
+
+        elements.add(0, mockType("com.acme.New", null));
+        List<List<Element>> after = tested.shard(elements, 4);
+
+        assertThat(after.size(), equalTo(before.size()));
+
+        int changedShards = 0;
+        for (int i = 0; i < before.size(); i++) {
+            if (!before.get(i).equals(after.get(i))) {
+                changedShards++;
+            }
+        }
+
+        assertThat(changedShards, equalTo(1));
+    }
+
+    @Test
+    public void shard_noElements() {
+        List<List<Element>> result = tested.shard(Collections.<Element> emptyList(), 2);
+
+        assertThat(result.size(), equalTo(1));
+        assertThat(result.get(0).isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void getShardCount_powerOfTwo() {
+        assertThat(tested.getShardCount(0, 4), equalTo(1));
+        assertThat(tested.getShardCount(4, 4), equalTo(1));
+        assertThat(tested.getShardCount(5, 4), equalTo(2));
+        assertThat(tested.getShardCount(20, 4), equalTo(8));
+    }
+
+    TypeElement mockType(String qualifiedName, Element enclosing) {
+        TypeElement type = mock(TypeElement.class);
+        Name name = mock(Name.class);
+
+        when(name.toString()).thenReturn(qualifiedName);
+        when(type.getQualifiedName()).thenReturn(name);
+        when(type.getKind()).thenReturn(ElementKind.CLASS);
+        when(type.getEnclosingElement()).thenReturn(enclosing);
+
+        return type;
+    }
+
+    Element mockElement(ElementKind kind, Element enclosing) {
+        Element element = mock(Element.class);
+
+        when(element.getKind()).thenReturn(kind);
+        when(element.getEnclosingElement()).thenReturn(enclosing);
+
+        return element;
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import genftw.api.ElementPredicate;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ElementPredicateLoaderTest {
+
+    @Mock
+    ProcessingEnvironment processingEnv;
+
+    ElementPredicateLoader tested;
+
+    @Before
+    public void setUp() {
+        tested = new ElementPredicateLoader(getClass().getClassLoader(), processingEnv);
+    }
+
+    @Test
+    public void load_cachesPredicateInstance() {
+        ElementPredicate result = tested.load(AnyElement.class.getName());
+
+        assertThat(result, instanceOf(AnyElement.class));
+        assertThat(tested.load(AnyElement.class.getName()), sameInstance(result));
+    }
+
+    @Test
+    public void load_passesProcessingEnvironment() {
+        ElementPredicate result = tested.load(EnvironmentAware.class.getName());
+
+        assertThat(((EnvironmentAware) result).processingEnv, sameInstance(processingEnv));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void load_notElementPredicate() {
+        tested.load(String.class.getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void load_unknownClass() {
+        tested.load("com.acme.UnknownPredicate");
+    }
+
+    public static class AnyElement implements ElementPredicate {
+
+        @Override
+        public boolean matches(Element element) {
+            return true;
+        }
+
+    }
+
+    public static class EnvironmentAware implements ElementPredicate {
+
+        final ProcessingEnvironment processingEnv;
+
+        public EnvironmentAware(ProcessingEnvironment processingEnv) {
+            this.processingEnv = processingEnv;
+        }
+
+        @Override
+        public boolean matches(Element element) {
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import static genftw.core.match.ElementMatcherTest.annotation;
+import static genftw.core.match.ElementMatcherTest.definition;
+import static genftw.core.match.ElementMatcherTest.mockElement;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import genftw.api.Criteria;
+import genftw.api.Where;
+
+import java.util.Arrays;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.util.Elements;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MatchProfilerTest {
+
+    @Mock
+    Elements elementUtils;
+
+    @Mock
+    MetaDataMatcher metaDataMatcher;
+
+    MatchProfiler tested = new MatchProfiler();
+
+    @Test
+    public void predicateTested_countsCandidatesAndPasses() {
+        ElementMatcher matcher = new ElementMatcher(elementUtils, metaDataMatcher, tested);
+        MatchDefinition def = definition(
+                "kind", new ElementKind[] { ElementKind.CLASS },
+                "simpleNameMatches", "P.*");
+
+        matcher.matches(mockElement(ElementKind.CLASS, "Person"), def);
+        matcher.matches(mockElement(ElementKind.CLASS, "Order"), def);
+        matcher.matches(mockElement(ElementKind.FIELD, "price"), def);
+
+        MatchProfiler.DefinitionProfile profile = tested.getProfile(def.getWhere());
+        assertThat(profile.candidates, equalTo(3L));
+        assertThat(profile.matches, equalTo(1L));
+        assertThat(profile.predicateTests[MatchPredicate.KIND.ordinal()], equalTo(3L));
+        assertThat(profile.predicatePasses[MatchPredicate.KIND.ordinal()], equalTo(2L));
+        // Name is not tested once kind doesn't match
+        assertThat(profile.predicateTests[MatchPredicate.SIMPLE_NAME.ordinal()], equalTo(2L));
+        assertThat(profile.predicatePasses[MatchPredicate.SIMPLE_NAME.ordinal()], equalTo(1L));
+        assertThat(profile.predicateTests[MatchPredicate.MODIFIERS.ordinal()], equalTo(0L));
+    }
+
+    @Test
+    public void formatReport_rankedByCumulativeTime() {
+        Where fast = definition("simpleNameMatches", "Fast").getWhere();
+        Where slow = definition("simpleNameMatches", "Slow").getWhere();
+        Where medium = definition("simpleNameMatches", "Medium").getWhere();
+
+        tested.candidateTested(fast, true, 1000000L);
+        tested.candidateTested(slow, false, 5000000L);
+        tested.candidateTested(slow, true, 2000000L);
+        tested.predicateTested(slow, MatchPredicate.SIMPLE_NAME, true, 1500000L);
+        tested.candidateTested(medium, false, 3000000L);
+
+        String[] lines = tested.formatReport().split(String.format("%n"));
+
+        assertThat(Arrays.asList(lines), equalTo(Arrays.asList(
+                "Match profile (ranked by cumulative time)",
+                "   #  time [ms]     tested   matched    pass  definition",
+                String.format("   1 %10.3f          2         1 %6.1f%%  @Where(simpleNameMatches=Slow)", 7.0, 50.0),
+                String.format("     %10.3f          1         1 %6.1f%%    - simpleName", 1.5, 100.0),
+                String.format("   2 %10.3f          1         0 %6.1f%%  @Where(simpleNameMatches=Medium)",
+                        3.0, 0.0),
+                String.format("   3 %10.3f          1         1 %6.1f%%  @Where(simpleNameMatches=Fast)", 1.0, 100.0))));
+    }
+
+    @Test
+    public void getUnrestrictedDefinitions() {
+        Where unrestricted = definition().getWhere();
+        Where restricted = definition("modifiers", new Modifier[] { Modifier.PUBLIC }).getWhere();
+
+        tested.candidateTested(unrestricted, true, 0);
+        tested.candidateTested(restricted, false, 0);
+
+        assertThat(tested.getUnrestrictedDefinitions(), equalTo(Arrays.asList(unrestricted)));
+    }
+
+    @Test
+    public void reset_clearsProfiles() {
+        Where unrestricted = definition().getWhere();
+        tested.candidateTested(unrestricted, true, 0);
+
+        tested.reset();
+
+        assertThat(tested.getUnrestrictedDefinitions().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void describe_listsRestrictionsOnly() {
+        assertThat(MatchProfiler.describe(definition().getWhere()), equalTo("@Where()"));
+        assertThat(MatchProfiler.describe(definition(
+                "kind", new ElementKind[] { ElementKind.CLASS },
+                "metaData", "entity",
+                "anyOf", new Criteria[] {
+                        annotation(Criteria.class, "simpleNameMatches", "Person"),
+                        annotation(Criteria.class, "simpleNameMatches", "Order") }).getWhere()),
+                equalTo("@Where(kind=[CLASS] metaData=entity anyOf=2 criteria)"));
+    }
+
+}
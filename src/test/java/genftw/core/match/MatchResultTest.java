@@ -0,0 +1,94 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.lang.model.element.Element;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MatchResultTest {
+
+    ElementTable table;
+    Element first;
+    Element second;
+    Element third;
+
+    @Before
+    public void setUp() {
+        table = new ElementTable();
+        first = mock(Element.class);
+        second = mock(Element.class);
+        third = mock(Element.class);
+    }
+
+    @Test
+    public void addElement_sharesElementTable() {
+        MatchResult firstResult = new MatchResult(table);
+        MatchResult secondResult = new MatchResult(table);
+
+        firstResult.addElement(first);
+        firstResult.addElement(second);
+        secondResult.addElement(second);
+        secondResult.addElement(third);
+
+        assertThat(table.size(), equalTo(3));
+        assertThat(secondResult.contains(second), equalTo(true));
+        assertThat(secondResult.contains(first), equalTo(false));
+    }
+
+    @Test
+    public void addElement_ignoresDuplicates() {
+        MatchResult tested = new MatchResult(table);
+
+        tested.addElement(first);
+        tested.addElement(second);
+        tested.addElement(first);
+
+        assertThat(tested.size(), equalTo(2));
+        assertThat(tested.get(1), equalTo(second));
+    }
+
+    @Test
+    public void iterator_keepsFirstMatchOrder() {
+        MatchResult other = new MatchResult(table);
+        MatchResult tested = new MatchResult(table);
+
+        other.addElement(third);
+        tested.addElement(second);
+        tested.addElement(third);
+        tested.addElement(first);
+
+        List<Element> iterated = new ArrayList<Element>();
+        for (Element e : tested) {
+            iterated.add(e);
+        }
+
+        assertThat(iterated, equalTo(Arrays.asList(third, second, first)));
+        assertThat(tested.get(0), equalTo(third));
+        assertThat(tested.get(2), equalTo(first));
+    }
+
+}
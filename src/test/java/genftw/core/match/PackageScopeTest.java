@@ -0,0 +1,53 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class PackageScopeTest {
+
+    @Test
+    public void includes_subpackages() {
+        PackageScope tested = new PackageScope(new String[] { "com.acme" });
+
+        assertThat(tested.includes("com.acme"), equalTo(true));
+        assertThat(tested.includes("com.acme.api"), equalTo(true));
+        assertThat(tested.includes("com.acmex"), equalTo(false));
+        assertThat(tested.includes("org.acme"), equalTo(false));
+    }
+
+    @Test
+    public void includes_excludedPackages() {
+        PackageScope tested = new PackageScope(new String[] { "com.acme", "!com.acme.internal" });
+
+        assertThat(tested.includes("com.acme.api"), equalTo(true));
+        assertThat(tested.includes("com.acme.internal"), equalTo(false));
+        assertThat(tested.includes("com.acme.internal.impl"), equalTo(false));
+    }
+
+    @Test
+    public void includes_exclusionsOnly() {
+        PackageScope tested = new PackageScope(new String[] { "!com.acme.internal" });
+
+        assertThat(tested.includes("org.acme"), equalTo(true));
+        assertThat(tested.includes("com.acme.internal"), equalTo(false));
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.match;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TypeHierarchyIndexTest {
+
+    @Mock
+    Elements elementUtils;
+
+    TypeHierarchyIndex tested;
+
+    TypeElement iface;
+    TypeElement superclass;
+    TypeElement type;
+
+    @Before
+    public void setUp() {
+        tested = new TypeHierarchyIndex(elementUtils);
+
+        iface = mockType("com.acme.Named", null);
+        superclass = mockType("com.acme.Entity", null);
+        type = mockType("com.acme.Person", superclass, iface);
+    }
+
+    @Test
+    public void getSupertypeNames_transitiveClosure() {
+        TypeElement subtype = mockType("com.acme.Employee", type);
+
+        assertThat(tested.getSupertypeNames(subtype), equalTo(names(
+                "com.acme.Employee", "com.acme.Person", "com.acme.Entity", "com.acme.Named")));
+    }
+
+    @Test
+    public void getSupertypeNames_interfaceSubtypeOfObject() {
+        TypeElement subinterface = mockType("com.acme.FullyNamed", null, iface);
+        when(iface.getKind()).thenReturn(ElementKind.INTERFACE);
+        when(subinterface.getKind()).thenReturn(ElementKind.INTERFACE);
+
+        assertThat(tested.getSupertypeNames(subinterface), equalTo(names(
+                "com.acme.FullyNamed", "com.acme.Named", "java.lang.Object")));
+        assertThat(tested.isSubtype(subinterface, names("java.lang.Object"), false), equalTo(true));
+    }
+
+    @Test
+    public void getSupertypeNames_computedOnce() {
+        tested.getSupertypeNames(type);
+        tested.getSupertypeNames(type);
+
+        verify(type, times(1)).getSuperclass();
+    }
+
+    @Test
+    public void isSubtype_methodReturnType() {
+        ExecutableElement method = mock(ExecutableElement.class);
+        when(method.getKind()).thenReturn(ElementKind.METHOD);
+        doReturn(type.asType()).when(method).getReturnType();
+
+        assertThat(tested.isSubtype(method, names("com.acme.Named"), false), equalTo(true));
+        assertThat(tested.isSubtype(method, names("com.acme.Named", "com.acme.Other"), false), equalTo(false));
+    }
+
+    @Test
+    public void isSubtype_boxPrimitives() {
+        TypeElement number = mockType("java.lang.Number", null);
+        TypeElement integer = mockType("java.lang.Integer", number);
+        when(elementUtils.getTypeElement("java.lang.Integer")).thenReturn(integer);
+
+        ExecutableElement method = mock(ExecutableElement.class);
+        TypeMirror intType = mock(TypeMirror.class);
+        when(method.getKind()).thenReturn(ElementKind.METHOD);
+        when(intType.getKind()).thenReturn(TypeKind.INT);
+        doReturn(intType).when(method).getReturnType();
+
+        assertThat(tested.isSubtype(method, names("java.lang.Number"), false), equalTo(false));
+        assertThat(tested.isSubtype(method, names("java.lang.Number"), true), equalTo(true));
+    }
+
+    Set<String> names(String... names) {
+        return new HashSet<String>(Arrays.asList(names));
+    }
+
+    TypeElement mockType(String qualifiedName, TypeElement superclass, TypeElement... interfaces) {
+        TypeElement result = mock(TypeElement.class);
+        Name name = mock(Name.class);
+        DeclaredType declaredType = mock(DeclaredType.class);
+
+        when(name.toString()).thenReturn(qualifiedName);
+        when(result.getKind()).thenReturn(ElementKind.CLASS);
+        when(result.getQualifiedName()).thenReturn(name);
+        when(result.asType()).thenReturn(declaredType);
+        when(declaredType.getKind()).thenReturn(TypeKind.DECLARED);
+        when(declaredType.asElement()).thenReturn(result);
+
+        if (superclass != null) {
+            doReturn(superclass.asType()).when(result).getSuperclass();
+        } else {
+            TypeMirror none = mock(TypeMirror.class);
+            when(none.getKind()).thenReturn(TypeKind.NONE);
+            doReturn(none).when(result).getSuperclass();
+        }
+
+        doReturn(interfaces.length > 0 ? interfaceTypes(interfaces) : Collections.emptyList())
+                .when(result).getInterfaces();
+
+        return result;
+    }
+
+    List<TypeMirror> interfaceTypes(TypeElement... interfaces) {
+        List<TypeMirror> result = new ArrayList<TypeMirror>();
+
+        for (TypeElement i : interfaces) {
+            result.add(i.asType());
+        }
+
+        return result;
+    }
+
+}
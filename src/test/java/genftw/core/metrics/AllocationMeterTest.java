@@ -0,0 +1,53 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+
+import java.lang.management.ThreadMXBean;
+
+import org.junit.Test;
+
+public class AllocationMeterTest {
+
+    byte[] allocated;
+
+    @Test
+    public void currentThreadAllocatedBytes_countsAllocations() {
+        AllocationMeter tested = new AllocationMeter();
+        assumeTrue(tested.isSupported());
+
+        long before = tested.currentThreadAllocatedBytes();
+        allocated = new byte[1 << 20];
+        long after = tested.currentThreadAllocatedBytes();
+
+        assertTrue(after - before >= allocated.length);
+    }
+
+    @Test
+    public void currentThreadAllocatedBytes_extensionNotAvailable() {
+        AllocationMeter tested = new AllocationMeter(mock(ThreadMXBean.class));
+
+        assertThat(tested.isSupported(), equalTo(false));
+        assertThat(tested.currentThreadAllocatedBytes(), equalTo(AllocationMeter.UNSUPPORTED));
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.matchers.JUnitMatchers.containsString;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProcessorMetricsTest {
+
+    @Mock
+    AllocationMeter allocationMeter;
+
+    @Mock
+    FlightEvents flightEvents;
+
+    ProcessorMetrics tested;
+
+    @Before
+    public void setUp() {
+        when(allocationMeter.isSupported()).thenReturn(true);
+        tested = new ProcessorMetrics(allocationMeter, flightEvents);
+    }
+
+    @Test
+    public void recordPhase_accumulatesWithinRound() {
+        tested.beginRound();
+        tested.recordPhase(Phase.RENDER, 2000000L, 100);
+        tested.recordPhase(Phase.RENDER, 3500000L, 50);
+        tested.recordPhase(Phase.WRITE, 1000000L, 10);
+        tested.endRound();
+
+        assertThat(tested.toJson(), containsString(
+                "\"render\": { \"count\": 2, \"millis\": 5, \"allocatedBytes\": 150 }"));
+        assertThat(tested.toJson(), containsString(
+                "\"write\": { \"count\": 1, \"millis\": 1, \"allocatedBytes\": 10 }"));
+    }
+
+    @Test
+    public void beginRound_resetsPhases() {
+        tested.beginRound();
+        tested.recordPhase(Phase.RENDER, 2000000L, 100);
+        tested.endRound();
+        tested.beginRound();
+        tested.endRound();
+
+        String secondRound = tested.toJson().split("\"round\": 2")[1];
+        assertThat(secondRound, containsString(
+                "\"render\": { \"count\": 0, \"millis\": 0, \"allocatedBytes\": 0 }"));
+    }
+
+    @Test
+    public void start_measuresAllocatedBytes() {
+        when(allocationMeter.currentThreadAllocatedBytes()).thenReturn(1000L, 1600L);
+
+        tested.beginRound();
+        tested.start(Phase.TEMPLATE_LOAD).stop();
+        tested.endRound();
+
+        assertThat(withoutMillis(tested.toJson()), containsString("\"templateLoad\": { \"count\": 1, \"millis\": 0, "
+                + "\"allocatedBytes\": 600 }"));
+    }
+
+    @Test
+    public void start_allocationNotSupported() {
+        when(allocationMeter.isSupported()).thenReturn(false);
+        when(allocationMeter.currentThreadAllocatedBytes()).thenReturn(AllocationMeter.UNSUPPORTED);
+
+        tested.beginRound();
+        tested.start(Phase.TEMPLATE_LOAD).stop();
+        tested.endRound();
+
+        assertThat(tested.toJson(), containsString("\"allocationMeasured\": false"));
+        assertThat(withoutMillis(tested.toJson()), containsString("\"templateLoad\": { \"count\": 1, \"millis\": 0, "
+                + "\"allocatedBytes\": null }"));
+    }
+
+    @Test
+    public void start_allocationUnsupportedAtPhaseEnd() {
+        when(allocationMeter.currentThreadAllocatedBytes()).thenReturn(1000L, AllocationMeter.UNSUPPORTED);
+
+        tested.beginRound();
+        tested.start(Phase.TEMPLATE_LOAD).stop();
+        tested.endRound();
+
+        assertThat(withoutMillis(tested.toJson()), containsString("\"templateLoad\": { \"count\": 1, \"millis\": 0, "
+                + "\"allocatedBytes\": 0 }"));
+    }
+
+    @Test
+    public void matchesFound_perDefinition() {
+        tested.beginRound();
+        tested.matchesFound("@Where(kind=[CLASS])", 3);
+        tested.matchesFound("@Where(metaData=\"entity\")", 0);
+        tested.endRound();
+        tested.beginRound();
+        tested.endRound();
+
+        String[] rounds = tested.toJson().split("\"round\": 2");
+        assertThat(rounds[0], containsString("      \"matches\": [\n"
+                + "        { \"definition\": \"@Where(kind=[CLASS])\", \"count\": 3 },\n"
+                + "        { \"definition\": \"@Where(metaData=\\\"entity\\\")\", \"count\": 0 }\n"
+                + "      ],\n"));
+        assertThat(rounds[1], containsString("      \"matches\": [],\n"));
+        verify(flightEvents).matchesFound("@Where(kind=[CLASS])", 3);
+    }
+
+    @Test
+    public void toJson_format() {
+        tested.beginRound();
+        tested.generatorMethodsFound(2);
+        tested.elementVisited();
+        tested.matchTested();
+        tested.matchesFound("def", 1);
+        tested.templateRendered();
+        tested.outputWritten(42);
+        tested.templateCacheMiss();
+        tested.elementsRetained(1, 1);
+        tested.recordPhase(Phase.RENDER, 4000000L, 256);
+        tested.endRound();
+
+        assertThat(withoutMillis(tested.toJson()), equalTo("{\n"
+                + "  \"allocationMeasured\": true,\n"
+                + "  \"rounds\": [\n"
+                + "    {\n"
+                + "      \"round\": 1,\n"
+                + "      \"elapsedMillis\": 0,\n"
+                + "      \"phases\": {\n"
+                + "        \"methodScan\": { \"count\": 0, \"millis\": 0, \"allocatedBytes\": 0 },\n"
+                + "        \"elementScan\": { \"count\": 0, \"millis\": 0, \"allocatedBytes\": 0 },\n"
+                + "        \"templateLoad\": { \"count\": 0, \"millis\": 0, \"allocatedBytes\": 0 },\n"
+                + "        \"render\": { \"count\": 1, \"millis\": 0, \"allocatedBytes\": 256 },\n"
+                + "        \"write\": { \"count\": 0, \"millis\": 0, \"allocatedBytes\": 0 }\n"
+                + "      },\n"
+                + "      \"generatorMethods\": 2,\n"
+                + "      \"elementsVisited\": 1,\n"
+                + "      \"matchTests\": 1,\n"
+                + "      \"scannedElementsRetained\": 1,\n"
+                + "      \"foundElementsRetained\": 1,\n"
+                + "      \"matches\": [\n"
+                + "        { \"definition\": \"def\", \"count\": 1 }\n"
+                + "      ],\n"
+                + "      \"templatesRendered\": 1,\n"
+                + "      \"outputsWritten\": 1,\n"
+                + "      \"outputChars\": 42,\n"
+                + "      \"templateCacheHits\": 0,\n"
+                + "      \"templateCacheMisses\": 1\n"
+                + "    }\n"
+                + "  ]\n"
+                + "}\n"));
+    }
+
+    @Test
+    public void appendJsonString_escapesSpecialCharacters() {
+        StringBuilder sb = new StringBuilder();
+
+        ProcessorMetrics.appendJsonString(sb, "a\"b\\c\nd");
+
+        assertThat(sb.toString(), equalTo("\"a\\\"b\\\\c\\u000ad\""));
+    }
+
+    @Test
+    public void roundSummary_format() {
+        tested.beginRound();
+        tested.generatorMethodsFound(3);
+        tested.elementVisited();
+        tested.elementVisited();
+        tested.matchTested();
+        tested.templateRendered();
+        tested.outputWritten(120);
+        tested.recordPhase(Phase.ELEMENT_SCAN, 7000000L, 0);
+        tested.recordPhase(Phase.RENDER, 2000000L, 0);
+
+        assertThat(tested.roundSummary(12000000L), equalTo("GenFTW round 1: 3 generator methods, "
+                + "2 elements visited, 1 match tests, 1 templates rendered, 120 chars written in 12 ms "
+                + "[methodScan 0 ms, elementScan 7 ms, templateLoad 0 ms, render 2 ms, write 0 ms]"));
+    }
+
+    /**
+     * Zeroes measured times in given report, which are not deterministic.
+     */
+    String withoutMillis(String json) {
+        return json.replaceAll("(\"millis\"|\"elapsedMillis\"): \\d+", "$1: 0");
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.modelmbean.RequiredModelMBean;
+
+import org.junit.Test;
+
+public class ProcessorStatisticsTest {
+
+    ProcessorStatistics tested = new ProcessorStatistics();
+
+    @Test
+    public void roundCompleted_accumulatesTotalsAndLastRun() throws AttributeNotFoundException {
+        tested.runStarted();
+        completeRound(10, 3000000L);
+        tested.runStarted();
+        completeRound(5, 2500000L);
+
+        assertThat(tested.getAttribute("TotalRuns"), equalTo((Object) 2L));
+        assertThat(tested.getAttribute("TotalElementsVisited"), equalTo((Object) 15L));
+        assertThat(tested.getAttribute("LastRunElementsVisited"), equalTo((Object) 5L));
+        assertThat(tested.getAttribute("TotalRenderMillis"), equalTo((Object) 5L));
+        assertThat(tested.getAttribute("LastRunRenderMillis"), equalTo((Object) 2L));
+    }
+
+    @Test
+    public void reset_clearsAllStatistics() throws Exception {
+        tested.runStarted();
+        completeRound(10, 3000000L);
+
+        tested.invoke("reset", null, null);
+
+        assertThat(tested.getAttribute("TotalRounds"), equalTo((Object) 0L));
+        assertThat(tested.getAttribute("LastRunRounds"), equalTo((Object) 0L));
+    }
+
+    @Test
+    public void carryOver_addsPreviousTotals() throws AttributeNotFoundException {
+        AttributeList previousTotals = new AttributeList();
+        previousTotals.add(new Attribute("TotalRuns", 7L));
+        previousTotals.add(new Attribute("TotalRenderMillis", 4L));
+
+        tested.carryOver(previousTotals);
+        tested.runStarted();
+        completeRound(1, 1000000L);
+
+        assertThat(tested.getAttribute("TotalRuns"), equalTo((Object) 8L));
+        assertThat(tested.getAttribute("TotalRenderMillis"), equalTo((Object) 5L));
+        assertThat(tested.getAttribute("LastRunRuns"), equalTo((Object) 1L));
+    }
+
+    @Test
+    public void unregisterPlatformMBean_replacedBySnapshotAndCarriedOver() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(ProcessorStatistics.OBJECT_NAME);
+
+        ProcessorStatistics first = ProcessorStatistics.registerPlatformMBean();
+        ProcessorStatistics concurrent = ProcessorStatistics.registerPlatformMBean();
+        first.reset();
+        first.runStarted();
+        ProcessorStatistics.unregisterPlatformMBean(first);
+
+        assertThat(server.getObjectInstance(name).getClassName(), equalTo(ProcessorStatistics.class.getName()));
+
+        ProcessorStatistics.unregisterPlatformMBean(concurrent);
+
+        assertThat(server.getObjectInstance(name).getClassName(), equalTo(RequiredModelMBean.class.getName()));
+        assertThat(server.getAttribute(name, "TotalRuns"), equalTo((Object) 1L));
+
+        ProcessorStatistics next = ProcessorStatistics.registerPlatformMBean();
+        try {
+            assertThat(next, not(sameInstance(first)));
+            assertThat(next.getAttribute("TotalRuns"), equalTo((Object) 1L));
+        } finally {
+            ProcessorStatistics.unregisterPlatformMBean(next);
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test(expected = AttributeNotFoundException.class)
+    public void getAttribute_unknown() throws AttributeNotFoundException {
+        tested.getAttribute("TotalUnknown");
+    }
+
+    void completeRound(long elementsVisited, long renderNanos) {
+        long[] phaseNanos = new long[Phase.values().length];
+        phaseNanos[Phase.RENDER.ordinal()] = renderNanos;
+
+        tested.roundCompleted(elementsVisited, 0, 0, 0, 0, 0, 0, 0, phaseNanos, new long[phaseNanos.length]);
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class ProfileDirectiveTest {
+
+    static final String TEMPLATE = "a<@genftw_profile name=\"outer section\">b<@genftw_profile>c</@genftw_profile>"
+            + "</@genftw_profile>d";
+
+    @Test
+    public void execute_profilingEnabled() throws Exception {
+        RenderProfiler profiler = new RenderProfiler() {
+            long nanos;
+
+            @Override
+            long nanoTime() {
+                return nanos += 1000000L;
+            }
+        };
+
+        profiler.templateStarted("main.ftl");
+        String output = render(new ProfileDirective(profiler));
+        profiler.templateFinished("main.ftl", output.length());
+
+        assertThat(output, equalTo("abcd"));
+
+        StringWriter collapsedStacks = new StringWriter();
+        profiler.writeCollapsedStacks(collapsedStacks);
+        assertThat(collapsedStacks.toString(), equalTo(""
+                + "main.ftl;outer_section;section 1000\n"
+                + "main.ftl;outer_section 2000\n"
+                + "main.ftl 2000\n"));
+    }
+
+    @Test
+    public void execute_profilingDisabled() throws Exception {
+        assertThat(render(new ProfileDirective(null)), equalTo("abcd"));
+    }
+
+    String render(ProfileDirective directive) throws Exception {
+        Template template = new Template("main.ftl", new StringReader(TEMPLATE), new Configuration());
+        StringWriter writer = new StringWriter();
+
+        template.process(Collections.singletonMap(ProfileDirective.VARIABLE_NAME, directive), writer);
+
+        return writer.toString();
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.metrics;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class RenderProfilerTest {
+
+    long nanos;
+
+    RenderProfiler tested = new RenderProfiler() {
+        @Override
+        long nanoTime() {
+            return nanos;
+        }
+    };
+
+    @Test
+    public void popFrame_subtractsChildTime() {
+        tested.templateStarted("main.ftl");
+        nanos = 1000000L;
+        tested.sectionStarted("header");
+        nanos = 3000000L;
+        tested.sectionStarted("title");
+        nanos = 4000000L;
+        assertThat(tested.popFrame(), equalTo(1000000L));
+        nanos = 6000000L;
+        assertThat(tested.popFrame(), equalTo(5000000L));
+        nanos = 10000000L;
+        tested.templateFinished("main.ftl", 100);
+
+        assertThat(collapsedStacks(), equalTo(""
+                + "main.ftl;header;title 1000\n"
+                + "main.ftl;header 4000\n"
+                + "main.ftl 5000\n"));
+    }
+
+    @Test
+    public void writeCollapsedStacks_accumulatesSelfTimePerPath() {
+        renderMain(2000000L, 500000L);
+        renderMain(1000000L, 300000L);
+
+        assertThat(collapsedStacks(), equalTo(""
+                + "main.ftl;body 800\n"
+                + "main.ftl 2200\n"));
+    }
+
+    @Test
+    public void writeCollapsedStacks_skipsPathsBelowOneMicrosecond() {
+        renderMain(2000000L, 999L);
+
+        assertThat(collapsedStacks(), equalTo("main.ftl 1999\n"));
+    }
+
+    @Test
+    public void popFrame_emptyStack() {
+        assertThat(tested.popFrame(), equalTo(0L));
+    }
+
+    @Test
+    public void frameName_replacesSeparatorsAndSpaces() {
+        assertThat(RenderProfiler.frameName("entity list;page 1"), equalTo("entity_list_page_1"));
+    }
+
+    @Test
+    public void formatReport_rankedByCumulativeTime() {
+        nanos = 0;
+        tested.templateStarted("fast.ftl");
+        nanos = 1000000L;
+        tested.templateFinished("fast.ftl", 10);
+        tested.templateStarted("slow.ftl");
+        nanos = 4000000L;
+        tested.templateFinished("slow.ftl", 20);
+
+        assertThat(tested.formatReport(), equalTo(String.format(""
+                + "Render profile (ranked by cumulative time)%n"
+                + "   #  time [ms]  renders       output  template%n"
+                + "   1 %10.3f        1           20  slow.ftl%n"
+                + "   2 %10.3f        1           10  fast.ftl%n", 3.0, 1.0)));
+    }
+
+    /**
+     * Renders main template with a single section taking given time.
+     */
+    void renderMain(long totalNanos, long sectionNanos) {
+        long startNanos = nanos;
+        tested.templateStarted("main.ftl");
+        tested.sectionStarted("body");
+        nanos += sectionNanos;
+        tested.sectionFinished();
+        nanos = startNanos + totalNanos;
+        tested.templateFinished("main.ftl", 0);
+    }
+
+    String collapsedStacks() {
+        StringWriter writer = new StringWriter();
+
+        try {
+            tested.writeCollapsedStacks(writer);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        return writer.toString();
+    }
+
+}
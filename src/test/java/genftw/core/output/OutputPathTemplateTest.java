@@ -0,0 +1,71 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.output;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class OutputPathTemplateTest {
+
+    @Test
+    public void expand_knownAndUnknownVariables() {
+        OutputPathTemplate tested = new OutputPathTemplate("root/{path}/{name}{unknown}.java");
+
+        String result = tested.expand(variables("path", "com/test", "name", "MyClass"));
+
+        assertThat(result, equalTo("root/com/test/MyClass{unknown}.java"));
+    }
+
+    @Test
+    public void expand_withoutVariables() {
+        OutputPathTemplate tested = new OutputPathTemplate("root/{path/MyClass.java");
+
+        String result = tested.expand(variables("path", "com/test"));
+
+        assertThat(result, equalTo("root/{path/MyClass.java"));
+        assertThat(tested.hasVariable("path"), equalTo(false));
+    }
+
+    @Test
+    public void hasVariable_expectedBehavior() {
+        OutputPathTemplate tested = new OutputPathTemplate("Shard{shardIndex}.java");
+
+        assertThat(tested.hasVariable("shardIndex"), equalTo(true));
+        assertThat(tested.hasVariable("Shard"), equalTo(false));
+    }
+
+    OutputPathTemplate.Variables variables(String... nameValuePairs) {
+        final Map<String, String> values = new HashMap<String, String>();
+
+        for (int i = 0; i < nameValuePairs.length; i += 2) {
+            values.put(nameValuePairs[i], nameValuePairs[i + 1]);
+        }
+
+        return new OutputPathTemplate.Variables() {
+            @Override
+            public String get(String name) {
+                return values.get(name);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.output;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import genftw.core.metrics.FlightEvents;
+import genftw.core.metrics.Phase;
+import genftw.core.metrics.PhaseEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class OutputPipelineTest {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    OutputPipeline tested = new OutputPipeline(UTF_8, 16);
+
+    PhaseEvent writeEvent = mock(PhaseEvent.class);
+    FlightEvents flightEvents = when(mock(FlightEvents.class).begin(Phase.WRITE)).thenReturn(writeEvent).getMock();
+
+    @Test
+    public void write_encodesInChunks() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileObject resource = when(mock(FileObject.class).openOutputStream()).thenReturn(out).getMock();
+        String content = "0123456789abcdefghijé";
+
+        OutputBuffer buffer = tested.acquire(StandardLocation.SOURCE_OUTPUT, "Test.java");
+        buffer.write(content);
+        OutputStats stats = tested.write(resource, StandardLocation.SOURCE_OUTPUT, "Test.java", buffer);
+
+        assertThat(new String(out.toByteArray(), UTF_8), equalTo(content));
+        assertThat(stats.charsWritten(), equalTo(21L));
+        assertThat(stats.bytesWritten(), equalTo(22L));
+        assertThat(stats.writeCount(), equalTo(2));
+    }
+
+    @Test
+    public void write_compilerEncoding() throws IOException {
+        StringWriter writer = new StringWriter();
+        FileObject resource = when(mock(FileObject.class).openWriter()).thenReturn(writer).getMock();
+        String content = "0123456789abcdefghijé";
+        OutputPipeline compilerEncoded = new OutputPipeline(null, 16);
+
+        OutputBuffer buffer = compilerEncoded.acquire(StandardLocation.SOURCE_OUTPUT, "Test.java");
+        buffer.write(content);
+        OutputStats stats = compilerEncoded.write(resource, StandardLocation.SOURCE_OUTPUT, "Test.java", buffer);
+
+        assertThat(writer.toString(), equalTo(content));
+        assertThat(stats.charsWritten(), equalTo(21L));
+        assertThat(stats.bytesWritten(), equalTo(OutputStats.UNKNOWN));
+        assertThat(stats.writeCount(), equalTo(2));
+        verify(resource, never()).openOutputStream();
+    }
+
+    @Test
+    public void submit_writesConfirmedByAwait() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileObject resource = when(mock(FileObject.class).openOutputStream()).thenReturn(out).getMock();
+        tested.enableWriteBehind(1);
+
+        OutputBuffer buffer = tested.acquire(StandardLocation.SOURCE_OUTPUT, "Test.java");
+        buffer.write("content");
+        tested.submit(resource, StandardLocation.SOURCE_OUTPUT, "Test.java", buffer, flightEvents, "method", 1);
+        List<OutputStats> result = tested.awaitWrites();
+
+        assertThat(result.size(), equalTo(1));
+        assertThat(result.get(0).bytesWritten(), equalTo(7L));
+        verify(writeEvent).setSource("method", 1);
+        verify(writeEvent).commit(null, "Test.java", 7L);
+        assertThat(new String(out.toByteArray(), UTF_8), equalTo("content"));
+        assertThat(tested.awaitWrites().isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void submit_opensResourceOnCallingThread() throws IOException {
+        final Thread callingThread = Thread.currentThread();
+        final List<Thread> openingThreads = new ArrayList<Thread>();
+        FileObject resource = when(mock(FileObject.class).openOutputStream()).thenAnswer(new Answer<OutputStream>() {
+            @Override
+            public OutputStream answer(InvocationOnMock invocation) {
+                openingThreads.add(Thread.currentThread());
+                return new ByteArrayOutputStream();
+            }
+        }).getMock();
+        tested.enableWriteBehind(1);
+
+        tested.submit(resource, StandardLocation.SOURCE_OUTPUT, "Test.java",
+                tested.acquire(StandardLocation.SOURCE_OUTPUT, "Test.java"), flightEvents, "method", 1);
+        tested.awaitWrites();
+
+        assertThat(openingThreads, equalTo(Collections.singletonList(callingThread)));
+    }
+
+    @Test
+    public void submit_openFailureThrownBySubmit() throws IOException {
+        FileObject resource = when(mock(FileObject.class).openOutputStream())
+                .thenThrow(new IOException("disk full")).getMock();
+        tested.enableWriteBehind(1);
+        OutputBuffer buffer = tested.acquire(StandardLocation.SOURCE_OUTPUT, "Test.java");
+
+        try {
+            tested.submit(resource, StandardLocation.SOURCE_OUTPUT, "Test.java", buffer, flightEvents, "method", 1);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            // Expected, buffer should be released
+        }
+
+        assertThat(tested.acquire(StandardLocation.SOURCE_OUTPUT, "Other.java"), sameInstance(buffer));
+        assertThat(tested.awaitWrites().isEmpty(), equalTo(true));
+    }
+
+    @Test(expected = IOException.class)
+    public void submit_writeFailureThrownByAwait() throws IOException {
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        FileObject resource = when(mock(FileObject.class).openOutputStream()).thenReturn(out).getMock();
+        tested.enableWriteBehind(1);
+
+        OutputBuffer buffer = tested.acquire(StandardLocation.SOURCE_OUTPUT, "Test.java");
+        buffer.write("content");
+        tested.submit(resource, StandardLocation.SOURCE_OUTPUT, "Test.java", buffer, flightEvents, "method", 1);
+        tested.awaitWrites();
+    }
+
+    @Test
+    public void acquire_reusesReleasedBuffer() throws IOException {
+        OutputBuffer buffer = tested.acquire(StandardLocation.SOURCE_OUTPUT, "Test.java");
+        buffer.write("content");
+        tested.release(buffer);
+
+        OutputBuffer result = tested.acquire(StandardLocation.SOURCE_OUTPUT, "Other.java");
+
+        assertThat(result, sameInstance(buffer));
+        assertThat(result.length(), equalTo(0));
+    }
+
+    @Test
+    public void acquire_sizedByPreviousOutput() throws IOException {
+        FileObject resource = when(mock(FileObject.class).openOutputStream())
+                .thenReturn(new ByteArrayOutputStream()).getMock();
+
+        OutputBuffer buffer = tested.acquire(StandardLocation.SOURCE_OUTPUT, "Test.java");
+        buffer.write(new char[100]);
+        tested.write(resource, StandardLocation.SOURCE_OUTPUT, "Test.java", buffer);
+
+        OutputBuffer result = tested.acquire(StandardLocation.SOURCE_OUTPUT, "Test.java");
+
+        assertThat(result.capacity() >= 100, equalTo(true));
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2011 GenFTW contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package genftw.core.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Name;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ElementGoodiesTest {
+
+    @Mock
+    Elements elementUtils;
+
+    @InjectMocks
+    ElementGoodies tested;
+
+    @Test
+    public void getPackageOf_cachedUntilCleared() {
+        Element element = mock(Element.class);
+        PackageElement packageElement = mock(PackageElement.class);
+        Name packageName = when(mock(Name.class).toString()).thenReturn("com.test.package").getMock();
+        when(packageElement.getQualifiedName()).thenReturn(packageName);
+        when(elementUtils.getPackageOf(element)).thenReturn(packageElement);
+
+        assertThat(tested.getPackageOf(element), equalTo("com.test.package"));
+        assertThat(tested.getPackageOf(element), equalTo("com.test.package"));
+        verify(elementUtils, times(1)).getPackageOf(element);
+
+        tested.clearCache();
+        tested.getPackageOf(element);
+        verify(elementUtils, times(2)).getPackageOf(element);
+    }
+
+    @Test
+    public void getMethods_sameSequenceReturned() {
+        Element element = mock(Element.class);
+        doReturn(Collections.emptyList()).when(element).getEnclosedElements();
+
+        ReadOnlySequence result = tested.getMethods(element);
+
+        assertThat(result.size(), equalTo(0));
+        assertThat(tested.getMethods(element), sameInstance(result));
+    }
+
+    @Test
+    public void findProperties_pairsGettersAndSetters() {
+        ExecutableElement getName = mockMethod("getName", TypeKind.DECLARED, 0);
+        ExecutableElement setName = mockMethod("setName", TypeKind.VOID, 1);
+        ExecutableElement isActive = mockMethod("isActive", TypeKind.BOOLEAN, 0);
+        ExecutableElement setURL = mockMethod("setURL", TypeKind.VOID, 1);
+        ExecutableElement getter = mockMethod("getter", TypeKind.DECLARED, 0);
+        ExecutableElement getWithParam = mockMethod("getValue", TypeKind.DECLARED, 1);
+
+        List<BeanProperty> result = tested.findProperties(Arrays.asList(
+                getName, setName, isActive, setURL, getter, getWithParam));
+
+        assertThat(result.size(), equalTo(3));
+        assertThat(result.get(0).getName(), equalTo("name"));
+        assertThat(result.get(0).getGetter(), sameInstance(getName));
+        assertThat(result.get(0).getSetter(), sameInstance(setName));
+        assertThat(result.get(1).getName(), equalTo("active"));
+        assertThat(result.get(1).isWritable(), equalTo(false));
+        assertThat(result.get(2).getName(), equalTo("URL"));
+        assertThat(result.get(2).getGetter(), nullValue());
+    }
+
+    @Test
+    public void getAnnotationValues_decodedOnceWithDefaults() {
+        Element element = mock(Element.class);
+        AnnotationMirror annotation = mockAnnotation("com.test.Marker");
+        doReturn(Arrays.asList(annotation)).when(elementUtils).getAllAnnotationMirrors(element);
+
+        Map<ExecutableElement, AnnotationValue> values = new HashMap<ExecutableElement, AnnotationValue>();
+        values.put(mockMethod("name", TypeKind.DECLARED, 0), mockAnnotationValue("test"));
+        values.put(mockMethod("size", TypeKind.INT, 0), mockAnnotationValue(42));
+        values.put(mockMethod("tags", TypeKind.ARRAY, 0), mockAnnotationValue(Arrays.asList(
+                mockAnnotationValue("one"), mockAnnotationValue("two"))));
+        doReturn(values).when(elementUtils).getElementValuesWithDefaults(annotation);
+
+        AnnotationValues result = tested.getAnnotationValues(element, "com.test.Marker");
+
+        assertThat(result.getString("name"), equalTo("test"));
+        assertThat(result.getInt("size"), equalTo(42));
+        assertThat(result.getStringArray("tags"), equalTo(Arrays.asList("one", "two")));
+        assertThat(tested.getAnnotationValues(element, "com.test.Marker"), sameInstance(result));
+        assertThat(tested.getAnnotationValues(element, "com.test.Other"), nullValue());
+        verify(elementUtils, times(1)).getAllAnnotationMirrors(element);
+        verify(elementUtils, times(1)).getElementValuesWithDefaults(annotation);
+    }
+
+    @Test
+    public void getAnnotationValue_decodedElementWithDefault() {
+        Element element = mock(Element.class);
+        AnnotationMirror annotation = mockAnnotation("com.test.Marker");
+        doReturn(Arrays.asList(annotation)).when(elementUtils).getAllAnnotationMirrors(element);
+
+        Map<ExecutableElement, AnnotationValue> values = new HashMap<ExecutableElement, AnnotationValue>();
+        values.put(mockMethod("value", TypeKind.DECLARED, 0), mockAnnotationValue("default"));
+        values.put(mockMethod("size", TypeKind.INT, 0), mockAnnotationValue(42));
+        doReturn(values).when(elementUtils).getElementValuesWithDefaults(annotation);
+
+        assertThat(tested.getAnnotationValue(element, "com.test.Marker"), equalTo((Object) "default"));
+        assertThat(tested.getAnnotationValue(element, "com.test.Marker", "size"), equalTo((Object) 42));
+        assertThat(tested.getAnnotationValue(element, "com.test.Marker", "missing"), nullValue());
+        assertThat(tested.getAnnotationValue(element, "com.test.Other"), nullValue());
+        verify(elementUtils, times(1)).getElementValuesWithDefaults(annotation);
+    }
+
+    AnnotationMirror mockAnnotation(String annotationTypeName) {
+        DeclaredType annotationType = when(mock(DeclaredType.class).toString())
+                .thenReturn(annotationTypeName).getMock();
+        return when(mock(AnnotationMirror.class).getAnnotationType()).thenReturn(annotationType).getMock();
+    }
+
+    AnnotationValue mockAnnotationValue(Object value) {
+        return when(mock(AnnotationValue.class).getValue()).thenReturn(value).getMock();
+    }
+
+    ExecutableElement mockMethod(String simpleName, TypeKind returnTypeKind, int paramCount) {
+        ExecutableElement method = mock(ExecutableElement.class);
+        Name name = when(mock(Name.class).toString()).thenReturn(simpleName).getMock();
+        TypeMirror returnType = when(mock(TypeMirror.class).getKind()).thenReturn(returnTypeKind).getMock();
+        VariableElement[] params = new VariableElement[paramCount];
+
+        for (int i = 0; i < paramCount; i++) {
+            params[i] = mock(VariableElement.class);
+        }
+
+        when(method.getSimpleName()).thenReturn(name);
+        when(method.getReturnType()).thenReturn(returnType);
+        doReturn(Arrays.asList(params)).when(method).getParameters();
+
+        return method;
+    }
+
+}